@@ -0,0 +1,40 @@
+package iog.psg.bcc.benchmarks
+
+import akka.http.scaladsl.model.{ ContentTypes, HttpEntity, HttpResponse }
+import akka.util.ByteString
+import io.circe.Json
+import io.circe.parser.parse
+
+import scala.io.Source
+
+/**
+ * Payloads built from the test json fixtures, repeated to the benchmarked size.
+ */
+object Fixtures {
+
+  def json(file: String): Json = {
+    val source = Source.fromResource(s"jsons/$file")
+    try parse(source.mkString).fold(throw _, identity)
+    finally source.close()
+  }
+
+  lazy val wallet: Json = json("wallet.json")
+  lazy val transaction: Json = json("transaction.json")
+  lazy val stakePool: Json = json("stake_pools.json").asArray.flatMap(_.headOption).get
+
+  lazy val metadataEntries: Vector[Json] =
+    transaction.hcursor.downField("metadata").focus.flatMap(_.asObject).map(_.values.toVector).get
+
+  lazy val insertedAt: String = transaction.hcursor.downField("inserted_at").downField("time").as[String].fold(throw _, identity)
+
+  def array(element: Json, size: Int): ByteString = ByteString(Json.fromValues(Vector.fill(size)(element)).noSpaces)
+
+  /**
+   * Metadata with `size` labels, cycling through the string, int, bytes, list and map values of the fixture.
+   */
+  def metadata(size: Int): Json =
+    Json.fromFields((0 until size).map(label => label.toString -> metadataEntries(label % metadataEntries.size)))
+
+  def response(entity: ByteString): HttpResponse =
+    HttpResponse(entity = HttpEntity.Strict(ContentTypes.`application/json`, entity))
+}
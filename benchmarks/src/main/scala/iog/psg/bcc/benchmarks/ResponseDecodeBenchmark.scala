@@ -0,0 +1,74 @@
+package iog.psg.bcc.benchmarks
+
+import java.util.concurrent.TimeUnit
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.HttpResponse
+import akka.stream.Materializer
+import de.heikoseeberger.akkahttpcirce.FailFastCirceSupport._
+import io.circe.generic.auto._
+import iog.psg.bcc.BccApi.BccApiResponse
+import iog.psg.bcc.BccApiCodec.ImplicitCodecs._
+import iog.psg.bcc.BccApiCodec._
+import iog.psg.bcc.CodecBackend
+import iog.psg.bcc.JsoniterCodecs._
+import org.openjdk.jmh.annotations._
+
+import scala.concurrent.duration.{ DurationInt, FiniteDuration }
+import scala.concurrent.{ Await, ExecutionContext }
+
+/**
+ * Decoding of json arrays of `size` wallets, transactions and stake pools, by each codec backend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = Array("-Xmx4g"))
+class ResponseDecodeBenchmark {
+
+  @Param(Array("1000", "10000", "100000"))
+  var size: Int = _
+
+  @Param(Array("circe", "jsoniter"))
+  var codec: String = _
+
+  private implicit val timeout: FiniteDuration = 5.minutes
+
+  private implicit var system: ActorSystem = _
+  private implicit var mat: Materializer = _
+  private implicit var ec: ExecutionContext = _
+  private implicit var backend: CodecBackend = _
+
+  private var walletsResponse: HttpResponse = _
+  private var transactionsResponse: HttpResponse = _
+  private var stakePoolsResponse: HttpResponse = _
+
+  @Setup
+  def setup(): Unit = {
+    system = ActorSystem("response-decode-benchmark")
+    mat = Materializer(system)
+    ec = system.dispatcher
+    backend = if (codec == "jsoniter") CodecBackend.Jsoniter else CodecBackend.Circe
+
+    walletsResponse = Fixtures.response(Fixtures.array(Fixtures.wallet, size))
+    transactionsResponse = Fixtures.response(Fixtures.array(Fixtures.transaction, size))
+    stakePoolsResponse = Fixtures.response(Fixtures.array(Fixtures.stakePool, size))
+  }
+
+  @TearDown
+  def tearDown(): Unit = Await.ready(system.terminate(), 1.minute)
+
+  @Benchmark
+  def toWallets: BccApiResponse[Seq[Wallet]] =
+    Await.result(walletsResponse.toWallets, timeout)
+
+  @Benchmark
+  def toCreateTransactionsResponse: BccApiResponse[Seq[CreateTransactionResponse]] =
+    Await.result(transactionsResponse.toCreateTransactionsResponse, timeout)
+
+  @Benchmark
+  def decodeInStream: BccApiResponse[Seq[StakePool]] =
+    Await.result(stakePoolsResponse.decodeInStream[StakePool](stakePoolsResponse, "$[*]"), timeout)
+}
@@ -0,0 +1,82 @@
+package iog.psg.bcc.benchmarks
+
+import java.util.concurrent.TimeUnit
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.HttpResponse
+import akka.stream.Materializer
+import akka.util.ByteString
+import io.circe.Decoder
+import iog.psg.bcc.BccApiCodec._
+import iog.psg.bcc.{ BccApiCodec, TxMetadataOut }
+import org.openjdk.jmh.annotations._
+import org.openjdk.jmh.infra.Blackhole
+
+import scala.concurrent.duration.{ DurationInt, FiniteDuration }
+import scala.concurrent.{ Await, ExecutionContext }
+
+/**
+ * Decoding of single values repeated `size` times per operation: wallet responses, date strings,
+ * and one metadata object of `size` labels, decoded whole or one label of it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput))
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = Array("-Xmx4g"))
+class ValueDecodeBenchmark {
+
+  @Param(Array("1000", "10000", "100000"))
+  var size: Int = _
+
+  private implicit val timeout: FiniteDuration = 1.minute
+
+  private implicit var system: ActorSystem = _
+  private implicit var mat: Materializer = _
+  private implicit var ec: ExecutionContext = _
+
+  private var walletResponse: HttpResponse = _
+  private var metadata: TxMetadataOut = _
+  private var dates: Array[String] = _
+
+  @Setup
+  def setup(): Unit = {
+    system = ActorSystem("value-decode-benchmark")
+    mat = Materializer(system)
+    ec = system.dispatcher
+
+    walletResponse = Fixtures.response(ByteString(Fixtures.wallet.noSpaces))
+    metadata = TxMetadataOut(Fixtures.metadata(size))
+
+    val insertedAt = BccApiCodec.stringToZonedDate(Fixtures.insertedAt).get
+    dates = Array.tabulate(size)(i => BccApiCodec.zonedDateToString(insertedAt.plusSeconds(i.toLong)))
+  }
+
+  @TearDown
+  def tearDown(): Unit = Await.ready(system.terminate(), 1.minute)
+
+  @Benchmark
+  def toWallet(blackhole: Blackhole): Unit = {
+    var i = 0
+    while (i < size) {
+      blackhole.consume(Await.result(walletResponse.toWallet, timeout))
+      i += 1
+    }
+  }
+
+  @Benchmark
+  def toMetadataMap: Decoder.Result[Map[Long, MetadataValue]] = metadata.toMetadataMap
+
+  @Benchmark
+  def metadataValue: Option[Decoder.Result[MetadataValue]] = metadata.metadataValue((size / 2).toLong)
+
+  @Benchmark
+  def stringToZonedDate(blackhole: Blackhole): Unit = {
+    var i = 0
+    while (i < size) {
+      blackhole.consume(BccApiCodec.stringToZonedDate(dates(i)))
+      i += 1
+    }
+  }
+}
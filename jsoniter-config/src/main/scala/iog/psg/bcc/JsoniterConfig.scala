@@ -0,0 +1,16 @@
+package iog.psg.bcc
+
+import com.github.plokhotnyuk.jsoniter_scala.macros.{ CodecMakerConfig, JsonCodecMaker }
+
+/**
+ * The config of the `JsonCodecMaker.make` calls of [[JsoniterCodecs]].
+ *
+ * The macro evaluates its config while compiling, so the config is kept in this module, built before the
+ * codecs that use it. It is not needed at runtime.
+ */
+object JsoniterConfig {
+
+  /** Snake case field names, and missing collections fail. */
+  val snakeCase: CodecMakerConfig =
+    CodecMakerConfig.withFieldNameMapper(JsonCodecMaker.enforce_snake_case).withRequireCollectionFields(true)
+}
@@ -1,15 +1,18 @@
 package iog.psg.bcc.jpi;
 
 import iog.psg.bcc.BccApiCodec;
+import iog.psg.bcc.NetworkTipPoller;
+import org.reactivestreams.Publisher;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletionStage;
 
 /**
  * Defines the API which wraps the Bcc API, depends on BccApiCodec for it's implementation,
  * so clients will import the Codec also.
  */
-public interface BccApi {
+public interface BccApi extends AutoCloseable {
 
     /**
      * Create and restore a wallet from a mnemonic sentence or account public key.
@@ -102,6 +105,20 @@ public interface BccApi {
             List<BccApiCodec.Payment> payments
     ) throws BccApiException;
 
+    /**
+     * Create and send many transactions. Transactions of the same wallet are sent one after the other in list order,
+     * so they do not compete for the same UTxOs, while up to `parallelism` wallets are served at the same time.
+     * Api Url: <a href="https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/postTransaction">#postTransaction</a>
+     *
+     * @param transactions transactions to create, a failed transaction does not stop the next ones of its wallet
+     * @param parallelism max number of wallets sending a transaction at the same time
+     * @return publisher of results in completion order, each carrying the index of its transaction in the list,
+     * transactions are sent once the subscriber signals demand, {@link FlowPublishers#toFlow} adapts it to
+     * java.util.concurrent.Flow
+     */
+    Publisher<BulkResult<BccApiCodec.CreateTransactionResponse>> createTransactions(
+            List<TransactionRequest> transactions, int parallelism);
+
     /**
      * Get wallet details by id
      * Api Url: <a href="https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/getWallet">#getWallet</a>
@@ -113,6 +130,17 @@ public interface BccApi {
     CompletionStage<BccApiCodec.Wallet> getWallet(
             String fromWalletId) throws BccApiException;
 
+    /**
+     * Get the details of many wallets, sending at most `parallelism` requests at the same time.
+     * Api Url: <a href="https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/getWallet">#getWallet</a>
+     *
+     * @param walletIds wallets' ids
+     * @param parallelism max number of requests sent at the same time
+     * @return one result per wallet id, in the order of walletIds
+     */
+    CompletionStage<List<BulkResult<BccApiCodec.Wallet>>> getWallets(
+            List<String> walletIds, int parallelism);
+
     /**
      * Delete wallet by id
      * Api Url: <a href="https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/deleteWallet">#deleteWallet</a>
@@ -136,6 +164,18 @@ public interface BccApi {
     CompletionStage<BccApiCodec.CreateTransactionResponse> getTransaction(
             String walletId, String transactionId) throws BccApiException;
 
+    /**
+     * Get many transactions of a wallet by id, sending at most `parallelism` requests at the same time.
+     * Api Url: <a href="https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/getTransaction">#getTransaction</a>
+     *
+     * @param walletId wallet's id
+     * @param transactionIds transactions' ids
+     * @param parallelism max number of requests sent at the same time
+     * @return one result per transaction id, in the order of transactionIds
+     */
+    CompletionStage<List<BulkResult<BccApiCodec.CreateTransactionResponse>>> getTransactions(
+            String walletId, List<String> transactionIds, int parallelism);
+
     /**
      * Forget pending transaction
      * Api Url: <a href="https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/deleteTransaction">#deleteTransaction</a>
@@ -229,6 +269,17 @@ public interface BccApi {
     CompletionStage<BccApiCodec.WalletAddress> inspectAddress(
             String addressId) throws BccApiException;
 
+    /**
+     * Give information about the structure of many addresses, sending at most `parallelism` requests at the same time.
+     * Api Url: <a href="https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#tag/inspectAddress">#inspectAddress</a>
+     *
+     * @param addressIds addresses' ids
+     * @param parallelism max number of requests sent at the same time
+     * @return one result per address id, in the order of addressIds
+     */
+    CompletionStage<List<BulkResult<BccApiCodec.WalletAddress>>> inspectAddresses(
+            List<String> addressIds, int parallelism);
+
     /**
      * Lists all incoming and outgoing wallet's transactions.
      * Api Url: <a href="https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/listTransactions">#listTransactions</a>
@@ -240,6 +291,31 @@ public interface BccApi {
     CompletionStage<List<BccApiCodec.CreateTransactionResponse>> listTransactions(
             ListTransactionsParamBuilder builder) throws BccApiException;
 
+    /**
+     * Lists all incoming and outgoing wallet's transactions, decoding them one by one as the subscriber requests them.
+     * Api Url: <a href="https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/listTransactions">#listTransactions</a>
+     *
+     * @param builder ListTransactionsParamBuilder
+     * @param parallelism max number of transactions decoded at the same time, the order of the response is kept
+     * @return publisher of wallet's transactions, the request is sent when the subscriber signals demand,
+     * API errors are signalled with onError as BccApiException, {@link FlowPublishers#toFlow} adapts it to
+     * java.util.concurrent.Flow
+     */
+    Publisher<BccApiCodec.CreateTransactionResponse> listTransactionsStream(
+            ListTransactionsParamBuilder builder, int parallelism);
+
+    /**
+     * Lists all incoming and outgoing wallet's transactions, decoding them one by one as the subscriber requests them.
+     * Api Url: <a href="https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/listTransactions">#listTransactions</a>
+     *
+     * @param builder ListTransactionsParamBuilder
+     * @return publisher of wallet's transactions, the request is sent when the subscriber signals demand,
+     * API errors are signalled with onError as BccApiException, {@link FlowPublishers#toFlow} adapts it to
+     * java.util.concurrent.Flow
+     */
+    Publisher<BccApiCodec.CreateTransactionResponse> listTransactionsStream(
+            ListTransactionsParamBuilder builder);
+
     /**
      * list of known wallets, ordered from oldest to newest.
      * Api Url: <a href="https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/listWallets">#listWallets</a>
@@ -413,4 +489,22 @@ public interface BccApi {
      * @throws BccApiException thrown on API error response, contains error message and code from API
      */
     CompletionStage<Void> postMaintenanceAction() throws BccApiException;
+
+    /**
+     * Poller shared by the components of the application to learn the node and network tips and the sync
+     * progress, instead of each polling networkInfo, e.g. {@code api.networkTipPoller().get().publisher()}.
+     *
+     * @return the poller, empty unless the client was built with BccApiBuilder.withNetworkTipPoller
+     */
+    default Optional<NetworkTipPoller> networkTipPoller() {
+        return Optional.empty();
+    }
+
+    /**
+     * Stops accepting calls, waits for the calls in flight then releases the actor system, executor and
+     * connection pool the builder created for this client. Calls made after close fail with code CLIENT CLOSED.
+     */
+    @Override
+    default void close() {
+    }
 }
@@ -1,28 +1,62 @@
 package iog.psg.bcc.jpi;
 
 import akka.actor.ActorSystem;
+import akka.stream.OverflowStrategy;
+import iog.psg.bcc.AdaptiveConcurrencyLimiter;
+import iog.psg.bcc.ApiResponseCache;
+import iog.psg.bcc.CircuitBreakingApiRequestExecutor;
+import iog.psg.bcc.CodecBackend;
+import iog.psg.bcc.CompressingApiRequestExecutor;
+import iog.psg.bcc.DrainingApiRequestExecutor;
+import iog.psg.bcc.MetricsApiRequestExecutor;
+import iog.psg.bcc.NetworkTipPoller;
+import iog.psg.bcc.PooledApiRequestExecutor;
+import iog.psg.bcc.RetryingApiRequestExecutor;
+import iog.psg.bcc.WalletWorkQueues;
+import iog.psg.bcc.metrics.ApiMetrics;
 import scala.concurrent.ExecutionContext;
 
+import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 public class BccApiBuilder {
 
+    private static final String DECODE_DISPATCHER = "bcc.decode-dispatcher";
+
     private final String url;
     private ExecutorService executorService;
     private ActorSystem actorSystem;
     private ApiRequestExecutor apiRequestExecutor;
+    private iog.psg.bcc.ApiRequestExecutor scalaApiRequestExecutor;
+    private PooledApiRequestExecutor.Settings poolSettings;
+    private ApiResponseCache responseCache;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private CircuitBreakingApiRequestExecutor.Settings circuitBreakerSettings;
+    private RetryingApiRequestExecutor.Settings retrySettings;
+    private WalletWorkQueues walletWorkQueues;
+    private ApiMetrics metrics;
+    private boolean compression;
+    private Duration keepAliveTimeout;
+    private Duration idleTimeout;
+    private int pipeliningLimit;
+    private CodecBackend codecBackend;
+    private ExecutorProfile executorProfile = ExecutorProfile.FORK_JOIN;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+    private Duration tipPollInterval;
 
     private BccApiBuilder() {
         url = null;
     }
 
     private BccApiBuilder(String url) {
-        this.url = url;
         Objects.requireNonNull(url,
                 "Provide the url to a bcc wallet instance e.g. http://127.0.0.1:8090/v2/");
+        this.url = url;
     }
 
     public static BccApiBuilder create(String url) {
@@ -30,52 +64,358 @@ public class BccApiBuilder {
     }
 
     public BccApiBuilder withExecutorService(ExecutorService executorService) {
-        this.executorService = executorService;
         Objects.requireNonNull(executorService, "ExecutorService is 'null'");
+        this.executorService = executorService;
         return this;
     }
 
 
     public BccApiBuilder withActorSystem(ActorSystem actorSystem) {
-        this.actorSystem = actorSystem;
         Objects.requireNonNull(actorSystem, "ActorSystem is 'null'");
+        this.actorSystem = actorSystem;
         return this;
     }
 
     public BccApiBuilder withApiExecutor(ApiRequestExecutor apiExecutor) {
+        Objects.requireNonNull(apiExecutor, "apiExecutor is 'null'");
         this.apiRequestExecutor = apiExecutor;
+        return this;
+    }
+
+    /**
+     * Execute the requests with a scala executor, e.g. a CoalescingApiRequestExecutor decorating another executor.
+     * Takes precedence over withPooledExecutor, the cache given to withCache still wraps it.
+     *
+     * @param apiExecutor executor sending the requests
+     * @return this builder
+     */
+    public BccApiBuilder withApiExecutor(iog.psg.bcc.ApiRequestExecutor apiExecutor) {
         Objects.requireNonNull(apiExecutor, "apiExecutor is 'null'");
+        this.scalaApiRequestExecutor = apiExecutor;
+        return this;
+    }
+
+    /**
+     * Send requests through a bounded host connection pool instead of the global request pool.
+     *
+     * @param maxConnections max number of parallel connections to the wallet host
+     * @param maxInFlight max number of requests queued or running against the wallet host
+     * @param overflowStrategy e.g. OverflowStrategy.dropNew() to fail fast or OverflowStrategy.backpressure() to wait
+     * @return this builder
+     */
+    public BccApiBuilder withPooledExecutor(int maxConnections, int maxInFlight, OverflowStrategy overflowStrategy) {
+        Objects.requireNonNull(overflowStrategy, "OverflowStrategy is 'null'");
+        this.poolSettings = new PooledApiRequestExecutor.Settings(
+                maxConnections, maxInFlight, overflowStrategy, maxInFlight);
+        return this;
+    }
+
+    /**
+     * Tune the connections of the pool, implies withPooledExecutor with its default settings when it is not called.
+     *
+     * @param keepAliveTimeout idle time after which the client closes a connection, keep it below the one of the wallet
+     *                         or of the reverse proxy in front of it so requests are not sent on closing connections
+     * @param idleTimeout idle time after which the pool of the wallet host is shut down
+     * @param pipeliningLimit max number of requests sent on a connection before their responses arrive, 1 disables pipelining
+     * @return this builder
+     */
+    public BccApiBuilder withConnectionSettings(Duration keepAliveTimeout, Duration idleTimeout, int pipeliningLimit) {
+        Objects.requireNonNull(keepAliveTimeout, "keepAliveTimeout is 'null'");
+        Objects.requireNonNull(idleTimeout, "idleTimeout is 'null'");
+        if (pipeliningLimit < 1) {
+            throw new IllegalArgumentException("pipeliningLimit must be positive, was " + pipeliningLimit);
+        }
+        this.keepAliveTimeout = keepAliveTimeout;
+        this.idleTimeout = idleTimeout;
+        this.pipeliningLimit = pipeliningLimit;
+        return this;
+    }
+
+    /**
+     * Ask for gzip or deflate compressed responses, served e.g. by a reverse proxy in front of the wallet,
+     * they are decompressed while being decoded. Metrics count the compressed bytes.
+     *
+     * @return this builder
+     */
+    public BccApiBuilder withCompression() {
+        this.compression = true;
+        return this;
+    }
+
+    /**
+     * Answer wallet, network and UTxO statistics reads from the given cache while their ttl lasts.
+     *
+     * @param responseCache e.g. new ApiResponseCache(ApiResponseCache.defaultSettings()), keep it to read its stats
+     * @return this builder
+     */
+    public BccApiBuilder withCache(ApiResponseCache responseCache) {
+        Objects.requireNonNull(responseCache, "ApiResponseCache is 'null'");
+        this.responseCache = responseCache;
         return this;
     }
 
+    /**
+     * Adapt the number of requests in flight to the latency of the wallet, requests beyond the limit wait for a slot.
+     * The limiter is placed under the retries, so they are limited too.
+     *
+     * @param concurrencyLimiter e.g. new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.defaultSettings()),
+     *                           keep it to read its current limit
+     * @return this builder
+     */
+    public BccApiBuilder withAdaptiveConcurrency(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        Objects.requireNonNull(concurrencyLimiter, "AdaptiveConcurrencyLimiter is 'null'");
+        this.concurrencyLimiter = concurrencyLimiter;
+        return this;
+    }
+
+    /**
+     * Fail calls fast while the wallet is down or too slow, instead of waiting for a timeout on each, and shed
+     * wallet reads while too many calls are in flight. Retries of a call failed fast stop at once.
+     *
+     * @param circuitBreakerSettings e.g. CircuitBreakingApiRequestExecutor.defaultSettings().withLoadShedding(200)
+     * @return this builder
+     */
+    public BccApiBuilder withCircuitBreaker(CircuitBreakingApiRequestExecutor.Settings circuitBreakerSettings) {
+        Objects.requireNonNull(circuitBreakerSettings, "CircuitBreakingApiRequestExecutor.Settings is 'null'");
+        this.circuitBreakerSettings = circuitBreakerSettings;
+        return this;
+    }
+
+    /**
+     * Retry failed GET and DELETE requests, and optionally hedge slow ones.
+     *
+     * @param retrySettings e.g. RetryingApiRequestExecutor.defaultSettings().withMaxRetries(3).withHedging(0.95)
+     * @return this builder
+     */
+    public BccApiBuilder withRetries(RetryingApiRequestExecutor.Settings retrySettings) {
+        Objects.requireNonNull(retrySettings, "RetryingApiRequestExecutor.Settings is 'null'");
+        this.retrySettings = retrySettings;
+        return this;
+    }
+
+    /**
+     * Run the writes to a wallet one after the other, so concurrent transactions, coin selections, migrations and
+     * delegations of a wallet do not select the same coins. Writes of different wallets still run in parallel.
+     *
+     * @param walletWorkQueues e.g. new WalletWorkQueues(WalletWorkQueues.defaultSettings()), keep it to read its stats
+     * @return this builder
+     */
+    public BccApiBuilder withWalletWorkQueues(WalletWorkQueues walletWorkQueues) {
+        Objects.requireNonNull(walletWorkQueues, "WalletWorkQueues is 'null'");
+        this.walletWorkQueues = walletWorkQueues;
+        return this;
+    }
+
+    /**
+     * Record latencies, errors, in-flight requests and bytes received per endpoint.
+     *
+     * @param metrics e.g. new InMemoryApiMetrics(), registered with ApiMetricsJmx.register to export it over JMX
+     * @return this builder
+     */
+    public BccApiBuilder withMetrics(ApiMetrics metrics) {
+        Objects.requireNonNull(metrics, "ApiMetrics is 'null'");
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Decode the responses with another json library.
+     *
+     * @param codecBackend e.g. CodecBackend.jsoniter() to decode long lists of transactions with less cpu
+     * @return this builder
+     */
+    public BccApiBuilder withCodecBackend(CodecBackend codecBackend) {
+        Objects.requireNonNull(codecBackend, "CodecBackend is 'null'");
+        this.codecBackend = codecBackend;
+        return this;
+    }
+
+    /**
+     * Threads decoding the responses when no ExecutorService is given, with one thread per available processor.
+     *
+     * @param executorProfile e.g. ExecutorProfile.VIRTUAL_THREADS when the callers block on the responses
+     * @return this builder
+     */
+    public BccApiBuilder withExecutorProfile(ExecutorProfile executorProfile) {
+        return withExecutorProfile(executorProfile, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Threads decoding the responses when no ExecutorService is given.
+     *
+     * @param executorProfile e.g. ExecutorProfile.VIRTUAL_THREADS when the callers block on the responses
+     * @param parallelism max number of platform threads of FORK_JOIN and VIRTUAL_THREADS, ignored by ACTOR_SYSTEM
+     * @return this builder
+     */
+    public BccApiBuilder withExecutorProfile(ExecutorProfile executorProfile, int parallelism) {
+        Objects.requireNonNull(executorProfile, "ExecutorProfile is 'null'");
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive, was " + parallelism);
+        }
+        this.executorProfile = executorProfile;
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Max time close() waits for the requests in flight, and then for the threads created by the builder to stop.
+     *
+     * @param shutdownTimeout defaults to 30 seconds
+     * @return this builder
+     */
+    public BccApiBuilder withShutdownTimeout(Duration shutdownTimeout) {
+        Objects.requireNonNull(shutdownTimeout, "Duration is 'null'");
+        this.shutdownTimeout = shutdownTimeout;
+        return this;
+    }
+
+    /**
+     * Read the network information on a single schedule for every component of the application, see
+     * {@link BccApi#networkTipPoller()}. The poller is stopped when the client is closed.
+     *
+     * @param interval delay between two reads of the network information
+     * @return this builder
+     */
+    public BccApiBuilder withNetworkTipPoller(Duration interval) {
+        Objects.requireNonNull(interval, "Duration is 'null'");
+        if (interval.isZero() || interval.isNegative()) {
+            throw new IllegalArgumentException("interval must be positive, was " + interval);
+        }
+        this.tipPollInterval = interval;
+        return this;
+    }
+
+    /**
+     * Builds a client releasing, on close, the actor system, executor and connection pool created for it.
+     * The ActorSystem and ExecutorService given to this builder are left running.
+     *
+     * @return client sending the requests asynchronously
+     */
     public BccApi build() {
+        return buildImpl();
+    }
 
-        if (actorSystem == null) {
-            actorSystem = ActorSystem.create("BccJPIActorSystem");
+    /**
+     * Builds a client whose calls block until the response arrives, see {@link VirtualThreads} to run them.
+     *
+     * @return blocking client configured like the one returned by build()
+     */
+    public BccApiSync buildSync() {
+        BccApiImpl api = buildImpl();
+        return new BccApiSyncImpl(api, api.getHelpExecute());
+    }
+
+    private BccApiImpl buildImpl() {
+
+        ActorSystem as = actorSystem;
+        ActorSystem ownedActorSystem = null;
+        if (as == null) {
+            as = ActorSystem.create("BccJPIActorSystem");
+            ownedActorSystem = as;
+        }
+
+        // responses are decoded apart from the dispatcher serving the http connections
+        ExecutionContext ec;
+        ExecutorService ownedExecutorService = null;
+        if (executorService != null) {
+            ec = ExecutionContext.fromExecutorService(executorService);
+        } else if (executorProfile == ExecutorProfile.ACTOR_SYSTEM) {
+            ec = as.dispatchers().hasDispatcher(DECODE_DISPATCHER)
+                    ? as.dispatchers().lookup(DECODE_DISPATCHER)
+                    : as.dispatcher();
+        } else {
+            ownedExecutorService = executorProfile == ExecutorProfile.VIRTUAL_THREADS
+                    ? VirtualThreads.newTaskExecutor(parallelism)
+                    : new ForkJoinPool(parallelism);
+            ec = ExecutionContext.fromExecutorService(ownedExecutorService);
+        }
+
+        PooledApiRequestExecutor.Settings pool = poolSettings;
+        if (keepAliveTimeout != null) {
+            pool = (pool == null ? PooledApiRequestExecutor.defaultSettings() : pool)
+                    .withKeepAliveTimeout(keepAliveTimeout)
+                    .withIdleTimeout(idleTimeout)
+                    .withPipeliningLimit(pipeliningLimit);
+        }
+
+        iog.psg.bcc.ApiRequestExecutor requestExecutor = iog.psg.bcc.ApiRequestExecutor$.MODULE$;
+        PooledApiRequestExecutor pooledExecutor = null;
+        if (scalaApiRequestExecutor != null) {
+            requestExecutor = scalaApiRequestExecutor;
+        } else if (pool != null) {
+            pooledExecutor = metrics == null
+                    ? new PooledApiRequestExecutor(pool, as)
+                    : new PooledApiRequestExecutor(pool, metrics, as);
+            requestExecutor = pooledExecutor;
+        }
+        if (concurrencyLimiter != null) {
+            requestExecutor = concurrencyLimiter.wrap(requestExecutor);
+        }
+        if (circuitBreakerSettings != null) {
+            requestExecutor = new CircuitBreakingApiRequestExecutor(requestExecutor, circuitBreakerSettings);
+        }
+        if (retrySettings != null) {
+            requestExecutor = new RetryingApiRequestExecutor(requestExecutor, retrySettings);
+        }
+        if (walletWorkQueues != null) {
+            // retries of a write keep its wallet's turn
+            requestExecutor = walletWorkQueues.wrap(requestExecutor);
+        }
+        if (responseCache != null) {
+            requestExecutor = responseCache.wrap(requestExecutor);
         }
 
-        if (executorService == null) {
-            executorService = Executors.newCachedThreadPool();
+        if (metrics != null) {
+            requestExecutor = new MetricsApiRequestExecutor(requestExecutor, metrics);
+        }
+        if (compression) {
+            requestExecutor = new CompressingApiRequestExecutor(
+                    requestExecutor, CompressingApiRequestExecutor.supportedEncodings());
         }
 
-        ExecutionContext ec = ExecutionContext.fromExecutorService(executorService);
+        DrainingApiRequestExecutor draining = new DrainingApiRequestExecutor(requestExecutor);
 
         HelpExecute helpExecute;
 
         if (apiRequestExecutor == null) {
-            helpExecute = new HelpExecute(ec, actorSystem);
+            helpExecute = new HelpExecute(draining, ec, as);
         } else {
-            helpExecute = new HelpExecute(ec, actorSystem) {
+            helpExecute = new HelpExecute(draining, ec, as) {
                 @Override
                 public <T> CompletionStage<T> execute(iog.psg.bcc.BccApi.BccApiRequest<T> request) throws BccApiException {
-                    return apiRequestExecutor.execute(request);
+                    if (!draining.tryAcquire()) {
+                        CompletableFuture<T> closed = new CompletableFuture<>();
+                        closed.completeExceptionally(new BccApiException(
+                                draining.closedError().message(), draining.closedError().code()));
+                        return closed;
+                    }
+                    try {
+                        return apiRequestExecutor.execute(request).whenComplete((result, error) -> draining.release());
+                    } catch (BccApiException | RuntimeException e) {
+                        draining.release();
+                        throw e;
+                    }
                 }
             };
         }
 
-        iog.psg.bcc.BccApi api = iog.psg.bcc.BccApi.apply(url, ec, actorSystem);
+        iog.psg.bcc.BccApi api = codecBackend == null
+                ? iog.psg.bcc.BccApi.apply(url, ec, as)
+                : iog.psg.bcc.BccApi.apply(url, codecBackend, ec, as);
+
+        NetworkTipPoller tipPoller = null;
+        if (tipPollInterval != null) {
+            tipPoller = new NetworkTipPoller(api,
+                    new NetworkTipPoller.Settings(
+                            scala.concurrent.duration.Duration.fromNanos(tipPollInterval.toNanos()),
+                            NetworkTipPoller.defaultSettings().bufferSize()),
+                    draining, ec, as);
+        }
+
+        ClientResources resources = new ClientResources(
+                draining, shutdownTimeout, tipPoller, pooledExecutor, ownedExecutorService, ownedActorSystem);
 
-        return new BccApiImpl(api, helpExecute);
+        return new BccApiImpl(api, helpExecute, resources);
     }
 
 }
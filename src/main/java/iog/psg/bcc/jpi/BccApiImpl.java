@@ -1,12 +1,15 @@
 package iog.psg.bcc.jpi;
 
 import iog.psg.bcc.BccApiCodec;
+import iog.psg.bcc.NetworkTipPoller;
+import org.reactivestreams.Publisher;
 import scala.Enumeration;
 import scala.Some;
 import scala.collection.immutable.IndexedSeq;
 import scala.collection.immutable.Seq;
 import scala.jdk.javaapi.CollectionConverters;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -15,12 +18,16 @@ import java.util.concurrent.CompletionStage;
 
 public class BccApiImpl implements BccApi {
 
+    private static final int DEFAULT_DECODE_PARALLELISM = 4;
+
     private final iog.psg.bcc.BccApi api;
     private final HelpExecute helpExecute;
+    private final ClientResources resources;
 
     private BccApiImpl() {
         helpExecute = null;
         api = null;
+        resources = null;
     }
 
     /**
@@ -30,12 +37,39 @@ public class BccApiImpl implements BccApi {
      * @param helpExecute og.psg.bcc.jpi.HelpExecute instance
      */
     public BccApiImpl(iog.psg.bcc.BccApi api, HelpExecute helpExecute) {
+        this(api, helpExecute, null);
+    }
+
+    BccApiImpl(iog.psg.bcc.BccApi api, HelpExecute helpExecute, ClientResources resources) {
         this.helpExecute = helpExecute;
         this.api = api;
+        this.resources = resources;
         Objects.requireNonNull(api, "Api cannot be null");
         Objects.requireNonNull(helpExecute, "HelpExecute cannot be null");
     }
 
+    HelpExecute getHelpExecute() {
+        return helpExecute;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<NetworkTipPoller> networkTipPoller() {
+        return Optional.ofNullable(resources == null ? null : resources.getTipPoller());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        if (resources != null) {
+            resources.close();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -116,6 +150,27 @@ public class BccApiImpl implements BccApi {
         return createTransaction(fromWalletId, passphrase, payments, null, "self");
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Publisher<BulkResult<BccApiCodec.CreateTransactionResponse>> createTransactions(
+            List<TransactionRequest> transactions, int parallelism) {
+        List<iog.psg.bcc.BccApi.TransactionRequest> requests = new ArrayList<>(transactions.size());
+        for (TransactionRequest tx : transactions) {
+            requests.add(new iog.psg.bcc.BccApi.TransactionRequest(
+                    tx.getWalletId(),
+                    tx.getPassphrase(),
+                    new BccApiCodec.Payments(CollectionConverters.asScala(tx.getPayments()).toSeq()),
+                    option(tx.getMetadata()),
+                    option(tx.getWithdrawal())));
+        }
+
+        return helpExecute.executeBulk(
+                api.createTransactions(CollectionConverters.asScala(requests).toSeq(), parallelism, helpExecute.bulkExecutor())
+        );
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -127,6 +182,16 @@ public class BccApiImpl implements BccApi {
                 api.getWallet(fromWalletId));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletionStage<List<BulkResult<BccApiCodec.Wallet>>> getWallets(
+            List<String> walletIds, int parallelism) {
+        return helpExecute.executeBulk(
+                api.getWallets(CollectionConverters.asScala(walletIds).toSeq(), parallelism, helpExecute.bulkExecutor()));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -149,6 +214,16 @@ public class BccApiImpl implements BccApi {
                 api.getTransaction(walletId, transactionId));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletionStage<List<BulkResult<BccApiCodec.CreateTransactionResponse>>> getTransactions(
+            String walletId, List<String> transactionIds, int parallelism) {
+        return helpExecute.executeBulk(
+                api.getTransactions(walletId, CollectionConverters.asScala(transactionIds).toSeq(), parallelism, helpExecute.bulkExecutor()));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -228,6 +303,16 @@ public class BccApiImpl implements BccApi {
         return helpExecute.execute(api.inspectAddress(addressId));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletionStage<List<BulkResult<BccApiCodec.WalletAddress>>> inspectAddresses(
+            List<String> addressIds, int parallelism) {
+        return helpExecute.executeBulk(
+                api.inspectAddresses(CollectionConverters.asScala(addressIds).toSeq(), parallelism, helpExecute.bulkExecutor()));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -244,6 +329,31 @@ public class BccApiImpl implements BccApi {
                 .thenApply(CollectionConverters::asJava);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Publisher<BccApiCodec.CreateTransactionResponse> listTransactionsStream(
+            ListTransactionsParamBuilder builder, int parallelism) {
+        return helpExecute.executeStream(
+                api.listTransactionsStream(
+                        builder.getWalletId(),
+                        option(builder.getStartTime()),
+                        option(builder.getEndTime()),
+                        builder.getOrder(),
+                        option(builder.getMinwithdrawal()),
+                        parallelism));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Publisher<BccApiCodec.CreateTransactionResponse> listTransactionsStream(
+            ListTransactionsParamBuilder builder) {
+        return listTransactionsStream(builder, DEFAULT_DECODE_PARALLELISM);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,450 @@
+package iog.psg.bcc.jpi;
+
+import iog.psg.bcc.BccApiCodec;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+public class BccApiSyncImpl implements BccApiSync {
+
+    private final BccApi api;
+    private final HelpExecute helpExecute;
+
+    private BccApiSyncImpl() {
+        api = null;
+        helpExecute = null;
+    }
+
+    /**
+     * BccApiSync constructor
+     *
+     * @param api iog.psg.bcc.jpi.BccApi instance the calls are sent through
+     * @param helpExecute iog.psg.bcc.jpi.HelpExecute instance of the api
+     */
+    public BccApiSyncImpl(BccApi api, HelpExecute helpExecute) {
+        this.api = api;
+        this.helpExecute = helpExecute;
+        Objects.requireNonNull(api, "Api cannot be null");
+        Objects.requireNonNull(helpExecute, "HelpExecute cannot be null");
+    }
+
+    /**
+     * Parks the calling thread until the response arrives, which only costs a virtual thread its stack.
+     * The failure of the request is thrown as is rather than wrapped in an ExecutionException.
+     */
+    private static <T> T await(CompletionStage<T> response) throws BccApiException {
+        try {
+            return response.toCompletableFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            CancellationException cancelled = new CancellationException("Interrupted while waiting for the response");
+            cancelled.initCause(e);
+            throw cancelled;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BccApiException) {
+                throw (BccApiException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.Wallet createRestore(
+            String name,
+            String passphrase,
+            List<String> mnemonicWordList,
+            int addressPoolGap) throws BccApiException {
+        return await(api.createRestore(name, passphrase, mnemonicWordList, addressPoolGap));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.Wallet createRestore(
+            String name,
+            String passphrase,
+            List<String> mnemonicWordList,
+            List<String> mnemonicSecondFactor,
+            int addressPoolGap) throws BccApiException {
+        return await(api.createRestore(name, passphrase, mnemonicWordList, mnemonicSecondFactor, addressPoolGap));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.Wallet createRestoreWithKey(
+            String name,
+            String accountPublicKey,
+            int addressPoolGap) throws BccApiException {
+        return await(api.createRestoreWithKey(name, accountPublicKey, addressPoolGap));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.CreateTransactionResponse createTransaction(
+            String fromWalletId,
+            String passphrase,
+            List<BccApiCodec.Payment> payments,
+            BccApiCodec.TxMetadataIn metadata,
+            String withdrawal) throws BccApiException {
+        return await(api.createTransaction(fromWalletId, passphrase, payments, metadata, withdrawal));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.CreateTransactionResponse createTransaction(
+            String fromWalletId,
+            String passphrase,
+            List<BccApiCodec.Payment> payments) throws BccApiException {
+        return await(api.createTransaction(fromWalletId, passphrase, payments));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Stream<BulkResult<BccApiCodec.CreateTransactionResponse>> createTransactions(
+            List<TransactionRequest> transactions,
+            int parallelism) {
+        return helpExecute.blockingStream(api.createTransactions(transactions, parallelism));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.Wallet getWallet(
+            String fromWalletId) throws BccApiException {
+        return await(api.getWallet(fromWalletId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<BulkResult<BccApiCodec.Wallet>> getWallets(
+            List<String> walletIds,
+            int parallelism) throws BccApiException {
+        return await(api.getWallets(walletIds, parallelism));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteWallet(
+            String fromWalletId) throws BccApiException {
+        await(api.deleteWallet(fromWalletId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.CreateTransactionResponse getTransaction(
+            String walletId,
+            String transactionId) throws BccApiException {
+        return await(api.getTransaction(walletId, transactionId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<BulkResult<BccApiCodec.CreateTransactionResponse>> getTransactions(
+            String walletId,
+            List<String> transactionIds,
+            int parallelism) throws BccApiException {
+        return await(api.getTransactions(walletId, transactionIds, parallelism));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteTransaction(
+            String walletId,
+            String transactionId) throws BccApiException {
+        await(api.deleteTransaction(walletId, transactionId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.EstimateFeeResponse estimateFee(
+            String walletId,
+            List<BccApiCodec.Payment> payments) throws BccApiException {
+        return await(api.estimateFee(walletId, payments));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.EstimateFeeResponse estimateFee(
+            String walletId,
+            List<BccApiCodec.Payment> payments,
+            String withdrawal,
+            BccApiCodec.TxMetadataIn metadata) throws BccApiException {
+        return await(api.estimateFee(walletId, payments, withdrawal, metadata));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.FundPaymentsResponse fundPayments(
+            String walletId,
+            List<BccApiCodec.Payment> payments) throws BccApiException {
+        return await(api.fundPayments(walletId, payments));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<BccApiCodec.WalletAddressId> listAddresses(
+            String walletId,
+            AddressFilter addressFilter) throws BccApiException {
+        return await(api.listAddresses(walletId, addressFilter));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<BccApiCodec.WalletAddressId> listAddresses(
+            String walletId) throws BccApiException {
+        return await(api.listAddresses(walletId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.WalletAddress inspectAddress(
+            String addressId) throws BccApiException {
+        return await(api.inspectAddress(addressId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<BulkResult<BccApiCodec.WalletAddress>> inspectAddresses(
+            List<String> addressIds,
+            int parallelism) throws BccApiException {
+        return await(api.inspectAddresses(addressIds, parallelism));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<BccApiCodec.CreateTransactionResponse> listTransactions(
+            ListTransactionsParamBuilder builder) throws BccApiException {
+        return await(api.listTransactions(builder));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Stream<BccApiCodec.CreateTransactionResponse> listTransactionsStream(
+            ListTransactionsParamBuilder builder,
+            int parallelism) {
+        return helpExecute.blockingStream(api.listTransactionsStream(builder, parallelism));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Stream<BccApiCodec.CreateTransactionResponse> listTransactionsStream(
+            ListTransactionsParamBuilder builder) {
+        return helpExecute.blockingStream(api.listTransactionsStream(builder));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<BccApiCodec.Wallet> listWallets() throws BccApiException {
+        return await(api.listWallets());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updatePassphrase(
+            String walletId,
+            String oldPassphrase,
+            String newPassphrase) throws BccApiException {
+        await(api.updatePassphrase(walletId, oldPassphrase, newPassphrase));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.Wallet updateName(
+            String walletId,
+            String name) throws BccApiException {
+        return await(api.updateName(walletId, name));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.NetworkInfo networkInfo() throws BccApiException {
+        return await(api.networkInfo());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.NetworkClock networkClock() throws BccApiException {
+        return await(api.networkClock());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.NetworkClock networkClock(
+            Boolean forceNtpCheck) throws BccApiException {
+        return await(api.networkClock(forceNtpCheck));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.NetworkParameters networkParameters() throws BccApiException {
+        return await(api.networkParameters());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.UTxOStatistics getUTxOsStatistics(
+            String walletId) throws BccApiException {
+        return await(api.getUTxOsStatistics(walletId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.PostExternalTransactionResponse postExternalTransaction(
+            String binary) throws BccApiException {
+        return await(api.postExternalTransaction(binary));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<BccApiCodec.MigrationResponse> migrateSophieWallet(
+            String walletId,
+            String passphrase,
+            List<String> addresses) throws BccApiException {
+        return await(api.migrateSophieWallet(walletId, passphrase, addresses));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.MigrationCostResponse getSophieWalletMigrationInfo(
+            String walletId) throws BccApiException {
+        return await(api.getSophieWalletMigrationInfo(walletId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<BccApiCodec.StakePool> listStakePools(
+            Integer stake) throws BccApiException {
+        return await(api.listStakePools(stake));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.EstimateFeeResponse estimateFeeStakePool(
+            String walletId) throws BccApiException {
+        return await(api.estimateFeeStakePool(walletId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.MigrationResponse joinStakePool(
+            String walletId,
+            String stakePoolId,
+            String passphrase) throws BccApiException {
+        return await(api.joinStakePool(walletId, stakePoolId, passphrase));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.MigrationResponse quitStakePool(
+            String walletId,
+            String passphrase) throws BccApiException {
+        return await(api.quitStakePool(walletId, passphrase));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BccApiCodec.StakePoolMaintenanceActionsStatus getMaintenanceActions() throws BccApiException {
+        return await(api.getMaintenanceActions());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void postMaintenanceAction() throws BccApiException {
+        await(api.postMaintenanceAction());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        api.close();
+    }
+}
@@ -0,0 +1,68 @@
+package iog.psg.bcc.jpi;
+
+/**
+ * Outcome of a single item of a bulk call, either a result or the error message and code from the API.
+ *
+ * @param <T> type of the item's result
+ */
+public class BulkResult<T> {
+
+    private final int index;
+    private final T result;
+    private final String errorMessage;
+    private final String errorCode;
+
+    private BulkResult(int index, T result, String errorMessage, String errorCode) {
+        this.index = index;
+        this.result = result;
+        this.errorMessage = errorMessage;
+        this.errorCode = errorCode;
+    }
+
+    public static <T> BulkResult<T> success(int index, T result) {
+        return new BulkResult<>(index, result, null, null);
+    }
+
+    public static <T> BulkResult<T> failure(int index, String errorMessage, String errorCode) {
+        return new BulkResult<>(index, null, errorMessage, errorCode);
+    }
+
+    /**
+     * @return position of the item in the input of the bulk call
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean isSuccess() {
+        return errorCode == null;
+    }
+
+    /**
+     * @return item's result, null on error
+     */
+    public T getResult() {
+        return result;
+    }
+
+    /**
+     * @return error message from the API, null on success
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * @return error code from the API, null on success
+     */
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess()
+                ? "BulkResult(" + index + ", " + result + ")"
+                : "BulkResult(" + index + ", Message: " + errorMessage + ", Code: " + errorCode + ")";
+    }
+}
@@ -0,0 +1,101 @@
+package iog.psg.bcc.jpi;
+
+import akka.actor.ActorSystem;
+import iog.psg.bcc.DrainingApiRequestExecutor;
+import iog.psg.bcc.NetworkTipPoller;
+import iog.psg.bcc.PooledApiRequestExecutor;
+import scala.jdk.javaapi.FutureConverters;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * What a client built by {@link BccApiBuilder} releases when it is closed: the tip poller is stopped, requests in
+ * flight are waited for, then the pool, executor and actor system created by the builder are shut down. Resources given to the
+ * builder are left running.
+ */
+class ClientResources implements AutoCloseable {
+
+    private final DrainingApiRequestExecutor draining;
+    private final NetworkTipPoller tipPoller;
+    private final Duration shutdownTimeout;
+    private final PooledApiRequestExecutor pooledExecutor;
+    private final ExecutorService ownedExecutorService;
+    private final ActorSystem ownedActorSystem;
+    private boolean closed;
+
+    /**
+     * @param draining outermost executor of the client
+     * @param shutdownTimeout max time waited for the requests in flight, then for every resource to stop
+     * @param tipPoller nullable, network tip poller created by the builder
+     * @param pooledExecutor nullable, pool created by the builder
+     * @param ownedExecutorService nullable, executor created by the builder
+     * @param ownedActorSystem nullable, actor system created by the builder
+     */
+    ClientResources(DrainingApiRequestExecutor draining,
+                    Duration shutdownTimeout,
+                    NetworkTipPoller tipPoller,
+                    PooledApiRequestExecutor pooledExecutor,
+                    ExecutorService ownedExecutorService,
+                    ActorSystem ownedActorSystem) {
+        this.draining = draining;
+        this.shutdownTimeout = shutdownTimeout;
+        this.tipPoller = tipPoller;
+        this.pooledExecutor = pooledExecutor;
+        this.ownedExecutorService = ownedExecutorService;
+        this.ownedActorSystem = ownedActorSystem;
+    }
+
+    NetworkTipPoller getTipPoller() {
+        return tipPoller;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (tipPoller != null) {
+            tipPoller.close();
+        }
+        try {
+            await(() -> FutureConverters.asJava(draining.close()).toCompletableFuture()
+                    .get(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS));
+
+            if (pooledExecutor != null) {
+                pooledExecutor.shutdown();
+            }
+            if (ownedExecutorService != null) {
+                ownedExecutorService.shutdown();
+                await(() -> ownedExecutorService.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS));
+            }
+            if (ownedActorSystem != null) {
+                ownedActorSystem.terminate();
+                await(() -> ownedActorSystem.getWhenTerminated().toCompletableFuture()
+                        .get(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface Wait {
+        void run() throws InterruptedException, ExecutionException, TimeoutException;
+    }
+
+    /**
+     * A wait timing out or failing does not stop the remaining resources from being shut down.
+     */
+    private static void await(Wait wait) throws InterruptedException {
+        try {
+            wait.run();
+        } catch (ExecutionException | TimeoutException e) {
+            // shut down the rest anyway
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package iog.psg.bcc.jpi;
+
+/**
+ * Threads decoding the responses and running the callbacks of a client built by {@link BccApiBuilder},
+ * the http connections are always served by the actor system's default dispatcher.
+ */
+public enum ExecutorProfile {
+
+    /**
+     * A ForkJoinPool of the configured parallelism, shut down when the client is closed.
+     */
+    FORK_JOIN,
+
+    /**
+     * A virtual thread per task on JDK 21+, else a fixed pool of the configured parallelism.
+     * Shut down when the client is closed.
+     */
+    VIRTUAL_THREADS,
+
+    /**
+     * The actor system's {@code bcc.decode-dispatcher}, configured in reference.conf, or its default dispatcher
+     * when an application config removes it.
+     */
+    ACTOR_SYSTEM
+}
@@ -0,0 +1,24 @@
+package iog.psg.bcc.jpi;
+
+import org.reactivestreams.FlowAdapters;
+import org.reactivestreams.Publisher;
+
+import java.util.concurrent.Flow;
+
+/**
+ * Adapts the publishers returned by {@link BccApi} to {@link Flow.Publisher} on JDK 9+. Only this class references
+ * {@link Flow}, so the rest of the client still loads on JDK 8.
+ */
+public final class FlowPublishers {
+
+    private FlowPublishers() {
+    }
+
+    /**
+     * @param publisher e.g. the publisher of {@link BccApi#listTransactionsStream(ListTransactionsParamBuilder)}
+     * @return the same elements, demand and signals, as a {@link Flow.Publisher}
+     */
+    public static <T> Flow.Publisher<T> toFlow(Publisher<T> publisher) {
+        return FlowAdapters.toFlowPublisher(publisher);
+    }
+}
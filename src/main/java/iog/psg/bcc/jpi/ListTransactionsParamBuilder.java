@@ -3,7 +3,11 @@ package iog.psg.bcc.jpi;
 import iog.psg.bcc.BccApi;
 import scala.Enumeration;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 public class ListTransactionsParamBuilder {
@@ -73,5 +77,45 @@ public class ListTransactionsParamBuilder {
         return this;
     }
 
+    /**
+     * Splits the [startTime, endTime] range of this builder into consecutive slices no longer than sliceLength.
+     * Neighbouring slices share their edge, so a transaction inserted exactly on an edge may be listed by both.
+     *
+     * @param sliceLength max length of a slice
+     * @return builders for every slice, in the order requested by this builder
+     */
+    public List<ListTransactionsParamBuilder> sliceByTime(Duration sliceLength) {
+        Objects.requireNonNull(sliceLength, "Slice length cannot be null");
+        Objects.requireNonNull(startTime, "Start time is required to slice the range");
+        Objects.requireNonNull(endTime, "End time is required to slice the range");
+        if (sliceLength.isZero() || sliceLength.isNegative()) {
+            throw new IllegalArgumentException("Slice length must be positive (not " + sliceLength + ")");
+        }
+        if (startTime.isAfter(endTime)) {
+            throw new IllegalArgumentException("Start time " + startTime + " is after end time " + endTime);
+        }
+
+        List<ListTransactionsParamBuilder> slices = new ArrayList<>();
+        ZonedDateTime sliceStart = startTime;
+        do {
+            ZonedDateTime sliceEnd = sliceStart.plus(sliceLength);
+            if (sliceEnd.isAfter(endTime)) {
+                sliceEnd = endTime;
+            }
+            ListTransactionsParamBuilder slice = create(walletId)
+                    .withStartTime(sliceStart)
+                    .withEndTime(sliceEnd)
+                    .withOrder(order);
+            slice.minwithdrawal = minwithdrawal;
+            slices.add(slice);
+            sliceStart = sliceEnd;
+        } while (sliceStart.isBefore(endTime));
+
+        if (order != Order.ASCENDING) {
+            Collections.reverse(slices);
+        }
+        return slices;
+    }
+
 
 }
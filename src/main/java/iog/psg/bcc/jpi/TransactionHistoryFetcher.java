@@ -0,0 +1,140 @@
+package iog.psg.bcc.jpi;
+
+import iog.psg.bcc.BccApiCodec;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fetches the transactions of a time range as several smaller listTransactions calls, running at most
+ * `parallelism` of them at once. Results of completed slices are kept, so calling fetch again after a
+ * failure only requests the slices that did not complete.
+ */
+public class TransactionHistoryFetcher {
+
+    private final BccApi api;
+    private final List<ListTransactionsParamBuilder> slices;
+    private final int parallelism;
+    private final AtomicReferenceArray<List<BccApiCodec.CreateTransactionResponse>> sliceResults;
+
+    private TransactionHistoryFetcher() {
+        api = null;
+        slices = null;
+        parallelism = 0;
+        sliceResults = null;
+    }
+
+    /**
+     * TransactionHistoryFetcher constructor
+     *
+     * @param api api used to list the transactions of every slice
+     * @param range wallet id, start time, end time, order and min withdrawal of the whole range
+     * @param sliceLength max length of the time range listed by a single call
+     * @param parallelism max number of slices requested at the same time
+     */
+    public TransactionHistoryFetcher(BccApi api, ListTransactionsParamBuilder range, Duration sliceLength, int parallelism) {
+        Objects.requireNonNull(api, "Api cannot be null");
+        Objects.requireNonNull(range, "Range cannot be null");
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive (not " + parallelism + ")");
+        }
+        this.api = api;
+        this.slices = range.sliceByTime(sliceLength);
+        this.parallelism = parallelism;
+        this.sliceResults = new AtomicReferenceArray<>(slices.size());
+    }
+
+    public int getSliceCount() {
+        return slices.size();
+    }
+
+    public int getCompletedSliceCount() {
+        int completed = 0;
+        for (int i = 0; i < sliceResults.length(); i++) {
+            if (sliceResults.get(i) != null) {
+                completed++;
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Requests every slice not completed by a previous call, one fetch should run at a time.
+     *
+     * @return transactions of the whole range in the requested order, without the duplicates found at slice edges.
+     * Fails with the first slice failure, slices completed until then are not requested again by the next call.
+     */
+    public CompletionStage<List<BccApiCodec.CreateTransactionResponse>> fetch() {
+        CompletableFuture<List<BccApiCodec.CreateTransactionResponse>> result = new CompletableFuture<>();
+        Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < sliceResults.length(); i++) {
+            if (sliceResults.get(i) == null) {
+                pending.add(i);
+            }
+        }
+
+        AtomicInteger remaining = new AtomicInteger(pending.size());
+        if (pending.isEmpty()) {
+            result.complete(merge());
+        } else {
+            int workers = Math.min(parallelism, pending.size());
+            for (int i = 0; i < workers; i++) {
+                fetchNext(pending, remaining, result);
+            }
+        }
+        return result;
+    }
+
+    private void fetchNext(Queue<Integer> pending,
+                           AtomicInteger remaining,
+                           CompletableFuture<List<BccApiCodec.CreateTransactionResponse>> result) {
+        Integer index = pending.poll();
+        if (index == null || result.isDone()) {
+            return;
+        }
+
+        CompletionStage<List<BccApiCodec.CreateTransactionResponse>> slice;
+        try {
+            slice = api.listTransactions(slices.get(index));
+        } catch (BccApiException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        slice.whenComplete((transactions, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                sliceResults.set(index, transactions);
+                if (remaining.decrementAndGet() == 0) {
+                    result.complete(merge());
+                } else {
+                    fetchNext(pending, remaining, result);
+                }
+            }
+        });
+    }
+
+    private List<BccApiCodec.CreateTransactionResponse> merge() {
+        List<BccApiCodec.CreateTransactionResponse> merged = new ArrayList<>();
+        Set<String> seenIds = new HashSet<>();
+        for (int i = 0; i < sliceResults.length(); i++) {
+            for (BccApiCodec.CreateTransactionResponse transaction : sliceResults.get(i)) {
+                if (seenIds.add(transaction.id())) {
+                    merged.add(transaction);
+                }
+            }
+        }
+        return merged;
+    }
+}
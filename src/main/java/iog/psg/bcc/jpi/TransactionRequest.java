@@ -0,0 +1,82 @@
+package iog.psg.bcc.jpi;
+
+import iog.psg.bcc.BccApiCodec;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One transaction of a bulk submission, see {@link BccApi#createTransactions(List, int)}.
+ */
+public class TransactionRequest {
+
+    private final String walletId;
+    private final String passphrase;
+    private final List<BccApiCodec.Payment> payments;
+    private final BccApiCodec.TxMetadataIn metadata;
+    private final String withdrawal;
+
+    private TransactionRequest() {
+        walletId = null;
+        passphrase = null;
+        payments = null;
+        metadata = null;
+        withdrawal = null;
+    }
+
+    /**
+     * TransactionRequest constructor
+     *
+     * @param walletId wallet's id
+     * @param passphrase The wallet's master passphrase. [ 0 .. 255 ] characters
+     * @param payments A list of target outputs ( address, amount )
+     * @param metadata Extra application data attached to the transaction, may be null
+     * @param withdrawal Optional, when provided, instruments the server to automatically withdraw rewards from the source
+     *                   wallet when they are deemed sufficient, may be null
+     */
+    public TransactionRequest(String walletId,
+                              String passphrase,
+                              List<BccApiCodec.Payment> payments,
+                              BccApiCodec.TxMetadataIn metadata,
+                              String withdrawal) {
+        Objects.requireNonNull(walletId, "WalletId cannot be null");
+        Objects.requireNonNull(passphrase, "Passphrase cannot be null");
+        Objects.requireNonNull(payments, "Payments cannot be null");
+        this.walletId = walletId;
+        this.passphrase = passphrase;
+        this.payments = payments;
+        this.metadata = metadata;
+        this.withdrawal = withdrawal;
+    }
+
+    /**
+     * TransactionRequest constructor, without metadata and with "self" withdrawal
+     *
+     * @param walletId wallet's id
+     * @param passphrase The wallet's master passphrase. [ 0 .. 255 ] characters
+     * @param payments A list of target outputs ( address, amount )
+     */
+    public TransactionRequest(String walletId, String passphrase, List<BccApiCodec.Payment> payments) {
+        this(walletId, passphrase, payments, null, "self");
+    }
+
+    public String getWalletId() {
+        return walletId;
+    }
+
+    public String getPassphrase() {
+        return passphrase;
+    }
+
+    public List<BccApiCodec.Payment> getPayments() {
+        return payments;
+    }
+
+    public BccApiCodec.TxMetadataIn getMetadata() {
+        return metadata;
+    }
+
+    public String getWithdrawal() {
+        return withdrawal;
+    }
+}
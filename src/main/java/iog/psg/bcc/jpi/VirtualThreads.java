@@ -0,0 +1,72 @@
+package iog.psg.bcc.jpi;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for code calling {@link BccApiSync}. On JDK 21+ every task gets its own virtual thread, which
+ * costs next to nothing while it waits for a response. Older JDKs get a bounded pool of platform threads.
+ */
+public final class VirtualThreads {
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadPerTaskExecutor();
+
+    private VirtualThreads() {
+    }
+
+    private static Method findVirtualThreadPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return whether this JDK runs tasks on virtual threads
+     */
+    public static boolean isAvailable() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * @param maxPlatformThreads max number of threads when virtual threads are not available, further tasks wait in a queue
+     * @return executor starting a virtual thread per task, or a fixed pool of daemon platform threads
+     */
+    public static ExecutorService newTaskExecutor(int maxPlatformThreads) {
+        if (maxPlatformThreads < 1) {
+            throw new IllegalArgumentException("maxPlatformThreads must be positive (not " + maxPlatformThreads + ")");
+        }
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // e.g. preview features disabled, use platform threads
+            }
+        }
+        return newPlatformExecutor(maxPlatformThreads);
+    }
+
+    /**
+     * @param maxThreads max number of threads, further tasks wait in a queue
+     * @return fixed pool of daemon platform threads, what {@link #newTaskExecutor} falls back to before JDK 21
+     */
+    public static ExecutorService newPlatformExecutor(int maxThreads) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("maxThreads must be positive (not " + maxThreads + ")");
+        }
+        return Executors.newFixedThreadPool(maxThreads, daemonThreads("bcc-sync-"));
+    }
+
+    static ThreadFactory daemonThreads(String namePrefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
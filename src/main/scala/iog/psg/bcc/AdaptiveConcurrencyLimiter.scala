@@ -0,0 +1,233 @@
+package iog.psg.bcc
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.Uri
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse, ErrorMessage }
+
+import scala.collection.concurrent.TrieMap
+import scala.collection.mutable
+import scala.concurrent.duration.{ Duration, DurationInt, FiniteDuration }
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.util.{ Failure, Success }
+
+object AdaptiveConcurrencyLimiter {
+
+  val ConcurrencyLimitedCode = "CONCURRENCY LIMITED"
+
+  /**
+   * @param initialLimit requests in flight allowed to a backend before any latency is observed
+   * @param minLimit lowest limit the backend is brought down to
+   * @param maxLimit highest limit the backend is raised to
+   * @param maxQueued max number of requests waiting for a slot, more fail with a
+   *                  [[AdaptiveConcurrencyLimiter.ConcurrencyLimitedCode]] error
+   * @param windowSize number of latencies averaged before the limit is adjusted
+   * @param tolerance latency ratio to the lowest latency tolerated before the limit is lowered, e.g. 1.5 lowers it
+   *                  once requests take 50% longer than when the backend was idle
+   * @param smoothing share of a new limit taken at each adjustment, lower values adjust more slowly
+   * @param backoffRatio the limit is multiplied by it when a request fails or is answered with a 5xx status
+   * @param minRttWindow the lowest latency is forgotten after this, so a backend that got slower for good
+   *                     is not seen as overloaded forever
+   */
+  final case class Settings(initialLimit: Int = 20,
+                            minLimit: Int = 1,
+                            maxLimit: Int = 200,
+                            maxQueued: Int = 1000,
+                            windowSize: Int = 10,
+                            tolerance: Double = 1.5,
+                            smoothing: Double = 0.2,
+                            backoffRatio: Double = 0.9,
+                            minRttWindow: FiniteDuration = 1.minute) {
+    require(minLimit > 0, s"minLimit must be positive (not $minLimit)")
+    require(minLimit <= initialLimit && initialLimit <= maxLimit,
+      s"initialLimit ($initialLimit) must be in [minLimit ($minLimit), maxLimit ($maxLimit)]")
+    require(maxQueued >= 0, s"maxQueued must not be negative (not $maxQueued)")
+    require(windowSize > 0, s"windowSize must be positive (not $windowSize)")
+    require(tolerance >= 1, s"tolerance must be at least 1 (not $tolerance)")
+    require(smoothing > 0 && smoothing <= 1, s"smoothing must be in (0, 1] (not $smoothing)")
+    require(backoffRatio > 0 && backoffRatio < 1, s"backoffRatio must be in (0, 1) (not $backoffRatio)")
+    require(minRttWindow > Duration.Zero, s"minRttWindow must be positive (not $minRttWindow)")
+
+    def withLimits(initialLimit: Int, minLimit: Int, maxLimit: Int): Settings =
+      copy(initialLimit = initialLimit, minLimit = minLimit, maxLimit = maxLimit)
+
+    def withMaxQueued(maxQueued: Int): Settings = copy(maxQueued = maxQueued)
+  }
+
+  def defaultSettings: Settings = Settings()
+
+  /**
+   * @param limit requests in flight currently allowed
+   * @param inFlight requests in flight
+   * @param queued requests waiting for a slot
+   * @param minRttMillis lowest latency observed in the current window, 0 before the first one
+   * @param rejected requests refused because the queue was full
+   */
+  final case class Stats(limit: Int, inFlight: Int, queued: Int, minRttMillis: Double, rejected: Long)
+
+  private[bcc] def backendOf(uri: Uri): String = s"${uri.scheme}://${uri.authority}"
+
+  /**
+   * Limit of one backend, guarded by the instance.
+   */
+  private final class Backend(settings: Settings) {
+    var limit: Double = settings.initialLimit
+    var inFlight = 0
+    val waiting = mutable.Queue.empty[Promise[Unit]]
+    var rejected = 0L
+    var minRttNanos = Long.MaxValue
+    var minRttSince = System.nanoTime()
+    var windowNanos = 0L
+    var windowCount = 0
+
+    def allowed: Int = limit.toInt
+
+    /**
+     * Gradient of the latency to the lowest one: the limit shrinks as requests queue up in the backend, and grows by
+     * about its square root while the latency stays within the tolerance and the limit is used.
+     */
+    def sample(rttNanos: Long, inFlightAtStart: Int): Unit = {
+      val now = System.nanoTime()
+      if (now - minRttSince > settings.minRttWindow.toNanos) {
+        minRttNanos = Long.MaxValue
+        minRttSince = now
+      }
+      minRttNanos = math.min(minRttNanos, rttNanos)
+      windowNanos += rttNanos
+      windowCount += 1
+
+      if (windowCount >= settings.windowSize) {
+        val averageRtt = windowNanos.toDouble / windowCount
+        windowNanos = 0
+        windowCount = 0
+
+        val gradient = math.max(0.5, math.min(1.0, settings.tolerance * minRttNanos / averageRtt))
+        val target = limit * gradient + math.sqrt(limit)
+        // a limit not used is not raised, it says nothing about the backend
+        val applied = if (target > limit && inFlightAtStart < limit / 2) limit else target
+        limit = clamp(limit * (1 - settings.smoothing) + applied * settings.smoothing)
+      }
+    }
+
+    def overloaded(): Unit = {
+      limit = clamp(limit * settings.backoffRatio)
+      windowNanos = 0
+      windowCount = 0
+    }
+
+    private def clamp(value: Double): Double = math.max(settings.minLimit.toDouble, math.min(settings.maxLimit.toDouble, value))
+
+    /**
+     * @return the waiting requests given the slots freed
+     */
+    def admit(): List[Promise[Unit]] = {
+      val admitted = List.newBuilder[Promise[Unit]]
+      while (inFlight < allowed && waiting.nonEmpty) {
+        inFlight += 1
+        admitted += waiting.dequeue()
+      }
+      admitted.result()
+    }
+
+    def stats: Stats = Stats(
+      allowed,
+      inFlight,
+      waiting.size,
+      if (minRttNanos == Long.MaxValue) 0 else minRttNanos / 1e6,
+      rejected
+    )
+  }
+}
+
+/**
+ * Adjusts the number of requests in flight to each backend, by scheme, host and port, to its latency: the limit
+ * is lowered as the latency grows past `tolerance` times the lowest one observed, or when requests fail or are
+ * answered with a 5xx status, and raised while the latency stays low. Requests beyond the limit wait for a slot,
+ * up to `maxQueued`.
+ *
+ * The latency is measured until the response headers arrive. Use [[wrap]] to put the limiter in front of the
+ * executor sending the requests, under retrying executors so retries are limited too.
+ *
+ * @param settings limits and how fast they adapt
+ */
+class AdaptiveConcurrencyLimiter(settings: AdaptiveConcurrencyLimiter.Settings) {
+
+  import AdaptiveConcurrencyLimiter._
+
+  private val backends = TrieMap.empty[String, Backend]
+
+  private def backend(key: String): Backend = backends.getOrElseUpdate(key, new Backend(settings))
+
+  /**
+   * @param baseUrl url of the backend, e.g. http://localhost:8090/v2/
+   * @return requests in flight currently allowed to the backend
+   */
+  def limit(baseUrl: String): Int = stats(baseUrl).limit
+
+  /**
+   * @param baseUrl url of the backend, e.g. http://localhost:8090/v2/
+   */
+  def stats(baseUrl: String): Stats = {
+    val limited = backend(backendOf(Uri(baseUrl)))
+    limited.synchronized(limited.stats)
+  }
+
+  def wrap(underlying: ApiRequestExecutor): ApiRequestExecutor = new ApiRequestExecutor {
+    override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+      val limited = backend(backendOf(request.request.uri))
+      val slot = limited.synchronized {
+        if (limited.inFlight < limited.allowed) {
+          limited.inFlight += 1
+          Some(Future.unit)
+        } else if (limited.waiting.size < settings.maxQueued) {
+          val waiting = Promise[Unit]()
+          limited.waiting.enqueue(waiting)
+          Some(waiting.future)
+        } else {
+          limited.rejected += 1
+          None
+        }
+      }
+
+      slot match {
+        case None =>
+          Future.successful(Left(ErrorMessage(
+            s"Too many requests waiting for ${backendOf(request.request.uri)}", ConcurrencyLimitedCode)))
+        case Some(acquired) =>
+          acquired.flatMap(_ => send(limited, underlying, request))
+      }
+    }
+  }
+
+  private def send[T](limited: Backend, underlying: ApiRequestExecutor, request: BccApiRequest[T])(implicit
+    ec: ExecutionContext,
+    as: ActorSystem
+  ): Future[BccApiResponse[T]] = {
+    val inFlightAtStart = limited.synchronized(limited.inFlight)
+    val start = System.nanoTime()
+
+    val timed = BccApiRequest[T](
+      request.request,
+      response => {
+        val rtt = System.nanoTime() - start
+        limited.synchronized {
+          if (response.status.intValue() >= 500) limited.overloaded()
+          else limited.sample(rtt, inFlightAtStart)
+        }
+        request.mapper(response)
+      }
+    )
+
+    Future.delegate(underlying.execute(timed)).andThen {
+      case outcome =>
+        val admitted = limited.synchronized {
+          outcome match {
+            case Failure(_) => limited.overloaded()
+            case Success(_) =>
+          }
+          limited.inFlight -= 1
+          limited.admit()
+        }
+        admitted.foreach(_.success(()))
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package iog.psg.bcc
+
+import akka.actor.ActorSystem
+import iog.psg.bcc.BccApi.BccApiOps.BccApiRequestOps
+import iog.psg.bcc.BccApi.{ BccApiResponse, ErrorMessage }
+import iog.psg.bcc.BccApiCodec.{ AddressFilter, WalletAddressId }
+
+import scala.collection.concurrent.TrieMap
+import scala.collection.mutable
+import scala.concurrent.{ ExecutionContext, Future }
+
+object AddressTracker {
+
+  val NoUnusedAddressCode = "NO UNUSED ADDRESS"
+
+  /**
+   * @param refillBelow number of unused addresses left under which the unused addresses are listed again
+   *                    in the background, after an address is handed out
+   */
+  final case class Settings(refillBelow: Int = 5) {
+    require(refillBelow >= 0, s"refillBelow must not be negative (not $refillBelow)")
+  }
+
+  def defaultSettings: Settings = Settings()
+
+  /**
+   * @param unused addresses left to hand out
+   * @param handedOut addresses handed out and not seen used yet
+   * @param used addresses seen used
+   */
+  final case class Stats(unused: Int, handedOut: Int, used: Int)
+
+  /**
+   * Addresses of one wallet, guarded by the instance.
+   */
+  private final class WalletAddresses {
+    val unused = mutable.LinkedHashSet.empty[String]
+    val handedOut = mutable.HashSet.empty[String]
+    val used = mutable.HashSet.empty[String]
+    var loaded = false
+    var refreshing: Option[Future[BccApiResponse[Unit]]] = None
+
+    def take(): Option[String] = unused.headOption.map { id =>
+      unused -= id
+      handedOut += id
+      id
+    }
+
+    /**
+     * The whole pool, listed on the first load.
+     */
+    def load(addresses: Seq[WalletAddressId]): Unit = {
+      addresses.foreach { address =>
+        if (address.state.contains(AddressFilter.used)) used += address.id
+        else if (!handedOut(address.id)) unused += address.id
+      }
+      loaded = true
+    }
+
+    /**
+     * The unused addresses listed again, the ones no longer listed have been used.
+     */
+    def merge(unusedIds: Seq[String]): Unit = {
+      val listed = unusedIds.toSet
+      val nowUsed = unused.filterNot(listed) ++ handedOut.filterNot(listed)
+      unused --= nowUsed
+      handedOut --= nowUsed
+      used ++= nowUsed
+      unusedIds.foreach { id =>
+        if (!handedOut(id) && !used(id)) unused += id
+      }
+    }
+
+    def stats: Stats = Stats(unused.size, handedOut.size, used.size)
+  }
+}
+
+/**
+ * Hands out the unused addresses of wallets without listing them on every call: the addresses are listed once,
+ * then only the unused ones are listed again when few are left. An address is handed out once, to a single
+ * caller, until it is [[release]]d.
+ *
+ * @param api api of the wallet backend
+ * @param settings when to list the unused addresses again
+ */
+class AddressTracker(api: BccApi, settings: AddressTracker.Settings = AddressTracker.defaultSettings)(implicit
+  executor: ApiRequestExecutor,
+  ec: ExecutionContext,
+  as: ActorSystem
+) {
+
+  import AddressTracker._
+
+  private val wallets = TrieMap.empty[String, WalletAddresses]
+
+  private def addressesOf(walletId: String): WalletAddresses =
+    wallets.getOrElseUpdate(walletId, new WalletAddresses)
+
+  private def noUnusedAddress(walletId: String): ErrorMessage =
+    ErrorMessage(s"No unused address left in wallet $walletId", NoUnusedAddressCode)
+
+  /**
+   * Lists the whole pool the first time, then only the unused addresses. Calls made while a listing is in flight
+   * share its result.
+   */
+  private def refresh(walletId: String, addresses: WalletAddresses): Future[BccApiResponse[Unit]] =
+    addresses.synchronized {
+      addresses.refreshing.getOrElse {
+        val listed =
+          if (addresses.loaded)
+            api.listAddresses(walletId, Some(AddressFilter.unUsed)).execute.map(_.map { unusedAddresses =>
+              addresses.synchronized(addresses.merge(unusedAddresses.map(_.id)))
+            })
+          else
+            api.listAddresses(walletId, None).execute.map(_.map { allAddresses =>
+              addresses.synchronized(addresses.load(allAddresses))
+            })
+
+        val refreshing = listed.andThen { case _ => addresses.synchronized(addresses.refreshing = None) }
+        addresses.refreshing = Some(refreshing)
+        refreshing
+      }
+    }
+
+  private def take(walletId: String, addresses: WalletAddresses): BccApiResponse[WalletAddressId] = {
+    val (taken, left) = addresses.synchronized(addresses.take() -> addresses.unused.size)
+    if (taken.isDefined && left < settings.refillBelow) refresh(walletId, addresses)
+    taken.map(WalletAddressId(_, Some(AddressFilter.unUsed))).toRight(noUnusedAddress(walletId))
+  }
+
+  /**
+   * Hands out an unused address of the wallet, no other caller gets it until it is released.
+   *
+   * @param walletId wallet's id
+   * @return an unused address, a [[AddressTracker.NoUnusedAddressCode]] error when every unused address
+   *         of the wallet is handed out
+   */
+  def nextUnused(walletId: String): Future[BccApiResponse[WalletAddressId]] = {
+    val addresses = addressesOf(walletId)
+    val loaded = addresses.synchronized(addresses.loaded)
+    val handedOut = if (loaded) take(walletId, addresses) else Left(noUnusedAddress(walletId))
+
+    if (handedOut.isRight) Future.successful(handedOut)
+    else
+      refresh(walletId, addresses).map {
+        case Left(error) => Left(error)
+        case Right(_)    => take(walletId, addresses)
+      }
+  }
+
+  /**
+   * Puts back an address handed out but not used, e.g. for an abandoned payment.
+   *
+   * @param walletId wallet's id
+   * @param addressId address handed out by [[nextUnused]]
+   */
+  def release(walletId: String, addressId: String): Unit = {
+    val addresses = addressesOf(walletId)
+    addresses.synchronized {
+      if (addresses.handedOut.remove(addressId)) addresses.unused += addressId
+    }
+  }
+
+  /**
+   * Lists the unused addresses of the wallet again, e.g. after a payment to a handed out address.
+   *
+   * @param walletId wallet's id
+   * @return completes once the addresses are merged
+   */
+  def refresh(walletId: String): Future[BccApiResponse[Unit]] = refresh(walletId, addressesOf(walletId))
+
+  /**
+   * @param walletId wallet's id
+   * @return counts of the wallet's addresses, all zero before the first call for the wallet
+   */
+  def stats(walletId: String): Stats = {
+    val addresses = addressesOf(walletId)
+    addresses.synchronized(addresses.stats)
+  }
+}
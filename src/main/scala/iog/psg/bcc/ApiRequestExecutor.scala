@@ -2,11 +2,43 @@ package iog.psg.bcc
 
 import akka.actor.ActorSystem
 import akka.http.scaladsl.Http
+import akka.http.scaladsl.model.{ HttpRequest, HttpResponse }
 import iog.psg.bcc.BccApi.{BccApiRequest, BccApiResponse}
 
 import scala.concurrent.{ExecutionContext, Future}
 
-object ApiRequestExecutor extends ApiRequestExecutor
+object ApiRequestExecutor extends ApiRequestExecutor {
+
+  /**
+   * A request for the same http request which answers with the strict http response, so that decorating
+   * executors can keep or share the response and map it with the original request's mapper any number of times.
+   */
+  private[bcc] def strictResponseRequest(request: HttpRequest)(implicit ec: ExecutionContext, as: ActorSystem): BccApiRequest[HttpResponse] =
+    BccApiRequest(request, response => response.toStrict(BccApi.defaultMaxWaitTime).map(Right(_)))
+
+  /**
+   * Name of the endpoint targeted by a request: its method and path, with id-like segments
+   * (wallet, transaction, address or pool ids) replaced by `{id}`, e.g. `GET /v2/wallets/{id}/transactions/{id}`.
+   */
+  private[bcc] def endpointName(request: HttpRequest): String =
+    request.uri.path
+      .toString()
+      .split('/')
+      .map(segment => if (segment.length >= IdSegmentMinLength) "{id}" else segment)
+      .mkString(s"${request.method.value} ", "/", "")
+
+  private val IdSegmentMinLength = 16
+
+  private val TransactionListPath = ".*/wallets/[^/]+/transactions/?".r
+
+  /**
+   * Whether the request lists a wallet's transactions, whose response may be a history too large to be made strict:
+   * it is then streamed, see [[BccApi.listTransactionsStream]].
+   */
+  private[bcc] def isTransactionList(request: HttpRequest): Boolean =
+    TransactionListPath.matches(request.uri.path.toString())
+
+}
 
 trait ApiRequestExecutor {
 
@@ -0,0 +1,160 @@
+package iog.psg.bcc
+
+import java.util.concurrent.atomic.AtomicLong
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpMethods, HttpRequest, HttpResponse }
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse }
+
+import scala.concurrent.duration.{ DurationInt, FiniteDuration }
+import scala.concurrent.{ ExecutionContext, Future }
+
+object ApiResponseCache {
+
+  /**
+   * A ttl of zero turns caching off for that endpoint.
+   *
+   * @param walletTtl ttl of getWallet responses
+   * @param networkInfoTtl ttl of networkInfo responses
+   * @param networkParametersTtl ttl of networkParameters responses
+   * @param utxoStatisticsTtl ttl of getUTxOsStatistics responses
+   * @param maxEntries max number of cached responses, the least recently used is evicted first
+   */
+  final case class Settings(walletTtl: FiniteDuration = 5.seconds,
+                            networkInfoTtl: FiniteDuration = 2.seconds,
+                            networkParametersTtl: FiniteDuration = 5.minutes,
+                            utxoStatisticsTtl: FiniteDuration = 10.seconds,
+                            maxEntries: Int = 10000) {
+    require(maxEntries > 0, s"maxEntries must be positive (not $maxEntries)")
+  }
+
+  def defaultSettings: Settings = Settings()
+
+  final case class Stats(hits: Long, misses: Long, evictions: Long, size: Int)
+
+  private val WalletPath = ".*/wallets/([^/]+)".r
+  private val UTxOStatisticsPath = ".*/wallets/([^/]+)/statistics/utxos".r
+  private val NetworkInfoPath = ".*/network/information".r
+  private val NetworkParametersPath = ".*/network/parameters".r
+
+  private val WalletWritePath = ".*/wallets/([^/]+)(/.*)?".r
+  private val ReadOnlyPostPath = ".*/wallets/[^/]+/(payment-fees|coin-selections/random)".r
+
+  private final case class Entry(response: HttpResponse, walletId: Option[String], expiresAtNanos: Long)
+}
+
+/**
+ * Read-through cache of wallet, network information, network parameters and UTxO statistics responses.
+ *
+ * The strict http response is kept and decoded by the mapper of each request, so a cache entry never depends
+ * on the type a caller expects. Any successful or failed write to a wallet (a non GET request under
+ * `wallets/{walletId}`, except fee estimation and coin selection) drops the entries of that wallet.
+ *
+ * Use [[wrap]] to put the cache in front of an executor, several executors may share one cache.
+ */
+class ApiResponseCache(settings: ApiResponseCache.Settings) {
+
+  import ApiResponseCache._
+
+  private val hits = new AtomicLong()
+  private val misses = new AtomicLong()
+  private val evictions = new AtomicLong()
+  // bumped on every invalidation, a response fetched across an invalidation is not stored
+  private val generation = new AtomicLong()
+
+  private val entries = new java.util.LinkedHashMap[String, Entry](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: java.util.Map.Entry[String, Entry]): Boolean = {
+      val evict = size() > settings.maxEntries
+      if (evict) evictions.incrementAndGet()
+      evict
+    }
+  }
+
+  def stats: Stats = entries.synchronized {
+    Stats(hits.get(), misses.get(), evictions.get(), entries.size())
+  }
+
+  def invalidate(walletId: String): Unit = entries.synchronized {
+    generation.incrementAndGet()
+    entries.values().removeIf(_.walletId.contains(walletId))
+  }
+
+  def clear(): Unit = entries.synchronized {
+    generation.incrementAndGet()
+    entries.clear()
+  }
+
+  def wrap(underlying: ApiRequestExecutor): ApiRequestExecutor = new ApiRequestExecutor {
+    override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+      cachePolicy(request.request) match {
+        case Some((ttl, walletId)) if ttl.length > 0 =>
+          executeCached(underlying, request, ttl, walletId)
+
+        case _ =>
+          writtenWalletId(request.request) match {
+            case Some(walletId) =>
+              invalidate(walletId)
+              underlying.execute(request).andThen { case _ => invalidate(walletId) }
+            case None =>
+              underlying.execute(request)
+          }
+      }
+  }
+
+  private def executeCached[T](underlying: ApiRequestExecutor,
+                               request: BccApiRequest[T],
+                               ttl: FiniteDuration,
+                               walletId: Option[String])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+    val key = request.request.uri.toString()
+
+    lookup(key) match {
+      case Some(response) =>
+        hits.incrementAndGet()
+        request.mapper(response)
+
+      case None =>
+        misses.incrementAndGet()
+        val startGeneration = generation.get()
+        underlying.execute(ApiRequestExecutor.strictResponseRequest(request.request)).flatMap {
+          case Left(error) => Future.successful(Left(error))
+          case Right(response) =>
+            if (response.status.isSuccess()) {
+              store(key, Entry(response, walletId, System.nanoTime() + ttl.toNanos), startGeneration)
+            }
+            request.mapper(response)
+        }
+    }
+  }
+
+  private def lookup(key: String): Option[HttpResponse] = entries.synchronized {
+    Option(entries.get(key)).flatMap { entry =>
+      if (entry.expiresAtNanos - System.nanoTime() > 0) Some(entry.response)
+      else {
+        entries.remove(key)
+        None
+      }
+    }
+  }
+
+  private def store(key: String, entry: Entry, startGeneration: Long): Unit = entries.synchronized {
+    if (generation.get() == startGeneration) entries.put(key, entry)
+  }
+
+  private def cachePolicy(request: HttpRequest): Option[(FiniteDuration, Option[String])] =
+    if (request.method != HttpMethods.GET || request.uri.rawQueryString.isDefined) None
+    else request.uri.path.toString() match {
+      case UTxOStatisticsPath(walletId) => Some(settings.utxoStatisticsTtl -> Some(walletId))
+      case WalletPath(walletId)         => Some(settings.walletTtl -> Some(walletId))
+      case NetworkInfoPath()            => Some(settings.networkInfoTtl -> None)
+      case NetworkParametersPath()      => Some(settings.networkParametersTtl -> None)
+      case _                            => None
+    }
+
+  private def writtenWalletId(request: HttpRequest): Option[String] =
+    if (request.method == HttpMethods.GET) None
+    else request.uri.path.toString() match {
+      case ReadOnlyPostPath(_)         => None
+      case WalletWritePath(walletId, _) => Some(walletId)
+      case _                            => None
+    }
+}
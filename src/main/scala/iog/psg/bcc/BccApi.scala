@@ -2,8 +2,10 @@ package iog.psg.bcc
 
 import java.time.ZonedDateTime
 
+import akka.NotUsed
 import akka.actor.ActorSystem
 import akka.http.scaladsl.model._
+import akka.stream.scaladsl.Source
 import iog.psg.bcc.BccApi.Order.Order
 
 import scala.concurrent.duration.{ Duration, DurationInt, FiniteDuration }
@@ -18,6 +20,13 @@ object BccApi {
   def apply(baseUriWithPort: String)(implicit ec: ExecutionContext, as: ActorSystem): BccApi =
     new BccApiImpl(baseUriWithPort)
 
+  /**
+   * @param baseUriWithPort url of the wallet, e.g. http://127.0.0.1:8090/v2/
+   * @param codecBackend library decoding the responses, [[CodecBackend.Jsoniter]] decodes long lists with less cpu
+   */
+  def apply(baseUriWithPort: String, codecBackend: CodecBackend)(implicit ec: ExecutionContext, as: ActorSystem): BccApi =
+    new BccApiImpl(baseUriWithPort, codecBackend)
+
   implicit val defaultMaxWaitTime: FiniteDuration = 15.seconds
 
   type BccApiResponse[T] = Either[ErrorMessage, T]
@@ -27,6 +36,29 @@ object BccApi {
                                         mapper: HttpResponse => Future[BccApiResponse[T]]
   )
 
+  /**
+   * One transaction of a bulk submission, see [[BccApi.createTransactions]].
+   */
+  final case class TransactionRequest(walletId: String,
+                                      passphrase: String,
+                                      payments: BccApiCodec.Payments,
+                                      metadata: Option[BccApiCodec.TxMetadataIn] = None,
+                                      withdrawal: Option[String] = None
+  )
+
+  /**
+   * Outcome of a single item of a bulk call.
+   *
+   * @param index position of the item in the input of the bulk call
+   * @param response item's response or error, a request failing with an exception is reported
+   *                 with the [[BulkResult.RequestFailedCode]] code
+   */
+  final case class BulkResult[T](index: Int, response: BccApiResponse[T])
+
+  object BulkResult {
+    val RequestFailedCode = "REQUEST FAILED"
+  }
+
   object Order extends Enumeration {
     type Order = Value
     val ascendingOrder = Value("ascending")
@@ -102,6 +134,19 @@ trait BccApi {
    */
   def getWallet(walletId: String): BccApiRequest[Wallet]
 
+  /**
+   * Get the details of many wallets, sending at most `parallelism` requests at the same time.
+   * Api Url: [[https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/getWallet #getWallet]]
+   *
+   * @param walletIds wallets' ids
+   * @param parallelism max number of requests sent at the same time
+   * @param executor executor used to send every request
+   * @return one result per wallet id, in the order of `walletIds`
+   */
+  def getWallets(walletIds: Seq[String], parallelism: Int = 4)(implicit
+    executor: ApiRequestExecutor
+  ): Future[Seq[BulkResult[Wallet]]]
+
   /**
    * Update wallet's name
    * Api Url: [[https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/putWallet #putWallet]]
@@ -188,6 +233,19 @@ trait BccApi {
    */
   def inspectAddress(addressId: String): BccApiRequest[WalletAddress]
 
+  /**
+   * Give information about the structure of many addresses, sending at most `parallelism` requests at the same time.
+   * Api Url: [[https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/inspectAddress #inspectAddress]]
+   *
+   * @param addressIds addresses' ids
+   * @param parallelism max number of requests sent at the same time
+   * @param executor executor used to send every request
+   * @return one result per address id, in the order of `addressIds`
+   */
+  def inspectAddresses(addressIds: Seq[String], parallelism: Int = 4)(implicit
+    executor: ApiRequestExecutor
+  ): Future[Seq[BulkResult[WalletAddress]]]
+
   /**
    * Lists all incoming and outgoing wallet's transactions.
    * Api Url: [[https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/listTransactions #listTransactions]]
@@ -211,6 +269,27 @@ trait BccApi {
                        minWithdrawal: Option[Int] = None
   ): BccApiRequest[Seq[CreateTransactionResponse]]
 
+  /**
+   * Lists all incoming and outgoing wallet's transactions as a stream. Transactions are decoded one by one as they are
+   * pulled, so the whole history is never held in memory.
+   * Api Url: [[https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/listTransactions #listTransactions]]
+   *
+   * @param walletId wallet's id
+   * @param start    An optional start time in ISO 8601 date-and-time format, see [[listTransactions]]
+   * @param end      An optional end time in ISO 8601 date-and-time format, see [[listTransactions]]
+   * @param order    Default: "descending" ( "ascending", "descending" )
+   * @param minWithdrawal Returns only transactions that have at least one withdrawal above the given amount.
+   * @param parallelism max number of transactions decoded at the same time, the order of the response is kept
+   * @return list wallet's transactions request, the source reads the response entity and must be run promptly
+   */
+  def listTransactionsStream(walletId: String,
+                             start: Option[ZonedDateTime] = None,
+                             end: Option[ZonedDateTime] = None,
+                             order: Order = Order.descendingOrder,
+                             minWithdrawal: Option[Int] = None,
+                             parallelism: Int = 4
+  ): BccApiRequest[Source[CreateTransactionResponse, NotUsed]]
+
   /**
    * Create and send transaction from the wallet.
    * Api Url: [[https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/postTransaction #postTransaction]]
@@ -231,6 +310,20 @@ trait BccApi {
                         withdrawal: Option[String]
   ): Future[BccApiRequest[CreateTransactionResponse]]
 
+  /**
+   * Create and send many transactions. Transactions of the same wallet are sent one after the other in input order,
+   * so they do not compete for the same UTxOs, while up to `parallelism` wallets are served at the same time.
+   * Api Url: [[https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/postTransaction #postTransaction]]
+   *
+   * @param transactions transactions to create, a failed transaction does not stop the next ones of its wallet
+   * @param parallelism max number of wallets sending a transaction at the same time
+   * @param executor executor used to send every transaction
+   * @return results in completion order, each carrying the index of its transaction in `transactions`
+   */
+  def createTransactions(transactions: Seq[TransactionRequest], parallelism: Int = 4)(implicit
+    executor: ApiRequestExecutor
+  ): Source[BulkResult[CreateTransactionResponse], NotUsed]
+
   /**
    * Estimate fee for the transaction. The estimate is made by assembling multiple transactions and analyzing the
    * distribution of their fees. The estimated_max is the highest fee observed, and the estimated_min is the fee which
@@ -273,6 +366,20 @@ trait BccApi {
                                         transactionId: String
   ): BccApiRequest[CreateTransactionResponse]
 
+  /**
+   * Get many transactions of a wallet by id, sending at most `parallelism` requests at the same time.
+   * Api Url: [[https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/getTransaction #getTransaction]]
+   *
+   * @param walletId wallet's id
+   * @param transactionIds transactions' ids
+   * @param parallelism max number of requests sent at the same time
+   * @param executor executor used to send every request
+   * @return one result per transaction id, in the order of `transactionIds`
+   */
+  def getTransactions(walletId: String, transactionIds: Seq[String], parallelism: Int = 4)(implicit
+    executor: ApiRequestExecutor
+  ): Future[Seq[BulkResult[CreateTransactionResponse]]]
+
   /**
    * Forget pending transaction
    * Api Url: [[https://The-Blockchain-Company.github.io/bcc-wallet/api/edge/#operation/deleteTransaction #deleteTransaction]]
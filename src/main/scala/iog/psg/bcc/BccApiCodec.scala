@@ -7,10 +7,12 @@ import akka.http.scaladsl.model.ContentType.WithFixedCharset
 import akka.http.scaladsl.model._
 import akka.http.scaladsl.unmarshalling.Unmarshaller.eitherUnmarshaller
 import akka.http.scaladsl.unmarshalling.{Unmarshal, Unmarshaller}
+import akka.NotUsed
 import akka.stream.Materializer
 import akka.stream.alpakka.json.scaladsl.JsonReader
-import akka.stream.scaladsl.Sink
+import akka.stream.scaladsl.{Sink, Source}
 import akka.util.ByteString
+import com.github.plokhotnyuk.jsoniter_scala.core.{JsonValueCodec, readFromByteBuffer}
 import de.heikoseeberger.akkahttpcirce.FailFastCirceSupport._
 import io.circe._
 import io.circe.generic.auto._
@@ -29,6 +31,7 @@ import org.apache.commons.codec.binary.Hex
 import scala.annotation.tailrec
 import scala.concurrent.duration.FiniteDuration
 import scala.concurrent.{ExecutionContext, Future}
+import scala.util.control.NonFatal
 import scala.util.{Failure, Success, Try}
 
 object BccApiCodec {
@@ -522,7 +525,10 @@ object BccApiCodec {
   implicit class ResponseOps(response: HttpResponse)(
     implicit mat: Materializer,
     timeout: FiniteDuration,
-    ec: ExecutionContext) {
+    ec: ExecutionContext,
+    backend: CodecBackend) {
+
+    import JsoniterCodecs._
 
     private def strictEntityF: Future[HttpEntity.Strict] = response.entity.toStrict(timeout)
 
@@ -535,34 +541,56 @@ object BccApiCodec {
       })
 
     def toNetworkInfoResponse: Future[BccApiResponse[NetworkInfo]]
-    = to[NetworkInfo](Unmarshal(_).to[BccApiResponse[NetworkInfo]])
+    = decodeAs[NetworkInfo]
 
     def toNetworkClockResponse: Future[BccApiResponse[NetworkClock]]
-    = to[NetworkClock](Unmarshal(_).to[BccApiResponse[NetworkClock]])
+    = decodeAs[NetworkClock]
 
     def toNetworkParametersResponse: Future[BccApiResponse[NetworkParameters]]
-    = to[NetworkParameters](Unmarshal(_).to[BccApiResponse[NetworkParameters]])
+    = decodeAs[NetworkParameters]
 
     def to[T](f: HttpEntity.Strict => Future[BccApiResponse[T]]): Future[BccApiResponse[T]] =
       decodeResponseEntityOrHandleError(response, () => strictEntityF.flatMap(f))
 
+    /**
+     * Same as unmarshalling to a [[BccApiResponse]], the expected type is tried before the error message.
+     */
+    private def decodeAs[T](implicit decoder: Decoder[T], codec: JsonValueCodec[T]): Future[BccApiResponse[T]] =
+      backend match {
+        case CodecBackend.Circe => to[T](entity =>
+          Unmarshal(entity).to[T].map[BccApiResponse[T]](Right(_)).recoverWith {
+            case NonFatal(error) =>
+              Unmarshal(entity).to[ErrorMessage].map(Left(_)).recoverWith { case NonFatal(_) => Future.failed(error) }
+          })
+        case CodecBackend.Jsoniter => to[T](entity => Future.fromTry(JsoniterCodecs.decodeResponse[T](entity.data)))
+      }
+
+    private def decodeElement[T](bytes: ByteString)(implicit um: Unmarshaller[String, T], codec: JsonValueCodec[T]): Future[T] =
+      backend match {
+        case CodecBackend.Circe => Unmarshal(bytes.utf8String).to[T]
+        case CodecBackend.Jsoniter => Future.fromTry(Try(readFromByteBuffer[T](bytes.asByteBuffer)))
+      }
+
     def toWallet: Future[BccApiResponse[Wallet]]
-    = to[Wallet](Unmarshal(_).to[BccApiResponse[Wallet]])
+    = decodeAs[Wallet]
 
     def toWallets: Future[BccApiResponse[Seq[Wallet]]]
-    = to[Seq[Wallet]](Unmarshal(_).to[BccApiResponse[Seq[Wallet]]])
+    = decodeAs[Seq[Wallet]]
 
     def toWalletAddressIds: Future[BccApiResponse[Seq[WalletAddressId]]]
-    = to[Seq[WalletAddressId]](Unmarshal(_).to[BccApiResponse[Seq[WalletAddressId]]])
+    = decodeAs[Seq[WalletAddressId]]
 
     def toWalletAddress: Future[BccApiResponse[WalletAddress]]
-    = to[WalletAddress](Unmarshal(_).to[BccApiResponse[WalletAddress]])
+    = decodeAs[WalletAddress]
 
     def toFundPaymentsResponse: Future[BccApiResponse[FundPaymentsResponse]]
-    = to[FundPaymentsResponse](Unmarshal(_).to[BccApiResponse[FundPaymentsResponse]])
+    = decodeAs[FundPaymentsResponse]
 
     def toCreateTransactionsResponse: Future[BccApiResponse[Seq[CreateTransactionResponse]]]
-    = decodeInStream[CreateTransactionResponse](response, "$[*]")
+    = decodeElementsInStream(response, "$[*]")(decodeElement[CreateTransactionResponse])
+
+    def toCreateTransactionsStream(parallelism: Int): Future[BccApiResponse[Source[CreateTransactionResponse, NotUsed]]]
+    = streamElementsInResponse(response, "$[*]", parallelism)(decodeElement[CreateTransactionResponse])
 
     private def decodeResponseEntityOrHandleError[T](response: HttpResponse, decodeF: () => Future[BccApiResponse[T]]) = {
       response.entity.contentType match {
@@ -580,16 +608,41 @@ object BccApiCodec {
       }
     }
 
+    /**
+     * Elements are decoded by circe whatever the codec backend.
+     */
     final def decodeInStream[T](response: HttpResponse, jsonPath: String)(implicit um: Unmarshaller[String, T]): Future[BccApiResponse[Seq[T]]] =
+      decodeElementsInStream(response, jsonPath)(bytes => Unmarshal(bytes.utf8String).to[T])
+
+    /**
+     * Unlike [[decodeInStream]] nothing is collected, elements are decoded as they are pulled from the returned source,
+     * at most `parallelism` at a time and in the order they arrive. The source reads the response entity so it must be
+     * run (or cancelled) promptly. Elements are decoded by circe whatever the codec backend.
+     */
+    final def streamInResponse[T](response: HttpResponse, jsonPath: String, parallelism: Int)(implicit um: Unmarshaller[String, T]): Future[BccApiResponse[Source[T, NotUsed]]] =
+      streamElementsInResponse(response, jsonPath, parallelism)(bytes => Unmarshal(bytes.utf8String).to[T])
+
+    private def decodeElementsInStream[T](response: HttpResponse, jsonPath: String)(decode: ByteString => Future[T]): Future[BccApiResponse[Seq[T]]] =
       decodeResponseEntityOrHandleError(response, () =>
         response.entity.dataBytes
           .via(JsonReader.select(jsonPath))
-          .mapAsync(parallelism = 4)(bs => unmarshalOrRecoverToUnparseable[T](bs.utf8String))
+          .mapAsync(parallelism = 4)(bs => decodeOrRecoverToUnparseable[T](bs)(decode))
           .runWith(Sink.seq).map(sequenceBccApiResponses)
       )
 
-    private def unmarshalOrRecoverToUnparseable[T](utf8String: String)(implicit um: Unmarshaller[String, T]): Future[BccApiResponse[T]] =
-      Unmarshal(utf8String).to[T].map(Right(_)).recover {
+    private def streamElementsInResponse[T](response: HttpResponse, jsonPath: String, parallelism: Int)(decode: ByteString => Future[T]): Future[BccApiResponse[Source[T, NotUsed]]] =
+      if (response.status.isFailure()) extractErrorResponse(strictEntityF)
+      else decodeResponseEntityOrHandleError(response, () =>
+        Future.successful(Right(
+          response.entity.dataBytes
+            .via(JsonReader.select(jsonPath))
+            .mapAsync(parallelism)(decode)
+            .mapMaterializedValue(_ => NotUsed)
+        ))
+      )
+
+    private def decodeOrRecoverToUnparseable[T](bytes: ByteString)(decode: ByteString => Future[T]): Future[BccApiResponse[T]] =
+      decode(bytes).map(Right(_)).recover {
         case e: Exception => errorUnparseableResult(e)
       }
 
@@ -600,31 +653,31 @@ object BccApiCodec {
       }
 
     def toCreateTransactionResponse: Future[BccApiResponse[CreateTransactionResponse]]
-    = to[CreateTransactionResponse](Unmarshal(_).to[BccApiResponse[CreateTransactionResponse]])
+    = decodeAs[CreateTransactionResponse]
 
     def toEstimateFeeResponse: Future[BccApiResponse[EstimateFeeResponse]] =
-      to[EstimateFeeResponse](Unmarshal(_).to[BccApiResponse[EstimateFeeResponse]])
+      decodeAs[EstimateFeeResponse]
 
     def toUTxOStatisticsResponse: Future[BccApiResponse[UTxOStatistics]] =
-      to[UTxOStatistics](Unmarshal(_).to[BccApiResponse[UTxOStatistics]])
+      decodeAs[UTxOStatistics]
 
     def toPostExternalTransactionResponse: Future[BccApiResponse[PostExternalTransactionResponse]] =
-      to[PostExternalTransactionResponse](Unmarshal(_).to[BccApiResponse[PostExternalTransactionResponse]])
+      decodeAs[PostExternalTransactionResponse]
 
     def toSubmitMigrationResponse: Future[BccApiResponse[MigrationResponse]] =
-      to[MigrationResponse](Unmarshal(_).to[BccApiResponse[MigrationResponse]])
+      decodeAs[MigrationResponse]
 
     def toSubmitMigrationsResponse: Future[BccApiResponse[Seq[MigrationResponse]]] =
-      to[Seq[MigrationResponse]](Unmarshal(_).to[BccApiResponse[Seq[MigrationResponse]]])
+      decodeAs[Seq[MigrationResponse]]
 
     def toMigrationCostResponse: Future[BccApiResponse[MigrationCostResponse]] =
-      to[MigrationCostResponse](Unmarshal(_).to[BccApiResponse[MigrationCostResponse]])
+      decodeAs[MigrationCostResponse]
 
     def toStakePoolsResponse: Future[BccApiResponse[Seq[StakePool]]] =
-      to[Seq[StakePool]](Unmarshal(_).to[BccApiResponse[Seq[StakePool]]])
+      decodeAs[Seq[StakePool]]
 
     def toStakePoolMaintenanceActionsStatusResponse: Future[BccApiResponse[StakePoolMaintenanceActionsStatus]] =
-      to[StakePoolMaintenanceActionsStatus](Unmarshal(_).to[BccApiResponse[StakePoolMaintenanceActionsStatus]])
+      decodeAs[StakePoolMaintenanceActionsStatus]
 
     def toUnit: Future[BccApiResponse[Unit]] = {
       if (response.status == StatusCodes.NoContent) {
@@ -2,19 +2,22 @@ package iog.psg.bcc
 
 import java.time.ZonedDateTime
 
+import akka.NotUsed
 import akka.actor.ActorSystem
 import akka.http.scaladsl.marshalling.{ Marshal, Marshaller }
 import akka.http.scaladsl.model.HttpMethods._
 import akka.http.scaladsl.model.Uri.Query
 import akka.http.scaladsl.model._
+import akka.stream.scaladsl.{ Sink, Source }
 import de.heikoseeberger.akkahttpcirce.FailFastCirceSupport._
 import io.circe.generic.auto._
 import io.circe.generic.extras.Configuration
 import iog.psg.bcc.BccApi.Order.Order
 
 import scala.concurrent.{ ExecutionContext, Future }
+import scala.util.control.NonFatal
 
-private class BccApiImpl(baseUriWithPort: String)(implicit ec: ExecutionContext, as: ActorSystem)
+private class BccApiImpl(baseUriWithPort: String, codecBackend: CodecBackend = CodecBackend.default)(implicit ec: ExecutionContext, as: ActorSystem)
     extends BccApi {
 
   import BccApiCodec._
@@ -31,6 +34,8 @@ private class BccApiImpl(baseUriWithPort: String)(implicit ec: ExecutionContext,
 
   implicit val config: Configuration = Configuration.default.withSnakeCaseMemberNames
 
+  private implicit val backend: CodecBackend = codecBackend
+
   /**
    * @inheritdoc
    */
@@ -53,6 +58,14 @@ private class BccApiImpl(baseUriWithPort: String)(implicit ec: ExecutionContext,
     _.toWallet
   )
 
+  /**
+   * @inheritdoc
+   */
+  override def getWallets(walletIds: Seq[String], parallelism: Int = 4)(implicit
+    executor: ApiRequestExecutor
+  ): Future[Seq[BulkResult[Wallet]]] =
+    bulkRead(walletIds, parallelism)(getWallet)
+
   /**
    * @inheritdoc
    */
@@ -193,6 +206,14 @@ private class BccApiImpl(baseUriWithPort: String)(implicit ec: ExecutionContext,
     )
   }
 
+  /**
+   * @inheritdoc
+   */
+  override def inspectAddresses(addressIds: Seq[String], parallelism: Int = 4)(implicit
+    executor: ApiRequestExecutor
+  ): Future[Seq[BulkResult[WalletAddress]]] =
+    bulkRead(addressIds, parallelism)(inspectAddress)
+
   /**
    * @inheritdoc
    */
@@ -201,7 +222,39 @@ private class BccApiImpl(baseUriWithPort: String)(implicit ec: ExecutionContext,
                                 end: Option[ZonedDateTime] = None,
                                 order: Order = Order.descendingOrder,
                                 minWithdrawal: Option[Int] = None
-  ): BccApiRequest[Seq[CreateTransactionResponse]] = {
+  ): BccApiRequest[Seq[CreateTransactionResponse]] =
+    BccApiRequest(
+      HttpRequest(
+        uri = listTransactionsUri(walletId, start, end, order, minWithdrawal),
+        method = GET
+      ),
+      _.toCreateTransactionsResponse
+    )
+
+  /**
+   * @inheritdoc
+   */
+  override def listTransactionsStream(walletId: String,
+                                      start: Option[ZonedDateTime] = None,
+                                      end: Option[ZonedDateTime] = None,
+                                      order: Order = Order.descendingOrder,
+                                      minWithdrawal: Option[Int] = None,
+                                      parallelism: Int = 4
+  ): BccApiRequest[Source[CreateTransactionResponse, NotUsed]] =
+    BccApiRequest(
+      HttpRequest(
+        uri = listTransactionsUri(walletId, start, end, order, minWithdrawal),
+        method = GET
+      ),
+      _.toCreateTransactionsStream(parallelism)
+    )
+
+  private def listTransactionsUri(walletId: String,
+                                  start: Option[ZonedDateTime],
+                                  end: Option[ZonedDateTime],
+                                  order: Order,
+                                  minWithdrawal: Option[Int]
+  ): Uri = {
     val baseUri = Uri(s"$wallets/${walletId}/transactions")
 
     val queries =
@@ -211,15 +264,7 @@ private class BccApiImpl(baseUriWithPort: String)(implicit ec: ExecutionContext,
         case (queryParamName, Some(minWith: Int))      => queryParamName -> minWith.toString
       }
 
-    val uriWithQueries = baseUri.withQuery(Query(queries: _*))
-
-    BccApiRequest(
-      HttpRequest(
-        uri = uriWithQueries,
-        method = GET
-      ),
-      _.toCreateTransactionsResponse
-    )
+    baseUri.withQuery(Query(queries: _*))
   }
 
   /**
@@ -246,6 +291,45 @@ private class BccApiImpl(baseUriWithPort: String)(implicit ec: ExecutionContext,
     }
   }
 
+  /**
+   * @inheritdoc
+   */
+  override def createTransactions(transactions: Seq[TransactionRequest], parallelism: Int = 4)(implicit
+    executor: ApiRequestExecutor
+  ): Source[BulkResult[CreateTransactionResponse], NotUsed] = {
+    require(parallelism > 0, s"parallelism must be positive (not $parallelism)")
+
+    // wallets are started in the order of their first transaction
+    val byWallet = transactions.zipWithIndex.groupBy(_._1.walletId).values.toList.sortBy(_.head._2)
+
+    Source(byWallet).flatMapMerge(
+      parallelism,
+      walletTransactions =>
+        Source(walletTransactions).mapAsync(1) { case (tx, index) =>
+          bulkResult(index) {
+            createTransaction(tx.walletId, tx.passphrase, tx.payments, tx.metadata, tx.withdrawal)
+              .flatMap(executor.execute(_))
+          }
+        }
+    )
+  }
+
+  private def bulkRead[T](ids: Seq[String], parallelism: Int)(request: String => BccApiRequest[T])(implicit
+    executor: ApiRequestExecutor
+  ): Future[Seq[BulkResult[T]]] = {
+    require(parallelism > 0, s"parallelism must be positive (not $parallelism)")
+
+    Source(ids.zipWithIndex)
+      .mapAsync(parallelism) { case (id, index) => bulkResult(index)(executor.execute(request(id))) }
+      .runWith(Sink.seq)
+  }
+
+  private def bulkResult[T](index: Int)(response: => Future[BccApiResponse[T]]): Future[BulkResult[T]] =
+    Future
+      .delegate(response)
+      .recover { case NonFatal(e) => Left(ErrorMessage(e.getMessage, BulkResult.RequestFailedCode)) }
+      .map(BulkResult(index, _))
+
   /**
    * @inheritdoc
    */
@@ -304,6 +388,14 @@ private class BccApiImpl(baseUriWithPort: String)(implicit ec: ExecutionContext,
     )
   }
 
+  /**
+   * @inheritdoc
+   */
+  override def getTransactions(walletId: String, transactionIds: Seq[String], parallelism: Int = 4)(implicit
+    executor: ApiRequestExecutor
+  ): Future[Seq[BulkResult[CreateTransactionResponse]]] =
+    bulkRead(transactionIds, parallelism)(getTransaction(walletId, _))
+
   /**
    * @inheritdoc
    */
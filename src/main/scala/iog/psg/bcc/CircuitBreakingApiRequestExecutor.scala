@@ -0,0 +1,298 @@
+package iog.psg.bcc
+
+import java.util.concurrent.atomic.{ AtomicBoolean, AtomicInteger }
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpMethods, HttpRequest }
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse, ErrorMessage }
+
+import scala.collection.concurrent.TrieMap
+import scala.concurrent.duration.{ Duration, DurationInt, FiniteDuration }
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.jdk.DurationConverters._
+import scala.util.{ Failure, Success }
+
+object CircuitBreakingApiRequestExecutor {
+
+  val CircuitOpenCode = "CIRCUIT OPEN"
+  val LoadShedCode = "LOAD SHED"
+
+  object State extends Enumeration {
+    type State = Value
+    val closed: State = Value("closed")
+    val open: State = Value("open")
+    val halfOpen: State = Value("half_open")
+  }
+
+  import State.State
+
+  /**
+   * @param failureRateThreshold share of failed calls in the window opening the circuit, a call fails with an
+   *                             exception or a `failureStatuses` status
+   * @param slowCallRateThreshold share of slow calls in the window opening the circuit
+   * @param slowCallDuration time after which a call counts as slow, whatever its outcome
+   * @param windowSize number of last calls the rates are computed on
+   * @param minimumCalls number of calls in the window before the circuit may open
+   * @param openDuration time calls fail fast before probe calls are let through
+   * @param halfOpenProbes number of probe calls that must succeed to close the circuit, one failing opens it again
+   * @param shedAboveInFlight calls in flight to a backend, whatever their endpoint class, above which low priority
+   *                          calls through a closed circuit are refused
+   * @param failureStatuses http statuses counted as failures
+   */
+  final case class Settings(failureRateThreshold: Double = 0.5,
+                            slowCallRateThreshold: Double = 0.8,
+                            slowCallDuration: FiniteDuration = 5.seconds,
+                            windowSize: Int = 20,
+                            minimumCalls: Int = 10,
+                            openDuration: FiniteDuration = 10.seconds,
+                            halfOpenProbes: Int = 3,
+                            shedAboveInFlight: Int = Int.MaxValue,
+                            failureStatuses: Set[Int] = Set(500, 502, 503, 504)) {
+    require(failureRateThreshold > 0 && failureRateThreshold <= 1,
+      s"failureRateThreshold must be in (0, 1] (not $failureRateThreshold)")
+    require(slowCallRateThreshold > 0 && slowCallRateThreshold <= 1,
+      s"slowCallRateThreshold must be in (0, 1] (not $slowCallRateThreshold)")
+    require(slowCallDuration > Duration.Zero, s"slowCallDuration must be positive (not $slowCallDuration)")
+    require(windowSize > 0, s"windowSize must be positive (not $windowSize)")
+    require(minimumCalls > 0 && minimumCalls <= windowSize,
+      s"minimumCalls must be in [1, windowSize] (not $minimumCalls)")
+    require(openDuration > Duration.Zero, s"openDuration must be positive (not $openDuration)")
+    require(halfOpenProbes > 0, s"halfOpenProbes must be positive (not $halfOpenProbes)")
+    require(shedAboveInFlight > 0, s"shedAboveInFlight must be positive (not $shedAboveInFlight)")
+
+    def withThresholds(failureRateThreshold: Double, slowCallRateThreshold: Double, slowCallDuration: java.time.Duration): Settings =
+      copy(failureRateThreshold = failureRateThreshold, slowCallRateThreshold = slowCallRateThreshold,
+        slowCallDuration = slowCallDuration.toScala)
+
+    def withOpenDuration(openDuration: java.time.Duration): Settings = copy(openDuration = openDuration.toScala)
+
+    def withLoadShedding(shedAboveInFlight: Int): Settings = copy(shedAboveInFlight = shedAboveInFlight)
+  }
+
+  def defaultSettings: Settings = Settings()
+
+  /**
+   * Network information and parameters, reads and writes of wallets fail apart.
+   */
+  val defaultEndpointClass: HttpRequest => String = request =>
+    if (request.uri.path.toString().contains("/network/")) "network"
+    else if (request.method == HttpMethods.GET) "read"
+    else "write"
+
+  /**
+   * Reads of wallets are shed first, network information, used to watch the backend recover, is kept.
+   */
+  val defaultLowPriority: HttpRequest => Boolean = request =>
+    request.method == HttpMethods.GET && defaultEndpointClass(request) == "read"
+
+  /**
+   * @param state state of the circuit
+   * @param calls calls in the window
+   * @param failureRate share of failed calls in the window
+   * @param slowCallRate share of slow calls in the window
+   * @param inFlight calls in flight through the circuit
+   * @param rejected calls failed fast while the circuit was open
+   * @param shed low priority calls refused while too many calls were in flight
+   */
+  final case class Stats(state: State,
+                         calls: Int,
+                         failureRate: Double,
+                         slowCallRate: Double,
+                         inFlight: Int,
+                         rejected: Long,
+                         shed: Long)
+
+  private sealed trait Admission
+  private final case class Admitted(probe: Boolean) extends Admission
+  private case object Rejected extends Admission
+  private case object Shed extends Admission
+
+  /**
+   * Circuit of one backend and endpoint class, guarded by the instance.
+   */
+  private final class Breaker(settings: Settings) {
+    private val failed = new Array[Boolean](settings.windowSize)
+    private val slow = new Array[Boolean](settings.windowSize)
+    private var recorded = 0L
+    private var failures = 0
+    private var slowCalls = 0
+
+    var state: State = State.closed
+    private var openedAtNanos = 0L
+    private var probesLeft = 0
+    private var probesSucceeded = 0
+    var inFlight = 0
+    var rejected = 0L
+    var shed = 0L
+
+    def calls: Int = math.min(recorded, settings.windowSize.toLong).toInt
+
+    /**
+     * @param backendInFlight calls in flight to the backend through all its circuits
+     */
+    def admit(lowPriority: Boolean, backendInFlight: Int): Admission = {
+      if (state == State.open && System.nanoTime() - openedAtNanos >= settings.openDuration.toNanos) {
+        state = State.halfOpen
+        probesLeft = settings.halfOpenProbes
+        probesSucceeded = 0
+      }
+
+      state match {
+        case State.open =>
+          rejected += 1
+          Rejected
+        case State.halfOpen if probesLeft == 0 =>
+          rejected += 1
+          Rejected
+        case State.halfOpen =>
+          probesLeft -= 1
+          inFlight += 1
+          Admitted(probe = true)
+        case _ if lowPriority && backendInFlight >= settings.shedAboveInFlight =>
+          shed += 1
+          Shed
+        case _ =>
+          inFlight += 1
+          Admitted(probe = false)
+      }
+    }
+
+    def complete(probe: Boolean, callFailed: Boolean, callSlow: Boolean): Unit = {
+      inFlight -= 1
+      if (probe && state == State.halfOpen) {
+        if (callFailed || callSlow) open()
+        else {
+          probesSucceeded += 1
+          if (probesSucceeded == settings.halfOpenProbes) {
+            state = State.closed
+            reset()
+          }
+        }
+      } else if (!probe && state == State.closed) {
+        record(callFailed, callSlow)
+        if (calls >= settings.minimumCalls &&
+            (failures >= settings.failureRateThreshold * calls || slowCalls >= settings.slowCallRateThreshold * calls))
+          open()
+      }
+    }
+
+    private def record(callFailed: Boolean, callSlow: Boolean): Unit = {
+      val index = (recorded % settings.windowSize).toInt
+      if (recorded >= settings.windowSize) {
+        if (failed(index)) failures -= 1
+        if (slow(index)) slowCalls -= 1
+      }
+      failed(index) = callFailed
+      slow(index) = callSlow
+      if (callFailed) failures += 1
+      if (callSlow) slowCalls += 1
+      recorded += 1
+    }
+
+    private def open(): Unit = {
+      state = State.open
+      openedAtNanos = System.nanoTime()
+      reset()
+    }
+
+    private def reset(): Unit = {
+      recorded = 0
+      failures = 0
+      slowCalls = 0
+    }
+
+    def stats: Stats = {
+      val window = calls
+      Stats(
+        state,
+        window,
+        if (window == 0) 0 else failures.toDouble / window,
+        if (window == 0) 0 else slowCalls.toDouble / window,
+        inFlight,
+        rejected,
+        shed
+      )
+    }
+  }
+}
+
+/**
+ * Fails calls fast while the backend is down, instead of having every caller wait for its own timeout. A circuit is
+ * kept per backend (scheme, host and port) and endpoint class; it opens when the share of failed or slow calls
+ * in its window crosses a threshold, then fails calls with a [[CircuitBreakingApiRequestExecutor.CircuitOpenCode]]
+ * error for `openDuration`. A few probe calls are then let through, the circuit closes once they all succeed.
+ *
+ * While a circuit is closed but more than `shedAboveInFlight` calls are in flight to its backend, whatever their
+ * endpoint class, low priority calls fail with a [[CircuitBreakingApiRequestExecutor.LoadShedCode]] error so the
+ * others get through.
+ *
+ * A circuit opening on slow calls only spares the calls made after it opened: the calls already in flight still
+ * wait for their response or their timeout.
+ *
+ * @param underlying executor sending the requests
+ * @param settings thresholds of the circuits
+ * @param endpointClass endpoints sharing a circuit
+ * @param lowPriority calls shed first
+ */
+class CircuitBreakingApiRequestExecutor(underlying: ApiRequestExecutor,
+                                        settings: CircuitBreakingApiRequestExecutor.Settings,
+                                        endpointClass: HttpRequest => String,
+                                        lowPriority: HttpRequest => Boolean)
+    extends ApiRequestExecutor {
+
+  import CircuitBreakingApiRequestExecutor._
+
+  def this(underlying: ApiRequestExecutor, settings: CircuitBreakingApiRequestExecutor.Settings) =
+    this(underlying, settings, CircuitBreakingApiRequestExecutor.defaultEndpointClass,
+      CircuitBreakingApiRequestExecutor.defaultLowPriority)
+
+  private val breakers = TrieMap.empty[String, Breaker]
+  // calls in flight by backend, across its circuits
+  private val backendsInFlight = TrieMap.empty[String, AtomicInteger]
+
+  /**
+   * @return stats of every circuit, by backend url and endpoint class, e.g. `http://localhost:8090 read`
+   */
+  def stats: Map[String, Stats] = breakers.map {
+    case (circuit, breaker) => circuit -> breaker.synchronized(breaker.stats)
+  }.toMap
+
+  override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+    val backend = AdaptiveConcurrencyLimiter.backendOf(request.request.uri)
+    val circuit = s"$backend ${endpointClass(request.request)}"
+    val breaker = breakers.getOrElseUpdate(circuit, new Breaker(settings))
+    val backendInFlight = backendsInFlight.getOrElseUpdate(backend, new AtomicInteger())
+
+    breaker.synchronized(breaker.admit(lowPriority(request.request), backendInFlight.get())) match {
+      case Rejected =>
+        Future.successful(Left(ErrorMessage(s"The circuit of $circuit is open", CircuitOpenCode)))
+
+      case Shed =>
+        Future.successful(Left(ErrorMessage(s"Too many calls in flight to $backend", LoadShedCode)))
+
+      case Admitted(probe) =>
+        backendInFlight.incrementAndGet()
+        val start = System.nanoTime()
+        val failedStatus = new AtomicBoolean()
+
+        val observed = BccApiRequest[T](
+          request.request,
+          response => {
+            failedStatus.set(settings.failureStatuses.contains(response.status.intValue()))
+            request.mapper(response)
+          }
+        )
+
+        Future.delegate(underlying.execute(observed)).andThen {
+          case outcome =>
+            val callFailed = outcome match {
+              case Failure(_) => true
+              case Success(_) => failedStatus.get()
+            }
+            val callSlow = System.nanoTime() - start >= settings.slowCallDuration.toNanos
+            backendInFlight.decrementAndGet()
+            breaker.synchronized(breaker.complete(probe, callFailed, callSlow))
+        }
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package iog.psg.bcc
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpMethods, HttpRequest, HttpResponse }
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse }
+
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+
+object CoalescingApiRequestExecutor {
+
+  /**
+   * GET requests, except the lists of transactions: sharing a wallet's history would read it fully in memory.
+   */
+  val isGet: HttpRequest => Boolean = request =>
+    request.method == HttpMethods.GET && !ApiRequestExecutor.isTransactionList(request)
+}
+
+/**
+ * Single-flight decorator: while a request is in flight, identical requests (same method and uri) accepted by
+ * `coalesce` wait for its response instead of being sent again. The shared response is made strict and mapped
+ * by each caller's own mapper, so a streamed response is read fully before it is shared.
+ *
+ * @param underlying executor sending the requests
+ * @param coalesce which requests may share a response, only idempotent requests with a response small enough to be
+ *                 read fully should be accepted
+ */
+class CoalescingApiRequestExecutor(underlying: ApiRequestExecutor, coalesce: HttpRequest => Boolean)
+    extends ApiRequestExecutor {
+
+  def this(underlying: ApiRequestExecutor) = this(underlying, CoalescingApiRequestExecutor.isGet)
+
+  private val inFlight = new ConcurrentHashMap[String, Future[BccApiResponse[HttpResponse]]]()
+  private val collapsed = new AtomicLong()
+
+  /**
+   * @return number of requests answered with the response of an identical in-flight request
+   */
+  def collapsedCount: Long = collapsed.get()
+
+  override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+    if (!coalesce(request.request)) underlying.execute(request)
+    else {
+      val key = s"${request.request.method.value} ${request.request.uri}"
+      val promise = Promise[BccApiResponse[HttpResponse]]()
+
+      val shared = inFlight.putIfAbsent(key, promise.future) match {
+        case null =>
+          promise.completeWith(Future.delegate(underlying.execute(ApiRequestExecutor.strictResponseRequest(request.request))))
+          promise.future.onComplete(_ => inFlight.remove(key, promise.future))
+          promise.future
+        case existing =>
+          collapsed.incrementAndGet()
+          existing
+      }
+
+      shared.flatMap {
+        case Left(error)     => Future.successful(Left(error))
+        case Right(response) => request.mapper(response)
+      }
+    }
+}
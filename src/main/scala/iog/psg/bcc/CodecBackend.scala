@@ -0,0 +1,25 @@
+package iog.psg.bcc
+
+/**
+ * Library decoding the json responses of the wallet.
+ *
+ * `Circe` parses every response into a `Json` tree before decoding it. `Jsoniter` decodes the case classes
+ * straight from the response bytes with the codecs of [[JsoniterCodecs]], so it allocates far less for long
+ * lists of transactions or stake pools. Both produce the same values and the same error codes.
+ *
+ * Passed implicitly to [[BccApiCodec.ResponseOps]], `Circe` is used when none is in scope.
+ */
+sealed abstract class CodecBackend
+
+object CodecBackend {
+
+  case object Circe extends CodecBackend
+
+  case object Jsoniter extends CodecBackend
+
+  implicit val default: CodecBackend = Circe
+
+  def circe: CodecBackend = Circe
+
+  def jsoniter: CodecBackend = Jsoniter
+}
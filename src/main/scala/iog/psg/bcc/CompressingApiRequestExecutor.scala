@@ -0,0 +1,56 @@
+package iog.psg.bcc
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.coding.{ Coders, Decoder }
+import akka.http.scaladsl.model.HttpResponse
+import akka.http.scaladsl.model.headers.{ `Accept-Encoding`, HttpEncoding, HttpEncodingRange, HttpEncodings }
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse }
+
+import scala.concurrent.{ ExecutionContext, Future }
+
+object CompressingApiRequestExecutor {
+
+  val supportedEncodings: Seq[HttpEncoding] = Seq(HttpEncodings.gzip, HttpEncodings.deflate)
+
+  private val decoders: Map[HttpEncoding, Decoder] = Map(
+    HttpEncodings.gzip -> Coders.Gzip,
+    HttpEncodings.deflate -> Coders.Deflate
+  )
+}
+
+/**
+ * Asks for compressed responses, e.g. from a reverse proxy in front of the wallet, and decompresses them as their
+ * bytes are read, so long transaction lists are still decoded element by element.
+ * Responses of another encoding are passed on as they are.
+ *
+ * Decorate the executor recording metrics with this one, so that the compressed bytes are counted,
+ * and a cache it decorates keeps the compressed responses.
+ *
+ * @param underlying executor sending the requests
+ * @param encodings encodings listed in the `Accept-Encoding` header, by preference
+ */
+class CompressingApiRequestExecutor(underlying: ApiRequestExecutor,
+                                    encodings: Seq[HttpEncoding] = CompressingApiRequestExecutor.supportedEncodings)
+    extends ApiRequestExecutor {
+
+  import CompressingApiRequestExecutor._
+
+  require(encodings.nonEmpty, "encodings must not be empty")
+  require(
+    encodings.forall(decoders.contains),
+    s"encodings must be among ${supportedEncodings.mkString(", ")} (not ${encodings.mkString(", ")})"
+  )
+
+  private val acceptEncoding = `Accept-Encoding`(encodings.map(HttpEncodingRange(_)): _*)
+
+  override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+    val negotiating =
+      if (request.request.header[`Accept-Encoding`].isDefined) request.request
+      else request.request.addHeader(acceptEncoding)
+
+    underlying.execute(BccApiRequest(negotiating, response => request.mapper(decompressed(response))))
+  }
+
+  private def decompressed(response: HttpResponse): HttpResponse =
+    decoders.get(response.encoding).fold(response)(_.decodeMessage(response))
+}
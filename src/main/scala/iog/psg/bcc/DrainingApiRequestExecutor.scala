@@ -0,0 +1,67 @@
+package iog.psg.bcc
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.Done
+import akka.actor.ActorSystem
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse, ErrorMessage }
+
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+
+object DrainingApiRequestExecutor {
+
+  val ClosedCode = "CLIENT CLOSED"
+}
+
+/**
+ * Counts the requests in flight so a client can be closed without cutting them off: once [[close]] is called
+ * new requests are answered with a [[DrainingApiRequestExecutor.ClosedCode]] error, and the returned future
+ * completes when the last request in flight has been answered.
+ *
+ * @param underlying executor sending the requests
+ */
+class DrainingApiRequestExecutor(underlying: ApiRequestExecutor) extends ApiRequestExecutor {
+
+  import DrainingApiRequestExecutor._
+
+  private val inFlight = new AtomicInteger()
+  private val drained = Promise[Done]()
+  @volatile private var closed = false
+
+  def inFlightCount: Int = inFlight.get()
+
+  def isClosed: Boolean = closed
+
+  override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+    if (!tryAcquire()) Future.successful(Left(closedError))
+    else Future.delegate(underlying.execute(request)).andThen { case _ => release() }
+
+  /**
+   * Counts a request sent around this executor, e.g. by a java executor, it must be released once answered.
+   *
+   * @return false when the executor is closed, the request must not be sent
+   */
+  def tryAcquire(): Boolean = {
+    inFlight.incrementAndGet()
+    if (closed) {
+      release()
+      false
+    } else true
+  }
+
+  def release(): Unit =
+    if (inFlight.decrementAndGet() == 0 && closed) drained.trySuccess(Done)
+
+  def closedError: ErrorMessage = ErrorMessage("The client is closed", ClosedCode)
+
+  /**
+   * Stops accepting requests, may be called more than once.
+   *
+   * @return completes once every request in flight has been answered
+   */
+  def close(): Future[Done] = {
+    closed = true
+    if (inFlight.get() == 0) drained.trySuccess(Done)
+    drained.future
+  }
+}
@@ -0,0 +1,231 @@
+package iog.psg.bcc
+
+import akka.actor.ActorSystem
+import io.circe.syntax.EncoderOps
+import iog.psg.bcc.BccApi.BccApiOps.{ BccApiRequestFOps, BccApiRequestOps }
+import iog.psg.bcc.BccApi.BccApiResponse
+import iog.psg.bcc.BccApiCodec.ImplicitCodecs.encodeTxMetadata
+import iog.psg.bcc.BccApiCodec.{ CreateTransactionResponse, EstimateFeeResponse, Payments, TxMetadataIn, UTxOStatistics }
+
+import scala.collection.concurrent.TrieMap
+import scala.concurrent.duration.{ Duration, DurationInt, FiniteDuration }
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.util.Success
+
+object FeeEstimateCache {
+
+  /**
+   * @param ttl max age of an estimate
+   * @param refreshAhead an estimate this close to its expiry is returned and estimated again in the background
+   * @param bucketsPerDoubling amounts falling in the same bucket share their estimates, the buckets of amounts
+   *                           between `x` and `2x` are this many
+   * @param metadataBucketBytes metadata of sizes falling in the same bucket of this many encoded bytes share their
+   *                            estimates
+   * @param maxEntries max number of estimates kept, the least recently used is evicted first
+   */
+  final case class Settings(ttl: FiniteDuration = 30.seconds,
+                            refreshAhead: FiniteDuration = 10.seconds,
+                            bucketsPerDoubling: Int = 4,
+                            metadataBucketBytes: Int = 64,
+                            maxEntries: Int = 10000) {
+    require(ttl > Duration.Zero, s"ttl must be positive (not $ttl)")
+    require(refreshAhead >= Duration.Zero && refreshAhead < ttl, s"refreshAhead must be in [0, ttl) (not $refreshAhead)")
+    require(bucketsPerDoubling > 0, s"bucketsPerDoubling must be positive (not $bucketsPerDoubling)")
+    require(metadataBucketBytes > 0, s"metadataBucketBytes must be positive (not $metadataBucketBytes)")
+    require(maxEntries > 0, s"maxEntries must be positive (not $maxEntries)")
+  }
+
+  def defaultSettings: Settings = Settings()
+
+  /**
+   * @param hits estimates returned from the cache
+   * @param misses estimates waited for
+   * @param refreshes estimates made again in the background before their expiry
+   * @param invalidations times the estimates of a wallet were dropped
+   * @param size number of estimates kept
+   */
+  final case class Stats(hits: Long, misses: Long, refreshes: Long, invalidations: Long, size: Int)
+
+  /**
+   * What a fee estimate is assumed to depend on, payments of the same shape get the same estimate.
+   *
+   * @param outputs number of payments, -1 for a delegation fee
+   */
+  private[bcc] final case class Shape(walletId: String,
+                                      outputs: Int,
+                                      amountBucket: Int,
+                                      withdrawal: Option[String],
+                                      metadataBucket: Int)
+
+  private[bcc] def delegationShape(walletId: String): Shape = Shape(walletId, -1, 0, None, 0)
+
+  private final case class Entry(estimate: EstimateFeeResponse, refreshAtMillis: Long, expiresAtMillis: Long)
+}
+
+/**
+ * Answers fee estimates of payments of the same shape - wallet, number of outputs, bucket of the total amount,
+ * withdrawal and bucket of the metadata size - from a cache, as the backend assembles several transactions for
+ * each estimate. An estimate close to its expiry is returned while it is estimated again in the background.
+ *
+ * The estimates of a wallet are dropped when its UTxO set changes: after [[createTransaction]], when
+ * [[getUTxOsStatistics]] returns other statistics than the previous call, or on [[invalidate]].
+ *
+ * @param api api of the wallet backend
+ * @param settings ttl and shape buckets
+ */
+class FeeEstimateCache(api: BccApi, settings: FeeEstimateCache.Settings = FeeEstimateCache.defaultSettings)(implicit
+  executor: ApiRequestExecutor,
+  ec: ExecutionContext,
+  as: ActorSystem
+) {
+
+  import FeeEstimateCache._
+
+  private var hits = 0L
+  private var misses = 0L
+  private var refreshes = 0L
+  private var invalidations = 0L
+
+  // guarded by itself, as are the counters
+  private val entries = new java.util.LinkedHashMap[Shape, Entry](16, 0.75f, true) {
+    override def removeEldestEntry(eldest: java.util.Map.Entry[Shape, Entry]): Boolean =
+      size() > settings.maxEntries
+  }
+  private val inFlight = TrieMap.empty[Shape, Future[BccApiResponse[EstimateFeeResponse]]]
+  // bumped when the estimates of the wallet are dropped, an estimate made across it is not kept
+  private val generations = TrieMap.empty[String, Long]
+  private val utxoStatistics = TrieMap.empty[String, UTxOStatistics]
+
+  private[bcc] def amountBucket(total: Long): Int =
+    if (total <= 0) 0
+    else 1 + math.floor(math.log(total.toDouble) / math.log(2) * settings.bucketsPerDoubling).toInt
+
+  private[bcc] def shapeOf(walletId: String,
+                           payments: Payments,
+                           withdrawal: Option[String],
+                           metadata: Option[TxMetadataIn]): Shape = {
+    val metadataSize = metadata.fold(0)(_.asJson.noSpaces.length)
+    Shape(
+      walletId,
+      payments.payments.size,
+      amountBucket(payments.payments.map(_.amount.quantity).sum),
+      withdrawal,
+      (metadataSize + settings.metadataBucketBytes - 1) / settings.metadataBucketBytes
+    )
+  }
+
+  /**
+   * Estimates the fee once per shape at a time, calls made meanwhile share the result.
+   */
+  private def estimate(shape: Shape)(request: => Future[BccApiResponse[EstimateFeeResponse]]): Future[BccApiResponse[EstimateFeeResponse]] =
+    inFlight.synchronized {
+      inFlight.getOrElse(
+        shape, {
+          val generation = generations.getOrElse(shape.walletId, 0L)
+          val estimated = request.andThen {
+            case Success(Right(estimate)) =>
+              val now = System.currentTimeMillis()
+              entries.synchronized {
+                if (generations.getOrElse(shape.walletId, 0L) == generation)
+                  entries.put(shape, Entry(estimate, now + (settings.ttl - settings.refreshAhead).toMillis, now + settings.ttl.toMillis))
+              }
+          }
+          inFlight.put(shape, estimated)
+          estimated.onComplete(_ => inFlight.remove(shape, estimated))
+          estimated
+        }
+      )
+    }
+
+  private def cached(shape: Shape)(request: => Future[BccApiResponse[EstimateFeeResponse]]): Future[BccApiResponse[EstimateFeeResponse]] = {
+    val now = System.currentTimeMillis()
+    val entry = entries.synchronized {
+      val found = Option(entries.get(shape)).filter(_.expiresAtMillis > now)
+      if (found.isDefined) hits += 1 else misses += 1
+      if (found.exists(_.refreshAtMillis <= now) && !inFlight.contains(shape)) refreshes += 1
+      found
+    }
+    entry match {
+      case Some(found) =>
+        if (found.refreshAtMillis <= now) estimate(shape)(request)
+        Future.successful(Right(found.estimate))
+      case None => estimate(shape)(request)
+    }
+  }
+
+  /**
+   * Same as [[BccApi.estimateFee]], answered from the cache for payments of the same shape.
+   *
+   * @param walletId wallet's id
+   * @param payments payments to estimate the fee of
+   * @param withdrawal optional withdrawal of the rewards
+   * @param metadata optional metadata
+   * @return the fee estimate
+   */
+  def estimateFee(walletId: String,
+                  payments: Payments,
+                  withdrawal: Option[String] = None,
+                  metadata: Option[TxMetadataIn] = None): Future[BccApiResponse[EstimateFeeResponse]] =
+    cached(shapeOf(walletId, payments, withdrawal, metadata)) {
+      api.estimateFee(walletId, payments, withdrawal, metadata).execute
+    }
+
+  /**
+   * Same as [[BccApi.estimateFeeStakePool]], answered from the cache.
+   *
+   * @param walletId wallet's id
+   * @return the delegation fee estimate
+   */
+  def estimateFeeStakePool(walletId: String): Future[BccApiResponse[EstimateFeeResponse]] =
+    cached(delegationShape(walletId)) {
+      api.estimateFeeStakePool(walletId).execute
+    }
+
+  /**
+   * Same as [[BccApi.createTransaction]], then drops the estimates of the wallet whose UTxO set changed.
+   *
+   * @return the transaction created
+   */
+  def createTransaction(walletId: String,
+                        passphrase: String,
+                        payments: Payments,
+                        metadata: Option[TxMetadataIn] = None,
+                        withdrawal: Option[String] = None): Future[BccApiResponse[CreateTransactionResponse]] =
+    api.createTransaction(walletId, passphrase, payments, metadata, withdrawal).execute.andThen {
+      case _ => invalidate(walletId)
+    }
+
+  /**
+   * Same as [[BccApi.getUTxOsStatistics]], drops the estimates of the wallet when the statistics differ from
+   * the ones of the previous call.
+   *
+   * @param walletId wallet's id
+   * @return the UTxO statistics of the wallet
+   */
+  def getUTxOsStatistics(walletId: String): Future[BccApiResponse[UTxOStatistics]] =
+    api.getUTxOsStatistics(walletId).execute.andThen {
+      case Success(Right(statistics)) =>
+        if (utxoStatistics.put(walletId, statistics).exists(_ != statistics)) invalidate(walletId)
+    }
+
+  /**
+   * Drops the estimates of the wallet, e.g. after a transaction sent without this cache.
+   *
+   * @param walletId wallet's id
+   */
+  def invalidate(walletId: String): Unit = {
+    entries.synchronized {
+      generations.put(walletId, generations.getOrElse(walletId, 0L) + 1)
+      entries.keySet().removeIf(_.walletId == walletId)
+      invalidations += 1
+    }
+    // later calls estimate again instead of sharing an estimate made before the change
+    inFlight.foreach {
+      case (shape, estimated) => if (shape.walletId == walletId) inFlight.remove(shape, estimated)
+    }
+  }
+
+  def stats: Stats = entries.synchronized {
+    Stats(hits, misses, refreshes, invalidations, entries.size())
+  }
+}
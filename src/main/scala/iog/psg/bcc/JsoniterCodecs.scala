@@ -0,0 +1,162 @@
+package iog.psg.bcc
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+import akka.util.ByteString
+import com.github.plokhotnyuk.jsoniter_scala.core._
+import com.github.plokhotnyuk.jsoniter_scala.macros.JsonCodecMaker
+import iog.psg.bcc.BccApi.{ BccApiResponse, ErrorMessage }
+import iog.psg.bcc.BccApiCodec._
+import iog.psg.bcc.BccApiCodec.Units.Units
+
+import scala.util.{ Failure, Try }
+
+/**
+ * Codecs of the responses decoded by [[CodecBackend.Jsoniter]].
+ *
+ * Field names are snake case and missing collections fail, like the circe decoders of [[BccApiCodec.ImplicitCodecs]].
+ * Quantities are built through the `QuantityUnit` factories and metadata is kept as a circe `Json`, parsed
+ * from the raw bytes of its value.
+ */
+object JsoniterCodecs {
+
+  /**
+   * Decodes the bytes as a `T`, or as an [[ErrorMessage]] when they are not a `T`.
+   *
+   * @param bytes json of a response entity
+   * @return the failure decoding a `T` when the bytes are neither
+   */
+  def decodeResponse[T](bytes: ByteString)(implicit codec: JsonValueCodec[T]): Try[BccApiResponse[T]] =
+    Try[BccApiResponse[T]](Right(readFromByteBuffer[T](bytes.asByteBuffer))).recoverWith {
+      case notT => Try[BccApiResponse[T]](Left(readFromByteBuffer[ErrorMessage](bytes.asByteBuffer))).orElse(Failure(notT))
+    }
+
+  private abstract class QuantityUnitCodec[T] extends JsonValueCodec[QuantityUnit[T]] {
+
+    protected def readQuantity(in: JsonReader): T
+
+    protected def writeQuantity(quantity: T, out: JsonWriter): Unit
+
+    protected def create(quantity: T, unit: Units): QuantityUnit[T]
+
+    override def decodeValue(in: JsonReader, default: QuantityUnit[T]): QuantityUnit[T] =
+      if (in.isNextToken('{')) {
+        var quantity: Option[T] = None
+        var unit: Option[Units] = None
+        if (!in.isNextToken('}')) {
+          in.rollbackToken()
+          var keyLength = -1
+          while (keyLength < 0 || in.isNextToken(',')) {
+            keyLength = in.readKeyAsCharBuf()
+            if (in.isCharBufEqualsTo(keyLength, "quantity")) quantity = Some(readQuantity(in))
+            else if (in.isCharBufEqualsTo(keyLength, "unit")) unit = Some(readUnit(in))
+            else in.skip()
+          }
+          if (!in.isCurrentToken('}')) in.objectEndOrCommaError()
+        }
+        create(
+          quantity.getOrElse(in.decodeError("missing required field \"quantity\"")),
+          unit.getOrElse(in.decodeError("missing required field \"unit\""))
+        )
+      } else in.readNullOrTokenError(default, '{')
+
+    override def encodeValue(x: QuantityUnit[T], out: JsonWriter): Unit = {
+      out.writeObjectStart()
+      out.writeNonEscapedAsciiKey("quantity")
+      writeQuantity(x.quantity, out)
+      out.writeNonEscapedAsciiKey("unit")
+      out.writeVal(x.unit.toString)
+      out.writeObjectEnd()
+    }
+
+    override def nullValue: QuantityUnit[T] = null
+
+    private def readUnit(in: JsonReader): Units = {
+      val name = in.readString(null)
+      Units.values.find(_.toString == name).getOrElse(in.decodeError(s"illegal unit '$name'"))
+    }
+  }
+
+  implicit val quantityUnitLongCodec: JsonValueCodec[QuantityUnit[Long]] = new QuantityUnitCodec[Long] {
+    override protected def readQuantity(in: JsonReader): Long = in.readLong()
+    override protected def writeQuantity(quantity: Long, out: JsonWriter): Unit = out.writeVal(quantity)
+    override protected def create(quantity: Long, unit: Units): QuantityUnit[Long] = QuantityUnit(quantity, unit)
+  }
+
+  implicit val quantityUnitDoubleCodec: JsonValueCodec[QuantityUnit[Double]] = new QuantityUnitCodec[Double] {
+    override protected def readQuantity(in: JsonReader): Double = in.readDouble()
+    override protected def writeQuantity(quantity: Double, out: JsonWriter): Unit = out.writeVal(quantity)
+    override protected def create(quantity: Double, unit: Units): QuantityUnit[Double] = QuantityUnit(quantity, unit)
+  }
+
+  implicit val txMetadataOutCodec: JsonValueCodec[TxMetadataOut] = new JsonValueCodec[TxMetadataOut] {
+    override def decodeValue(in: JsonReader, default: TxMetadataOut): TxMetadataOut =
+      io.circe.jawn.parseByteBuffer(ByteBuffer.wrap(in.readRawValAsBytes())) match {
+        case Right(json) => TxMetadataOut(json)
+        case Left(failure) => in.decodeError(failure.message)
+      }
+
+    override def encodeValue(x: TxMetadataOut, out: JsonWriter): Unit =
+      out.writeRawVal(x.json.noSpaces.getBytes(StandardCharsets.UTF_8))
+
+    override def nullValue: TxMetadataOut = null
+  }
+
+  implicit val errorMessageCodec: JsonValueCodec[ErrorMessage] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val networkInfoCodec: JsonValueCodec[NetworkInfo] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val networkClockCodec: JsonValueCodec[NetworkClock] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val networkParametersCodec: JsonValueCodec[NetworkParameters] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val walletCodec: JsonValueCodec[Wallet] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val walletsCodec: JsonValueCodec[Seq[Wallet]] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val walletAddressIdsCodec: JsonValueCodec[Seq[WalletAddressId]] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val walletAddressCodec: JsonValueCodec[WalletAddress] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val fundPaymentsResponseCodec: JsonValueCodec[FundPaymentsResponse] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val createTransactionResponseCodec: JsonValueCodec[CreateTransactionResponse] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val estimateFeeResponseCodec: JsonValueCodec[EstimateFeeResponse] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val utxoStatisticsCodec: JsonValueCodec[UTxOStatistics] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val postExternalTransactionResponseCodec: JsonValueCodec[PostExternalTransactionResponse] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val migrationResponseCodec: JsonValueCodec[MigrationResponse] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val migrationResponsesCodec: JsonValueCodec[Seq[MigrationResponse]] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val migrationCostResponseCodec: JsonValueCodec[MigrationCostResponse] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val stakePoolCodec: JsonValueCodec[StakePool] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val stakePoolsCodec: JsonValueCodec[Seq[StakePool]] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+
+  implicit val stakePoolMaintenanceActionsStatusCodec: JsonValueCodec[StakePoolMaintenanceActionsStatus] =
+    JsonCodecMaker.make(JsoniterConfig.snakeCase)
+}
@@ -0,0 +1,64 @@
+package iog.psg.bcc
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpEntity, HttpResponse }
+import akka.stream.scaladsl.Flow
+import akka.util.ByteString
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse, ErrorMessage }
+import iog.psg.bcc.metrics.ApiMetrics
+import iog.psg.bcc.metrics.ApiMetrics.Phase
+
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.util.{ Failure, Success }
+
+/**
+ * Records per endpoint the time until the response headers arrive, the time spent reading and decoding the
+ * response entity, the bytes received, the requests in flight and the errors by [[ErrorMessage]] code.
+ *
+ * Placed in front of caching or retrying executors it measures what callers see, e.g. a cache hit only
+ * records a decode time.
+ *
+ * @param underlying executor sending the requests
+ * @param metrics registry receiving the measurements
+ */
+class MetricsApiRequestExecutor(underlying: ApiRequestExecutor, metrics: ApiMetrics) extends ApiRequestExecutor {
+
+  override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+    val endpoint = ApiRequestExecutor.endpointName(request.request)
+    val start = System.nanoTime()
+
+    val instrumented = BccApiRequest[T](
+      request.request,
+      response => {
+        val headersReceived = System.nanoTime()
+        metrics.recordLatency(endpoint, Phase.headers, headersReceived - start)
+
+        request.mapper(countingBytes(endpoint, response)).andThen { case _ =>
+          metrics.recordLatency(endpoint, Phase.decode, System.nanoTime() - headersReceived)
+        }
+      }
+    )
+
+    metrics.recordInFlight(endpoint, 1)
+    Future.delegate(underlying.execute(instrumented)).andThen {
+      case outcome =>
+        metrics.recordInFlight(endpoint, -1)
+        outcome match {
+          case Success(Left(ErrorMessage(_, code))) => metrics.recordError(endpoint, code)
+          case Failure(e)                           => metrics.recordError(endpoint, e.getClass.getSimpleName)
+          case Success(Right(_))                    =>
+        }
+    }
+  }
+
+  private def countingBytes(endpoint: String, response: HttpResponse): HttpResponse = response.entity match {
+    case strict: HttpEntity.Strict =>
+      metrics.recordBytesReceived(endpoint, strict.data.length.toLong)
+      response
+    case _ =>
+      response.transformEntityDataBytes(Flow[ByteString].map { bytes =>
+        metrics.recordBytesReceived(endpoint, bytes.length.toLong)
+        bytes
+      })
+  }
+}
@@ -0,0 +1,136 @@
+package iog.psg.bcc
+
+import java.util.Optional
+import java.util.concurrent.atomic.AtomicBoolean
+
+import akka.NotUsed
+import akka.actor.{ ActorSystem, Cancellable }
+import akka.stream.OverflowStrategy
+import akka.stream.scaladsl.{ BroadcastHub, Keep, Sink, Source, Flow => StreamFlow }
+import iog.psg.bcc.BccApi.BccApiOps.BccApiRequestOps
+import iog.psg.bcc.BccApiCodec.{ NetworkInfo, NetworkTip, NodeTip, SyncStatus }
+import org.reactivestreams.Publisher
+
+import scala.concurrent.duration.{ Duration, DurationInt, FiniteDuration }
+import scala.concurrent.ExecutionContext
+import scala.jdk.javaapi.OptionConverters
+
+object NetworkTipPoller {
+
+  /**
+   * @param interval delay between two reads of the network information
+   * @param bufferSize max number of statuses kept for each subscriber not keeping up, its oldest are dropped first,
+   *                   a subscriber not keeping up does not hold back the others
+   */
+  final case class Settings(interval: FiniteDuration = 5.seconds, bufferSize: Int = 16) {
+    require(interval > Duration.Zero, s"interval must be positive (not $interval)")
+    require(bufferSize > 0, s"bufferSize must be positive (not $bufferSize)")
+  }
+
+  def defaultSettings: Settings = Settings()
+
+  /**
+   * @param nodeTip tip of the node the wallet is connected to
+   * @param networkTip tip of the network, when known
+   * @param syncProgress how far the node is synced with the network
+   */
+  final case class Status(nodeTip: NodeTip, networkTip: Option[NetworkTip], syncProgress: SyncStatus)
+
+  private val HubBufferSize = 16
+
+  private[bcc] def statusOf(info: NetworkInfo): Status = Status(info.nodeTip, info.networkTip, info.syncProgress)
+}
+
+/**
+ * Reads the network information every `interval` on behalf of any number of subscribers, which only receive
+ * the tips and sync progress that changed. Failed reads are skipped, the last status is kept.
+ *
+ * @param api api of the wallet backend
+ * @param settings polling interval and subscribers' buffer
+ */
+class NetworkTipPoller(api: BccApi, settings: NetworkTipPoller.Settings = NetworkTipPoller.defaultSettings)(implicit
+  executor: ApiRequestExecutor,
+  ec: ExecutionContext,
+  as: ActorSystem
+) extends AutoCloseable {
+
+  import NetworkTipPoller._
+
+  @volatile private var current: Option[Status] = None
+  private val polling = new AtomicBoolean()
+
+  // the hub is paced by its slowest subscriber, each subscriber drains it into a buffer of its own
+  private val (statusQueue, statusSource) =
+    Source
+      .queue[Status](settings.bufferSize, OverflowStrategy.dropHead)
+      .toMat(BroadcastHub.sink[Status](bufferSize = HubBufferSize))(Keep.both)
+      .run()
+
+  // keeps the hub flowing without subscribers, a subscriber starts from the statuses published after it subscribed
+  statusSource.runWith(Sink.ignore)
+
+  private val poller: Cancellable =
+    as.scheduler.scheduleWithFixedDelay(Duration.Zero, settings.interval)(() => poll())
+
+  private def poll(): Unit =
+    if (polling.compareAndSet(false, true)) {
+      api.networkInfo.execute
+        .map(_.foreach { info =>
+          val status = statusOf(info)
+          if (!current.contains(status)) {
+            current = Some(status)
+            statusQueue.offer(status)
+          }
+        })
+        .onComplete(_ => polling.set(false))
+    }
+
+  /**
+   * @return the last status read, empty before the first read succeeds
+   */
+  def latest: Option[Status] = current
+
+  /**
+   * Same as [[latest]] for java callers.
+   */
+  def getLatest: Optional[Status] = OptionConverters.toJava(current)
+
+  /**
+   * Statuses that changed, to every subscriber from the time it subscribed, starting with the current one when known.
+   * The current status is read when the source is run, not when it is built.
+   */
+  def statuses: Source[Status, NotUsed] =
+    Source
+      .lazySingle(() => current)
+      .mapConcat(_.toList)
+      .concat(statusSource.buffer(settings.bufferSize, OverflowStrategy.dropHead))
+      .via(dedup)
+
+  /**
+   * Same as [[statuses]] for java callers, each call returns a new publisher.
+   */
+  def publisher: Publisher[Status] =
+    statuses.runWith(Sink.asPublisher[Status](fanout = false))
+
+  /**
+   * Drops the hub's status equal to the current one a new subscriber started with.
+   */
+  private def dedup =
+    StreamFlow[Status]
+      .statefulMapConcat { () =>
+        var previous: Option[Status] = None
+        status => {
+          val changed = !previous.contains(status)
+          previous = Some(status)
+          if (changed) status :: Nil else Nil
+        }
+      }
+
+  /**
+   * Stops polling and completes the subscribers' streams.
+   */
+  override def close(): Unit = {
+    poller.cancel()
+    statusQueue.complete()
+  }
+}
@@ -0,0 +1,237 @@
+package iog.psg.bcc
+
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+import java.util.Base64
+import java.util.concurrent.CompletionStage
+
+import akka.actor.{ ActorSystem, Cancellable }
+import iog.psg.bcc.BccApi.BccApiOps.BccApiRequestFOps
+import iog.psg.bcc.BccApi.{ BccApiResponse, ErrorMessage }
+import iog.psg.bcc.BccApiCodec.{ CreateTransactionResponse, Payment, Payments }
+import iog.psg.bcc.jpi.HelpExecute
+
+import scala.annotation.tailrec
+import scala.collection.concurrent.TrieMap
+import scala.concurrent.duration.{ Duration, DurationInt, FiniteDuration }
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.jdk.javaapi.FutureConverters
+import scala.util.{ Failure, Success }
+
+object PaymentAggregator {
+
+  val AggregatorClosedCode = "AGGREGATOR CLOSED"
+
+  /**
+   * Rejections a smaller batch may not get: the funds, the UTxO or the size of the transaction do not allow all
+   * its payments at once. Other errors, e.g. a wrong passphrase, an unknown wallet or an unavailable backend, would
+   * reject every half too.
+   */
+  val BatchRejectionCodes: Set[String] = Set(
+    "not_enough_money",
+    "cannot_cover_fee",
+    "inputs_depleted",
+    "utxo_too_small",
+    "transaction_is_too_big"
+  )
+
+  /**
+   * @param maxPayments max number of outputs of a transaction
+   * @param maxOutputBytes max approximate size of the outputs of a transaction, counting each output as its
+   *                       address length plus 9 bytes of amount
+   * @param window max time a payment waits for others before its transaction is sent
+   * @param splitRejected whether a batch rejected by the wallet is sent again as two halves, down to single payments
+   * @param splitCodes codes of the rejections a batch is split on, its payments all get the other errors
+   */
+  final case class Settings(maxPayments: Int = 50,
+                            maxOutputBytes: Int = 8000,
+                            window: FiniteDuration = 1.second,
+                            splitRejected: Boolean = true,
+                            splitCodes: Set[String] = BatchRejectionCodes) {
+    require(maxPayments > 0, s"maxPayments must be positive (not $maxPayments)")
+    require(maxOutputBytes > 0, s"maxOutputBytes must be positive (not $maxOutputBytes)")
+    require(window > Duration.Zero, s"window must be positive (not $window)")
+  }
+
+  def defaultSettings: Settings = Settings()
+
+  /**
+   * @param submitted payments submitted
+   * @param transactions transactions sent, halves of a split batch included
+   * @param splits batches split after a rejection
+   */
+  final case class Stats(submitted: Long, transactions: Long, splits: Long)
+
+  private[bcc] def outputBytes(payment: Payment): Int = payment.address.length + 9
+
+  // the passphrase is only kept while the payment is queued or sent
+  private final case class Queued(payment: Payment,
+                                  passphrase: String,
+                                  promise: Promise[BccApiResponse[CreateTransactionResponse]])
+
+  /**
+   * Keys the batches by the digest of the passphrase rather than by the passphrase, so it is not kept in memory
+   * once the payments given it are sent.
+   */
+  private[bcc] def batchKey(walletId: String, passphrase: String): (String, String) = {
+    val digest = MessageDigest.getInstance("SHA-256").digest(passphrase.getBytes(StandardCharsets.UTF_8))
+    walletId -> Base64.getEncoder.encodeToString(digest)
+  }
+
+  /**
+   * Payments of one wallet and passphrase waiting to be sent, guarded by the instance. A batch is removed once
+   * its transactions are sent and nothing is queued, a later payment gets a new batch.
+   */
+  private final class Batch {
+    var queued: Vector[Queued] = Vector.empty
+    var bytes = 0
+    var timer: Option[Cancellable] = None
+    // transactions of a wallet are sent one after the other
+    var sending: Future[Unit] = Future.unit
+    var removed = false
+
+    def drain(): Vector[Queued] = {
+      val drained = queued
+      queued = Vector.empty
+      bytes = 0
+      timer.foreach(_.cancel())
+      timer = None
+      drained
+    }
+  }
+}
+
+/**
+ * Coalesces payments of a wallet submitted one by one into multi-output transactions. A transaction is sent once
+ * `maxPayments` or `maxOutputBytes` is reached, or `window` after its first payment. Each submitter gets the
+ * shared transaction; a batch the wallet cannot send as a whole, e.g. for lack of funds, is split so the payments
+ * it can send still get through, other errors are returned to all the payments of the batch.
+ *
+ * @param api api of the wallet backend
+ * @param settings batch limits
+ */
+class PaymentAggregator(api: BccApi, settings: PaymentAggregator.Settings = PaymentAggregator.defaultSettings)(implicit
+  executor: ApiRequestExecutor,
+  ec: ExecutionContext,
+  as: ActorSystem
+) extends AutoCloseable {
+
+  import PaymentAggregator._
+
+  private val batches = TrieMap.empty[(String, String), Batch]
+  @volatile private var closed = false
+
+  private var submitted = 0L
+  private var transactions = 0L
+  private var splits = 0L
+
+  private def closedError: ErrorMessage = ErrorMessage("The payment aggregator is closed", AggregatorClosedCode)
+
+  /**
+   * @param walletId wallet paying
+   * @param passphrase wallet's passphrase, payments are only batched with payments given the same passphrase
+   * @param payment output of the transaction
+   * @return the transaction the payment was sent in, or the error of the wallet for the smallest batch
+   *         the payment was rejected with
+   */
+  def submit(walletId: String, passphrase: String, payment: Payment): Future[BccApiResponse[CreateTransactionResponse]] = {
+    val promise = Promise[BccApiResponse[CreateTransactionResponse]]()
+    if (closed) promise.success(Left(closedError))
+    else enqueue(batchKey(walletId, passphrase), Queued(payment, passphrase, promise))
+    promise.future
+  }
+
+  @tailrec
+  private def enqueue(key: (String, String), queued: Queued): Unit = {
+    val batch = batches.getOrElseUpdate(key, new Batch)
+    val enqueued = batch.synchronized {
+      // removed since it was got, the payment goes to the batch replacing it
+      if (batch.removed) false
+      else {
+        if (closed) queued.promise.success(Left(closedError))
+        else {
+          synchronized(submitted += 1)
+          batch.queued :+= queued
+          batch.bytes += outputBytes(queued.payment)
+          if (batch.queued.size >= settings.maxPayments || batch.bytes >= settings.maxOutputBytes) flush(key, batch)
+          else if (batch.timer.isEmpty)
+            batch.timer = Some(as.scheduler.scheduleOnce(settings.window)(batch.synchronized(flush(key, batch))))
+        }
+        true
+      }
+    }
+    if (!enqueued) enqueue(key, queued)
+  }
+
+  /**
+   * Same as [[submit]] for java callers.
+   *
+   * @return fails with a [[iog.psg.bcc.jpi.BccApiException]] on an error
+   */
+  def submitAsJava(walletId: String, passphrase: String, payment: Payment): CompletionStage[CreateTransactionResponse] =
+    FutureConverters.asJava(HelpExecute.unwrap(submit(walletId, passphrase, payment)))
+
+  /**
+   * Sends the payments queued in the batch, called holding the batch's lock. The batch is removed once the
+   * transaction is sent if nothing was queued or sent since.
+   */
+  private def flush(key: (String, String), batch: Batch): Unit = {
+    val queued = batch.drain()
+    if (queued.nonEmpty) {
+      val sending = batch.sending.flatMap(_ => send(key._1, queued))
+      batch.sending = sending
+      sending.onComplete { _ =>
+        batch.synchronized {
+          if ((batch.sending eq sending) && batch.queued.isEmpty) {
+            batch.removed = true
+            batches.remove(key, batch)
+          }
+        }
+      }
+    }
+  }
+
+  private def send(walletId: String, queued: Vector[Queued]): Future[Unit] = {
+    synchronized(transactions += 1)
+    api
+      .createTransaction(walletId, queued.head.passphrase, Payments(queued.map(_.payment)), None, None)
+      .execute
+      .transformWith {
+        case Success(Left(error)) if settings.splitRejected && queued.size > 1 && settings.splitCodes.contains(error.code) =>
+          synchronized(splits += 1)
+          val (first, second) = queued.splitAt(queued.size / 2)
+          send(walletId, first).flatMap(_ => send(walletId, second))
+
+        case Success(response) =>
+          queued.foreach(_.promise.trySuccess(response))
+          Future.unit
+
+        case Failure(exception) =>
+          // the transaction may have been sent, it is not sent again
+          queued.foreach(_.promise.tryFailure(exception))
+          Future.unit
+      }
+  }
+
+  /**
+   * Sends the payments queued for every wallet without waiting for their window to end.
+   */
+  def flush(): Unit = batches.foreach {
+    case (key, batch) => batch.synchronized(flush(key, batch))
+  }
+
+  def stats: Stats = synchronized(Stats(submitted, transactions, splits))
+
+  /**
+   * @return number of batches queuing or sending payments
+   */
+  private[bcc] def batchCount: Int = batches.size
+
+  /**
+   * Sends the payments queued, later submissions fail with a [[PaymentAggregator.AggregatorClosedCode]] error.
+   */
+  override def close(): Unit = {
+    closed = true
+    flush()
+  }
+}
@@ -0,0 +1,146 @@
+package iog.psg.bcc
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.Http
+import akka.http.scaladsl.model.{ HttpRequest, HttpResponse, Uri }
+import akka.http.scaladsl.settings.ConnectionPoolSettings
+import akka.stream.scaladsl.{ Keep, Sink, Source, SourceQueueWithComplete }
+import akka.stream.{ OverflowStrategy, QueueOfferResult }
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse, ErrorMessage }
+import iog.psg.bcc.metrics.{ ApiMetrics, ConnectTimingTransport, NoOpApiMetrics }
+
+import scala.collection.concurrent.TrieMap
+import scala.concurrent.duration.Duration
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.jdk.DurationConverters._
+import scala.util.{ Failure, Success, Try }
+
+object PooledApiRequestExecutor {
+
+  val QueueOverflowCode = "QUEUE OVERFLOW"
+  val QueueClosedCode = "QUEUE CLOSED"
+
+  /**
+   * @param maxConnections max number of parallel connections opened to a single host
+   * @param maxInFlight max number of requests queued or running against a single host
+   * @param overflowStrategy what to do with a request offered when `maxInFlight` is reached,
+   *                         `dropNew` answers with a [[QueueOverflowCode]] error, `backpressure` waits for space
+   * @param maxPendingOffers max number of requests waiting for space when `backpressure` is used
+   * @param keepAliveTimeout time after which an idle connection is closed by the client, before the wallet or a
+   *                         proxy in front of it closes it, akka's `keep-alive-timeout` when empty
+   * @param idleTimeout time after which a pool without requests is shut down, akka's `idle-timeout` when empty
+   * @param pipeliningLimit max number of requests sent on a connection before their responses arrive,
+   *                        akka's `pipelining-limit` when empty
+   */
+  final case class Settings(maxConnections: Int = 32,
+                            maxInFlight: Int = 256,
+                            overflowStrategy: OverflowStrategy = OverflowStrategy.dropNew,
+                            maxPendingOffers: Int = 1024,
+                            keepAliveTimeout: Option[Duration] = None,
+                            idleTimeout: Option[Duration] = None,
+                            pipeliningLimit: Option[Int] = None) {
+    require(maxConnections > 0, s"maxConnections must be positive (not $maxConnections)")
+    require(maxInFlight > 0, s"maxInFlight must be positive (not $maxInFlight)")
+    require(maxPendingOffers > 0, s"maxPendingOffers must be positive (not $maxPendingOffers)")
+    require(pipeliningLimit.forall(_ > 0), s"pipeliningLimit must be positive (not ${pipeliningLimit.mkString})")
+
+    def this(maxConnections: Int, maxInFlight: Int, overflowStrategy: OverflowStrategy, maxPendingOffers: Int) =
+      this(maxConnections, maxInFlight, overflowStrategy, maxPendingOffers, None, None, None)
+
+    def withKeepAliveTimeout(keepAliveTimeout: java.time.Duration): Settings =
+      copy(keepAliveTimeout = Some(keepAliveTimeout.toScala))
+
+    def withIdleTimeout(idleTimeout: java.time.Duration): Settings = copy(idleTimeout = Some(idleTimeout.toScala))
+
+    def withPipeliningLimit(pipeliningLimit: Int): Settings = copy(pipeliningLimit = Some(pipeliningLimit))
+  }
+
+  def defaultSettings: Settings = Settings()
+
+  private[bcc] def nextPowerOfTwo(n: Int): Int =
+    if (n <= 1) 1 else Integer.highestOneBit(n - 1) << 1
+}
+
+/**
+ * Sends requests through a host connection pool fed by a bounded queue, one pool per host.
+ * Unlike `Http().singleRequest` the number of requests waiting for a connection is capped,
+ * and overflow is reported as an [[ErrorMessage]] instead of an exception from the global pool.
+ *
+ * @param settings pool and queue settings
+ * @param metrics registry receiving the time taken to open every connection
+ */
+class PooledApiRequestExecutor(settings: PooledApiRequestExecutor.Settings, metrics: ApiMetrics)(implicit as: ActorSystem)
+    extends ApiRequestExecutor {
+
+  import PooledApiRequestExecutor._
+
+  def this(settings: PooledApiRequestExecutor.Settings)(implicit as: ActorSystem) = this(settings, NoOpApiMetrics)
+
+  private type Context = Promise[HttpResponse]
+  private type RequestQueue = SourceQueueWithComplete[(HttpRequest, Context)]
+
+  private val queues = TrieMap.empty[Uri.Authority, RequestQueue]
+
+  private def poolSettings: ConnectionPoolSettings = {
+    val sized = ConnectionPoolSettings(as)
+      .withMaxConnections(settings.maxConnections)
+      .withMaxOpenRequests(nextPowerOfTwo(settings.maxInFlight))
+    val keptAlive = settings.keepAliveTimeout.fold(sized)(sized.withKeepAliveTimeout)
+    val idling = settings.idleTimeout.fold(keptAlive)(keptAlive.withIdleTimeout)
+    val pool = settings.pipeliningLimit.fold(idling)(idling.withPipeliningLimit)
+
+    if (metrics eq NoOpApiMetrics) pool
+    else pool.withTransport(new ConnectTimingTransport(pool.connectionSettings.transport, metrics))
+  }
+
+  private def materializeQueue(uri: Uri): RequestQueue = {
+    val host = uri.authority.host.address()
+    val port = uri.effectivePort
+
+    val pool =
+      if (uri.scheme == "https") Http().cachedHostConnectionPoolHttps[Context](host, port, settings = poolSettings)
+      else Http().cachedHostConnectionPool[Context](host, port, poolSettings)
+
+    val queue = Source
+      .queue[(HttpRequest, Context)](settings.maxInFlight, settings.overflowStrategy, settings.maxPendingOffers)
+      .via(pool)
+      .toMat(Sink.foreach[(Try[HttpResponse], Context)] {
+        case (Success(response), promise) => promise.success(response)
+        case (Failure(e), promise)        => promise.failure(e)
+      })(Keep.left)
+      .run()
+
+    // a failed queue (e.g. OverflowStrategy.fail) is replaced on the next request
+    queue.watchCompletion().onComplete(_ => queues.remove(uri.authority, queue))(as.dispatcher)
+    queue
+  }
+
+  private def queueFor(uri: Uri): RequestQueue =
+    queues.getOrElse(uri.authority, queues.synchronized {
+      queues.getOrElseUpdate(uri.authority, materializeQueue(uri))
+    })
+
+  override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+    val responsePromise = Promise[HttpResponse]()
+    val relativeRequest = request.request.withUri(request.request.uri.toRelative)
+
+    queueFor(request.request.uri).offer(relativeRequest -> responsePromise).flatMap {
+      case QueueOfferResult.Enqueued =>
+        responsePromise.future.flatMap(request.mapper)
+      case QueueOfferResult.Dropped =>
+        Future.successful(Left(ErrorMessage(s"Request queue overflowed (max in flight ${settings.maxInFlight})", QueueOverflowCode)))
+      case QueueOfferResult.Failure(e) =>
+        Future.failed(e)
+      case QueueOfferResult.QueueClosed =>
+        Future.successful(Left(ErrorMessage("Request queue was closed", QueueClosedCode)))
+    }
+  }
+
+  /**
+   * Completes every host queue, requests already queued are still sent.
+   */
+  def shutdown(): Unit = queues.synchronized {
+    queues.values.foreach(_.complete())
+    queues.clear()
+  }
+}
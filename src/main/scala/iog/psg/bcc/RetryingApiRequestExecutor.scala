@@ -0,0 +1,245 @@
+package iog.psg.bcc
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.{ AtomicBoolean, AtomicInteger, AtomicLong, AtomicReference }
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpMethods, HttpRequest, HttpResponse }
+import akka.pattern.after
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse, ErrorMessage }
+
+import scala.concurrent.duration.{ DurationInt, DurationLong, FiniteDuration }
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.jdk.DurationConverters._
+import scala.util.control.NonFatal
+import scala.util.{ Failure, Success, Try }
+
+object RetryingApiRequestExecutor {
+
+  val isIdempotent: HttpRequest => Boolean =
+    request => request.method == HttpMethods.GET || request.method == HttpMethods.DELETE
+
+  /**
+   * @param maxRetries max number of retries after the first attempt
+   * @param minBackoff delay before the first retry, doubled after every retry
+   * @param maxBackoff max delay before a retry
+   * @param randomFactor random share added to every delay, e.g. 0.2 adds up to 20%, so retries of many requests spread
+   *                     out, the delay staying within maxBackoff
+   * @param retryableStatuses http statuses retried, requests failing with an exception are always retried
+   * @param budgetRatio retries and hedges earned by every first attempt, e.g. 0.2 caps the extra load at 20%
+   * @param maxBudget max number of retries and hedges saved up while the backend is healthy
+   * @param hedge whether a copy of a request still waiting for its response after the `hedgeQuantile` latency
+   *              of its endpoint is sent, the first response wins and the other one is discarded
+   * @param hedgeQuantile latency quantile of an endpoint after which a hedge is sent
+   * @param minHedgeSamples number of latencies recorded for an endpoint before its requests are hedged
+   */
+  final case class Settings(maxRetries: Int = 2,
+                            minBackoff: FiniteDuration = 100.millis,
+                            maxBackoff: FiniteDuration = 2.seconds,
+                            randomFactor: Double = 0.2,
+                            retryableStatuses: Set[Int] = Set(502, 503, 504),
+                            budgetRatio: Double = 0.2,
+                            maxBudget: Int = 100,
+                            hedge: Boolean = false,
+                            hedgeQuantile: Double = 0.95,
+                            minHedgeSamples: Int = 20) {
+    require(maxRetries >= 0, s"maxRetries must not be negative (not $maxRetries)")
+    require(minBackoff <= maxBackoff, s"minBackoff ($minBackoff) must not be greater than maxBackoff ($maxBackoff)")
+    require(randomFactor >= 0, s"randomFactor must not be negative (not $randomFactor)")
+    require(budgetRatio >= 0, s"budgetRatio must not be negative (not $budgetRatio)")
+    require(maxBudget >= 0, s"maxBudget must not be negative (not $maxBudget)")
+    require(hedgeQuantile > 0 && hedgeQuantile < 1, s"hedgeQuantile must be in (0, 1) (not $hedgeQuantile)")
+    require(minHedgeSamples > 0, s"minHedgeSamples must be positive (not $minHedgeSamples)")
+
+    def withMaxRetries(maxRetries: Int): Settings = copy(maxRetries = maxRetries)
+
+    def withBackoff(minBackoff: java.time.Duration, maxBackoff: java.time.Duration): Settings =
+      copy(minBackoff = minBackoff.toScala, maxBackoff = maxBackoff.toScala)
+
+    def withBudget(budgetRatio: Double, maxBudget: Int): Settings = copy(budgetRatio = budgetRatio, maxBudget = maxBudget)
+
+    def withHedging(hedgeQuantile: Double): Settings = copy(hedge = true, hedgeQuantile = hedgeQuantile)
+  }
+
+  def defaultSettings: Settings = Settings()
+
+  final case class Stats(retries: Long, hedges: Long, hedgeWins: Long, budgetRejections: Long)
+
+  private val HedgeLostCode = "HEDGE LOST"
+
+  private val LatencyWindowSize = 256
+  private val QuantileRefreshInterval = 32
+
+  /**
+   * Latencies of the last requests to one endpoint, the quantile is only sorted again every few samples.
+   */
+  private final class LatencyWindow {
+    private val samples = new Array[Long](LatencyWindowSize)
+    private var count = 0L
+    private var quantileAt = -1L
+    private var quantileNanos = 0L
+
+    def record(nanos: Long): Unit = synchronized {
+      samples((count % LatencyWindowSize).toInt) = nanos
+      count += 1
+    }
+
+    def quantile(q: Double, minSamples: Int): Option[FiniteDuration] = synchronized {
+      if (count < minSamples) None
+      else {
+        if (quantileAt < 0 || count - quantileAt >= QuantileRefreshInterval) {
+          val sorted = samples.take(math.min(count, LatencyWindowSize.toLong).toInt).sorted
+          quantileNanos = sorted(math.min(sorted.length - 1, (q * sorted.length).toInt))
+          quantileAt = count
+        }
+        Some(quantileNanos.nanos)
+      }
+    }
+  }
+}
+
+/**
+ * Retries idempotent requests (GET and DELETE by default) failing with an exception or a retryable status,
+ * waiting an exponential, jittered backoff between attempts. Optionally hedges them: a request still waiting
+ * for its response headers after the usual (p95 by default) latency of its endpoint is sent again, the first
+ * response is kept and the entity of the other one is discarded.
+ *
+ * Retries and hedges draw from a budget refilled by a fraction of every first attempt, so during an outage
+ * the load sent to the backend grows by at most that fraction. Like the coalescing executor, the retried
+ * response is made strict before being mapped by the request's mapper; the lists of a wallet's transactions, which
+ * may be streamed and too large to be made strict, are therefore passed through untouched.
+ *
+ * @param underlying executor sending the requests
+ * @param settings retry, budget and hedging settings
+ * @param retry which requests may be sent more than once, lists of transactions aside
+ */
+class RetryingApiRequestExecutor(underlying: ApiRequestExecutor,
+                                 settings: RetryingApiRequestExecutor.Settings,
+                                 retry: HttpRequest => Boolean)
+    extends ApiRequestExecutor {
+
+  import RetryingApiRequestExecutor._
+
+  def this(underlying: ApiRequestExecutor, settings: RetryingApiRequestExecutor.Settings) =
+    this(underlying, settings, RetryingApiRequestExecutor.isIdempotent)
+
+  private val retries = new AtomicLong()
+  private val hedges = new AtomicLong()
+  private val hedgeWins = new AtomicLong()
+  private val budgetRejections = new AtomicLong()
+
+  // in thousandths of a retry
+  private val maxBudget = settings.maxBudget * 1000L
+  private val budgetDeposit = (settings.budgetRatio * 1000).toLong
+  private val budget = new AtomicLong(maxBudget)
+
+  private val latencies = new ConcurrentHashMap[String, LatencyWindow]()
+
+  def stats: Stats = Stats(retries.get(), hedges.get(), hedgeWins.get(), budgetRejections.get())
+
+  override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+    if (!retry(request.request) || ApiRequestExecutor.isTransactionList(request.request)) underlying.execute(request)
+    else {
+      budget.getAndUpdate(b => math.min(b + budgetDeposit, maxBudget))
+      val window = latencies.computeIfAbsent(ApiRequestExecutor.endpointName(request.request), _ => new LatencyWindow)
+
+      executeWithRetries(request.request, window, attempt = 0).flatMap {
+        case Left(error)     => Future.successful(Left(error))
+        case Right(response) => request.mapper(response)
+      }
+    }
+
+  private def executeWithRetries(request: HttpRequest, window: LatencyWindow, attempt: Int)(implicit
+    ec: ExecutionContext,
+    as: ActorSystem
+  ): Future[BccApiResponse[HttpResponse]] =
+    executeHedged(request, window).transformWith { outcome =>
+      if (attempt < settings.maxRetries && isRetryable(outcome) && withdrawBudget()) {
+        retries.incrementAndGet()
+        after(backoff(attempt), as.scheduler)(executeWithRetries(request, window, attempt + 1))
+      } else Future.fromTry(outcome)
+    }
+
+  private def isRetryable(outcome: Try[BccApiResponse[HttpResponse]]): Boolean = outcome match {
+    case Failure(NonFatal(_))     => true
+    case Success(Right(response)) => settings.retryableStatuses.contains(response.status.intValue())
+    case _                        => false
+  }
+
+  private def executeHedged(request: HttpRequest, window: LatencyWindow)(implicit
+    ec: ExecutionContext,
+    as: ActorSystem
+  ): Future[BccApiResponse[HttpResponse]] = {
+    val settled = new AtomicBoolean()
+    val hedgeDelay = if (settings.hedge) window.quantile(settings.hedgeQuantile, settings.minHedgeSamples) else None
+
+    hedgeDelay match {
+      case None =>
+        send(request, window, settled)
+
+      case Some(delay) =>
+        val result = Promise[BccApiResponse[HttpResponse]]()
+        val pending = new AtomicInteger(1)
+        val lastFailure = new AtomicReference[Throwable]()
+
+        // a lost or failed attempt only answers when no other attempt is left
+        def lose(failure: Option[Throwable]): Unit = {
+          failure.foreach(lastFailure.set)
+          if (pending.decrementAndGet() == 0) result.tryFailure(lastFailure.get())
+        }
+
+        def race(attempt: Future[BccApiResponse[HttpResponse]], isHedge: Boolean): Unit = attempt.onComplete {
+          case Success(Left(ErrorMessage(_, HedgeLostCode))) => lose(None)
+          case Failure(e)                                    => lose(Some(e))
+          case Success(response) =>
+            if (result.trySuccess(response) && isHedge) hedgeWins.incrementAndGet()
+        }
+
+        race(send(request, window, settled), isHedge = false)
+
+        val timer = as.scheduler.scheduleOnce(delay) {
+          if (!result.isCompleted && !settled.get() && withdrawBudget()) {
+            hedges.incrementAndGet()
+            pending.incrementAndGet()
+            race(send(request, window, settled), isHedge = true)
+          }
+        }
+        result.future.onComplete(_ => timer.cancel())
+        result.future
+    }
+  }
+
+  /**
+   * The first attempt of a race to get its response headers wins it, the entity of any later response is discarded.
+   */
+  private def send(request: HttpRequest, window: LatencyWindow, settled: AtomicBoolean)(implicit
+    ec: ExecutionContext,
+    as: ActorSystem
+  ): Future[BccApiResponse[HttpResponse]] = {
+    val start = System.nanoTime()
+    val strictRequest = ApiRequestExecutor.strictResponseRequest(request)
+
+    Future.delegate(underlying.execute(BccApiRequest[HttpResponse](request, response =>
+      if (settled.compareAndSet(false, true)) {
+        window.record(System.nanoTime() - start)
+        strictRequest.mapper(response)
+      } else {
+        response.discardEntityBytes()
+        Future.successful(Left(ErrorMessage("Response of a hedged request arrived second", HedgeLostCode)))
+      }
+    )))
+  }
+
+  private def withdrawBudget(): Boolean = {
+    val granted = budget.getAndUpdate(b => if (b >= 1000) b - 1000 else b) >= 1000
+    if (!granted) budgetRejections.incrementAndGet()
+    granted
+  }
+
+  private[bcc] def backoff(attempt: Int): FiniteDuration = {
+    val exponential = settings.minBackoff.toNanos * math.pow(2, attempt)
+    val jittered = exponential * (1 + ThreadLocalRandom.current().nextDouble() * settings.randomFactor)
+    math.min(settings.maxBackoff.toNanos.toDouble, jittered).toLong.nanos
+  }
+}
@@ -0,0 +1,275 @@
+package iog.psg.bcc
+
+import akka.actor.ActorSystem
+import iog.psg.bcc.BccApi.BccApiOps.BccApiRequestOps
+import iog.psg.bcc.BccApi.BccApiResponse
+import iog.psg.bcc.BccApiCodec.StakePool
+
+import scala.collection.concurrent.TrieMap
+import scala.concurrent.duration.{ Duration, DurationInt, FiniteDuration }
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.util.control.NonFatal
+
+object StakePoolCatalog {
+
+  /**
+   * @param ttl max age of the pools listed for a stake amount
+   * @param refreshOnEpoch whether the pools also expire when the next epoch starts, read from the network information
+   * @param bucketsPerDoubling stake amounts falling in the same bucket share their snapshot, the buckets of amounts
+   *                           between `x` and `2x` are this many; the pools are listed for the lowest amount of the
+   *                           bucket, e.g. up to 9% below the amount asked with 8 buckets
+   */
+  final case class Settings(ttl: FiniteDuration = 10.minutes, refreshOnEpoch: Boolean = true, bucketsPerDoubling: Int = 8) {
+    require(ttl > Duration.Zero, s"ttl must be positive (not $ttl)")
+    require(bucketsPerDoubling > 0, s"bucketsPerDoubling must be positive (not $bucketsPerDoubling)")
+  }
+
+  def defaultSettings: Settings = Settings()
+
+  /**
+   * The pools listed for a stake amount, one primitive array per metric, the pool at index `i` of every array.
+   * Queries read the arrays and allocate nothing, except the ones returning ids.
+   *
+   * @param stake stake amount the pools were listed for, the lowest amount of the bucket of the amount asked
+   * @param listedAtMillis wall clock time of the listing
+   * @param expiresAtMillis wall clock time after which the pools are listed again
+   */
+  final class Snapshot private[StakePoolCatalog] (val stake: Int,
+                                                  val listedAtMillis: Long,
+                                                  val expiresAtMillis: Long,
+                                                  ids: Array[String],
+                                                  tickers: Array[String],
+                                                  rewards: Array[Long],
+                                                  relativeStakes: Array[Double],
+                                                  saturations: Array[Double],
+                                                  blockCounts: Array[Long],
+                                                  costs: Array[Long],
+                                                  margins: Array[Double],
+                                                  pledges: Array[Long],
+                                                  retirementEpochs: Array[Long],
+                                                  byReward: Array[Int],
+                                                  indexById: java.util.HashMap[String, Integer]) {
+
+    def size: Int = ids.length
+
+    def isExpired(nowMillis: Long): Boolean = nowMillis >= expiresAtMillis
+
+    /**
+     * @param id pool id
+     * @return index of the pool, -1 when it was not listed
+     */
+    def indexOf(id: String): Int = {
+      val index = indexById.get(id)
+      if (index == null) -1 else index
+    }
+
+    def id(index: Int): String = ids(index)
+
+    /**
+     * @return ticker of the pool's metadata, null without metadata
+     */
+    def ticker(index: Int): String = tickers(index)
+
+    def nonMyopicMemberRewards(index: Int): Long = rewards(index)
+
+    def relativeStake(index: Int): Double = relativeStakes(index)
+
+    def saturation(index: Int): Double = saturations(index)
+
+    def producedBlocks(index: Int): Long = blockCounts(index)
+
+    def cost(index: Int): Long = costs(index)
+
+    def margin(index: Int): Double = margins(index)
+
+    def pledge(index: Int): Long = pledges(index)
+
+    /**
+     * @return epoch the pool retires at, -1 when it does not retire
+     */
+    def retirementEpoch(index: Int): Long = retirementEpochs(index)
+
+    /**
+     * Fills `into` with the indexes of the pools of highest non myopic member rewards.
+     *
+     * @param maxSaturation pools of a higher saturation are left out, e.g. 1.0 to leave out oversaturated pools
+     * @param includeRetiring whether pools announcing their retirement are kept
+     * @param into indexes of the pools, highest rewards first, at most `into.length` are written
+     * @return number of indexes written
+     */
+    def topByReward(maxSaturation: Double, includeRetiring: Boolean, into: Array[Int]): Int = {
+      var written = 0
+      var rank = 0
+      while (written < into.length && rank < byReward.length) {
+        val index = byReward(rank)
+        if (saturations(index) <= maxSaturation && (includeRetiring || retirementEpochs(index) < 0)) {
+          into(written) = index
+          written += 1
+        }
+        rank += 1
+      }
+      written
+    }
+
+    /**
+     * @param k max number of pools
+     * @param maxSaturation pools of a higher saturation are left out
+     * @return ids of the pools of highest non myopic member rewards, retiring pools left out
+     */
+    def topIdsByReward(k: Int, maxSaturation: Double = Double.MaxValue): Seq[String] = {
+      require(k >= 0, s"k must not be negative (not $k)")
+      val top = new Array[Int](math.min(k, size))
+      val written = topByReward(maxSaturation, includeRetiring = false, top)
+      top.iterator.take(written).map(ids).toSeq
+    }
+
+    /**
+     * @return number of pools of a saturation at most `maxSaturation`
+     */
+    def countBySaturation(maxSaturation: Double): Int = {
+      var count = 0
+      var index = 0
+      while (index < saturations.length) {
+        if (saturations(index) <= maxSaturation) count += 1
+        index += 1
+      }
+      count
+    }
+  }
+
+  private[bcc] def toSnapshot(stake: Int, pools: Seq[StakePool], listedAtMillis: Long, expiresAtMillis: Long): Snapshot = {
+    val size = pools.size
+    val ids = new Array[String](size)
+    val tickers = new Array[String](size)
+    val rewards = new Array[Long](size)
+    val relativeStakes = new Array[Double](size)
+    val saturations = new Array[Double](size)
+    val blockCounts = new Array[Long](size)
+    val costs = new Array[Long](size)
+    val margins = new Array[Double](size)
+    val pledges = new Array[Long](size)
+    val retirementEpochs = new Array[Long](size)
+    val indexById = new java.util.HashMap[String, Integer](size * 2)
+
+    pools.iterator.zipWithIndex.foreach {
+      case (pool, index) =>
+        ids(index) = pool.id
+        tickers(index) = pool.metadata.map(_.ticker).orNull
+        rewards(index) = pool.metrics.nonMyopicMemberRewards.quantity
+        relativeStakes(index) = pool.metrics.relativeStake.quantity
+        saturations(index) = pool.metrics.saturation
+        blockCounts(index) = pool.metrics.producedBlocks.quantity
+        costs(index) = pool.cost.quantity
+        margins(index) = pool.margin.quantity
+        pledges(index) = pool.pledge.quantity
+        retirementEpochs(index) = pool.retirement.fold(-1L)(_.epochNumber)
+        indexById.put(pool.id, index)
+    }
+
+    val byReward = Array.range(0, size).sortBy(index => -rewards(index))
+
+    new Snapshot(stake, listedAtMillis, expiresAtMillis, ids, tickers, rewards, relativeStakes, saturations,
+      blockCounts, costs, margins, pledges, retirementEpochs, byReward, indexById)
+  }
+
+  /**
+   * The pools of one stake amount, guarded by the instance.
+   */
+  private final class Listing {
+    @volatile var current: Option[Snapshot] = None
+    var refreshing: Option[Future[BccApiResponse[Snapshot]]] = None
+  }
+}
+
+/**
+ * Keeps the stake pools listed for each stake amount in a [[StakePoolCatalog.Snapshot]], so rankings are
+ * computed without listing the pools again. The pools are listed again after the ttl, or when the next epoch
+ * starts; meanwhile the expired snapshot is still returned.
+ *
+ * Stake amounts are bucketed, so callers asking for varying amounts share a few snapshots, at most
+ * `bucketsPerDoubling` per doubling of the amount: the rewards ranked are the ones of the lowest amount of the bucket.
+ *
+ * @param api api of the wallet backend
+ * @param settings when the pools are listed again
+ */
+class StakePoolCatalog(api: BccApi, settings: StakePoolCatalog.Settings = StakePoolCatalog.defaultSettings)(implicit
+  executor: ApiRequestExecutor,
+  ec: ExecutionContext,
+  as: ActorSystem
+) {
+
+  import StakePoolCatalog._
+
+  // by the stake amount listed
+  private val listings = TrieMap.empty[Int, Listing]
+
+  /**
+   * @return the lowest amount of the bucket of the stake amount, invalid amounts are kept as they are
+   */
+  private[bcc] def listedStake(stake: Int): Int =
+    if (stake <= 1) stake
+    else {
+      val bucket = math.floor(math.log(stake.toDouble) / math.log(2) * settings.bucketsPerDoubling)
+      math.min(stake.toDouble, math.ceil(math.pow(2, bucket / settings.bucketsPerDoubling))).toInt
+    }
+
+  private def nextEpochStartMillis: Future[Option[Long]] =
+    if (!settings.refreshOnEpoch) Future.successful(None)
+    else
+      api.networkInfo.execute
+        .map(_.toOption.flatMap(_.nextEpoch).map(_.epochStartTime.toInstant.toEpochMilli))
+        .recover { case NonFatal(_) => None }
+
+  private def list(stake: Int, listing: Listing): Future[BccApiResponse[Snapshot]] =
+    listing.synchronized {
+      listing.refreshing.getOrElse {
+        val epochStart = nextEpochStartMillis
+        val listed = api.listStakePools(stake).execute.flatMap {
+          case Left(error) =>
+            // an amount the wallet rejects is not kept
+            if (listing.current.isEmpty) listings.remove(stake, listing)
+            Future.successful(Left(error))
+          case Right(pools) =>
+            epochStart.map { nextEpochStart =>
+              val now = System.currentTimeMillis()
+              val ttlEnd = now + settings.ttl.toMillis
+              val expiresAt = nextEpochStart.filter(_ > now).fold(ttlEnd)(math.min(_, ttlEnd))
+              val listedPools = toSnapshot(stake, pools, now, expiresAt)
+              listing.current = Some(listedPools)
+              Right(listedPools)
+            }
+        }
+
+        val refreshing = listed.andThen { case _ => listing.synchronized(listing.refreshing = None) }
+        listing.refreshing = Some(refreshing)
+        refreshing
+      }
+    }
+
+  /**
+   * @param stake stake amount the non myopic member rewards are computed for
+   * @return the pools listed for the bucket of the stake amount, listed now only the first time,
+   *         an expired snapshot is returned while the pools are listed again in the background
+   */
+  def snapshot(stake: Int): Future[BccApiResponse[Snapshot]] = {
+    val listed = listedStake(stake)
+    val listing = listings.getOrElseUpdate(listed, new Listing)
+    listing.current match {
+      case Some(current) =>
+        if (current.isExpired(System.currentTimeMillis())) list(listed, listing)
+        Future.successful(Right(current))
+      case None => list(listed, listing)
+    }
+  }
+
+  /**
+   * Lists the pools of the stake amount again, e.g. after a delegation changed the rewards.
+   *
+   * @param stake stake amount the non myopic member rewards are computed for
+   * @return the new snapshot of the bucket of the stake amount
+   */
+  def refresh(stake: Int): Future[BccApiResponse[Snapshot]] = {
+    val listed = listedStake(stake)
+    list(listed, listings.getOrElseUpdate(listed, new Listing))
+  }
+}
@@ -0,0 +1,243 @@
+package iog.psg.bcc
+
+import java.util.concurrent.CompletionStage
+
+import akka.NotUsed
+import akka.actor.ActorSystem
+import akka.stream.{ KillSwitches, OverflowStrategy, UniqueKillSwitch }
+import akka.stream.scaladsl.{ BroadcastHub, Keep, Sink, Source }
+import iog.psg.bcc.BccApi.{ BccApiResponse, ErrorMessage }
+import iog.psg.bcc.BccApiCodec.{ CreateTransactionResponse, TxState }
+import iog.psg.bcc.BccApiCodec.TxState.TxState
+import iog.psg.bcc.jpi.HelpExecute
+
+import scala.collection.mutable
+import scala.concurrent.duration.{ DurationInt, FiniteDuration }
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.jdk.javaapi.FutureConverters
+import scala.util.control.NonFatal
+
+object TransactionWatcher {
+
+  val WatcherStoppedCode = "WATCHER STOPPED"
+
+  /**
+   * @param tipPollInterval delay between two reads of the network tip, the transactions are only checked
+   *                        when the tip moved; unused when the watcher is given a shared [[NetworkTipPoller]]
+   * @param backoffAfterTips number of tips a transaction is checked at every tip, then at every 2nd, 4th... tip
+   * @param maxTipsBetweenChecks max number of tips between two checks of a transaction
+   * @param parallelism max number of transactions of a wallet fetched at the same time
+   * @param eventBufferSize max number of events kept while no [[TransactionWatcher.events]] subscriber keeps up,
+   *                        the oldest are dropped first
+   */
+  final case class Settings(tipPollInterval: FiniteDuration = 2.seconds,
+                            backoffAfterTips: Int = 10,
+                            maxTipsBetweenChecks: Int = 16,
+                            parallelism: Int = 4,
+                            eventBufferSize: Int = 1024) {
+    require(backoffAfterTips >= 0, s"backoffAfterTips must not be negative (not $backoffAfterTips)")
+    require(maxTipsBetweenChecks > 0, s"maxTipsBetweenChecks must be positive (not $maxTipsBetweenChecks)")
+    require(parallelism > 0, s"parallelism must be positive (not $parallelism)")
+    require(eventBufferSize > 0, s"eventBufferSize must be positive (not $eventBufferSize)")
+  }
+
+  def defaultSettings: Settings = Settings()
+
+  /**
+   * @param walletId wallet's id
+   * @param transaction the transaction as last fetched
+   * @param previousStatus status before the change, empty the first time the transaction is fetched
+   */
+  final case class StatusChanged(walletId: String, transaction: CreateTransactionResponse, previousStatus: Option[TxState])
+
+  private final case class Watch(confirmations: Long, promise: Promise[BccApiResponse[CreateTransactionResponse]])
+
+  /**
+   * A transaction watched by one or more callers, guarded by the watcher.
+   */
+  private final class Registration(val walletId: String, val transactionId: String, val registeredAtTip: Long) {
+    var watches: List[Watch] = Nil
+    var status: Option[TxState] = None
+    var checks = 0
+    var nextCheckAtTip = registeredAtTip
+  }
+
+  private def isFinal(status: TxState): Boolean = status == TxState.expired
+
+  private def depthOf(transaction: CreateTransactionResponse): Long = transaction.depth.fold(0L)(_.quantity)
+}
+
+/**
+ * Watches submitted transactions until they reach the ledger, or a depth, for any number of callers.
+ *
+ * The watched transactions are only fetched when the network tip moved, grouped by wallet. A transaction still
+ * pending after `backoffAfterTips` tips is fetched less and less often.
+ *
+ * @param api api of the wallet backend
+ * @param settings polling and backoff settings
+ * @param tipPoller poller shared with other components, left running on close; by default the watcher reads
+ *                  the tip every `tipPollInterval` on its own
+ */
+class TransactionWatcher(api: BccApi,
+                         settings: TransactionWatcher.Settings = TransactionWatcher.defaultSettings,
+                         tipPoller: Option[NetworkTipPoller] = None)(implicit
+  executor: ApiRequestExecutor,
+  ec: ExecutionContext,
+  as: ActorSystem
+) extends AutoCloseable {
+
+  import TransactionWatcher._
+
+  private val registrations = mutable.LinkedHashMap.empty[(String, String), Registration]
+  private var lastTip: Option[(Long, Long)] = None
+  private var tipCount = 0L
+  private var stopped = false
+
+  private val (eventQueue, eventSource) =
+    Source
+      .queue[StatusChanged](settings.eventBufferSize, OverflowStrategy.dropHead)
+      .toMat(BroadcastHub.sink[StatusChanged])(Keep.both)
+      .run()
+
+  private val ownedPoller =
+    if (tipPoller.isEmpty) Some(new NetworkTipPoller(api, NetworkTipPoller.Settings(settings.tipPollInterval))) else None
+
+  // a tip arriving while the transactions are checked replaces the previous one not checked yet
+  private val tipSubscription: UniqueKillSwitch =
+    tipPoller
+      .orElse(ownedPoller)
+      .get
+      .statuses
+      .map(status => status.nodeTip.epochNumber -> status.nodeTip.slotNumber)
+      .conflate((_, latest) => latest)
+      .viaMat(KillSwitches.single)(Keep.right)
+      .mapAsync(1)(onTip)
+      .toMat(Sink.ignore)(Keep.left)
+      .run()
+
+  /**
+   * Status changes of the watched transactions, to every subscriber from the time it subscribed.
+   */
+  def events: Source[StatusChanged, NotUsed] = eventSource
+
+  /**
+   * @param walletId wallet's id
+   * @param transactionId id of a submitted transaction
+   * @param confirmations depth the transaction must reach in the ledger, 0 to complete once it is in the ledger
+   * @return the transaction once in the ledger at the depth, or expired; the error of the wallet when it does not
+   *         know the transaction, a [[TransactionWatcher.WatcherStoppedCode]] error when the watcher is closed
+   */
+  def watch(walletId: String, transactionId: String, confirmations: Long = 0): Future[BccApiResponse[CreateTransactionResponse]] = {
+    val promise = Promise[BccApiResponse[CreateTransactionResponse]]()
+    synchronized {
+      if (stopped) promise.success(Left(stoppedError))
+      else {
+        val registration = registrations.getOrElseUpdate(
+          walletId -> transactionId,
+          new Registration(walletId, transactionId, tipCount)
+        )
+        registration.watches ::= Watch(confirmations, promise)
+        // checked at the next tip even when it is already checked less often
+        registration.nextCheckAtTip = math.min(registration.nextCheckAtTip, tipCount + 1)
+      }
+    }
+    promise.future
+  }
+
+  /**
+   * Same as [[watch]] for java callers.
+   *
+   * @return fails with a [[iog.psg.bcc.jpi.BccApiException]] on an error
+   */
+  def watchAsJava(walletId: String, transactionId: String, confirmations: Long): CompletionStage[CreateTransactionResponse] =
+    FutureConverters.asJava(HelpExecute.unwrap(watch(walletId, transactionId, confirmations)))
+
+  /**
+   * @return number of transactions watched
+   */
+  def size: Int = synchronized(registrations.size)
+
+  private def stoppedError: ErrorMessage = ErrorMessage("The transaction watcher is closed", WatcherStoppedCode)
+
+  private def onTip(tip: (Long, Long)): Future[Unit] = {
+    val due = synchronized {
+      if (stopped || lastTip.contains(tip)) Nil
+      else {
+        lastTip = Some(tip)
+        tipCount += 1
+        registrations.values.filter(_.nextCheckAtTip <= tipCount).toList
+      }
+    }
+    checkAll(due).recover { case NonFatal(_) => () }
+  }
+
+  private def checkAll(due: List[Registration]): Future[Unit] =
+    Future
+      .traverse(due.groupBy(_.walletId).toSeq) {
+        case (walletId, walletRegistrations) =>
+          val checked = walletRegistrations.toVector
+          api.getTransactions(walletId, checked.map(_.transactionId), settings.parallelism).map { results =>
+            results.foreach(result => update(checked(result.index), result.response))
+          }
+      }
+      .map(_ => ())
+
+  private def update(registration: Registration, response: BccApiResponse[CreateTransactionResponse]): Unit = {
+    val (events, completed) = synchronized {
+      response match {
+        case Right(transaction) =>
+          val changed =
+            if (registration.status.contains(transaction.status)) Nil
+            else List(StatusChanged(registration.walletId, transaction, registration.status))
+          registration.status = Some(transaction.status)
+
+          val (done, waiting) = registration.watches.partition { watch =>
+            isFinal(transaction.status) || (transaction.status == TxState.inLedger && depthOf(transaction) >= watch.confirmations)
+          }
+          registration.watches = waiting
+          registration.checks += 1
+          scheduleNextCheck(registration)
+          if (waiting.isEmpty) registrations.remove(registration.walletId -> registration.transactionId)
+          changed -> done.map(_.promise -> response)
+
+        case Left(error) if error.code == BccApi.BulkResult.RequestFailedCode =>
+          // checked again at the next tip
+          Nil -> Nil
+
+        case Left(_) =>
+          registrations.remove(registration.walletId -> registration.transactionId)
+          Nil -> registration.watches.map(_.promise -> response)
+      }
+    }
+    events.foreach(eventQueue.offer)
+    completed.foreach { case (promise, result) => promise.trySuccess(result) }
+  }
+
+  /**
+   * Every tip at first, then every 2nd, 4th... tip for a transaction left pending.
+   */
+  private def scheduleNextCheck(registration: Registration): Unit = {
+    val age = tipCount - registration.registeredAtTip
+    val doublings = (registration.checks - settings.backoffAfterTips).max(0).min(30)
+    val interval =
+      if (age < settings.backoffAfterTips || registration.status.contains(TxState.inLedger)) 1L
+      else math.min(1L << doublings, settings.maxTipsBetweenChecks.toLong)
+    registration.nextCheckAtTip = tipCount + interval
+  }
+
+  /**
+   * Stops polling, the watches not completed yet complete with a [[TransactionWatcher.WatcherStoppedCode]] error.
+   */
+  override def close(): Unit = {
+    tipSubscription.shutdown()
+    ownedPoller.foreach(_.close())
+    val pending = synchronized {
+      stopped = true
+      val watches = registrations.values.flatMap(_.watches).toList
+      registrations.clear()
+      watches
+    }
+    pending.foreach(_.promise.trySuccess(Left(stoppedError)))
+    eventQueue.complete()
+  }
+}
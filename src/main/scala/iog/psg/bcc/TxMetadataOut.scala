@@ -5,6 +5,8 @@ import io.circe.CursorOp.DownField
 import io.circe._
 import iog.psg.bcc.BccApiCodec._
 
+import scala.collection.mutable
+
 object TxMetadataOut {
   private val ValueTypeString = "string"
   private val ValueTypeLong = "int" //named int but will work as long
@@ -14,126 +16,125 @@ object TxMetadataOut {
 
   type DecodingEither[T] = Either[DecodingFailure, T]
   type KeyVal = Map[Long, MetadataValue]
-}
-
-final case class TxMetadataOut(json: Json) {
-  import TxMetadataOut._
-
-  def toMetadataMap: Decoder.Result[Map[Long, MetadataValue]] = {
-    implicit val decodeMap: Decoder[Map[Long, MetadataValue]] = (c: HCursor) => {
-
-      def extractStringField(cursor: ACursor): DecodingEither[MetadataValueStr] =
-        cursor.downField(ValueTypeString).as[String].fold(
-          err => Left(err.copy(message = s"Not a String type")),
-          (value: String) => Right(MetadataValueStr(value))
-        )
-
-      def extractLongField(cursor: ACursor): DecodingEither[MetadataValueLong] =
-        cursor.downField(ValueTypeLong).as[Long].fold(
-          err => Left(err.copy(message = s"Not a Long type")),
-          (value: Long) => Right(MetadataValueLong(value))
-        )
-
-      def extractBytesField(cursor: ACursor): DecodingEither[MetadataValueByteString] =
-        cursor.downField(ValueTypeBytes).as[String].fold(
-          err => Left(err.copy(message = s"Not a Bytes type")),
-          (value: String) => Right(MetadataValueByteString(ByteString(value)))
-        )
-
-      def extractTypedFieldValue(json: Json, key: String): DecodingEither[MetadataValue] = {
-        val cursor = json.hcursor
-        cursor.keys.flatMap(_.headOption) match {
-          case Some(ValueTypeString) =>
-            extractStringField(cursor)
-
-          case Some(ValueTypeLong) =>
-            extractLongField(cursor)
-
-          case Some(ValueTypeBytes)  =>
-            extractBytesField(cursor)
-
-          case Some(valueType) => Left(DecodingFailure(s"Invalid type '$valueType'", List(DownField(key))))
-
-          case None => Left(DecodingFailure("Missing value under key", List(DownField(key))))
-        }
-      }
-
-      def extractListField(cursor: ACursor, key: String): DecodingEither[MetadataValueArray] = {
-        val keyValuesObjects: List[Json] = cursor.downField(ValueTypeList).values.map(_.toList).getOrElse(Nil)
-        val listResults: Seq[DecodingEither[MetadataValue]] = keyValuesObjects.map(objJson => extractTypedFieldValue(objJson, key))
-
-        listMapErrorOrResult(listResults, () => {
-          val values = listResults.flatMap(_.toOption)
-          MetadataValueArray(values)
-        })
-      }
 
-      def extractMapField(cursor: ACursor, key: String): DecodingEither[MetadataValueMap] = {
-        val downFieldMap = cursor.downField(ValueTypeMap)
-        val keyValuesObjects: List[Json] = downFieldMap.values.map(_.toList).getOrElse(Nil)
-
-        def getMapField[T <: MetadataValue](keyName: String, json: Json): DecodingEither[MetadataValue] = for {
-          keyJson <- json.\\(keyName).headOption.toRight(DecodingFailure(s"Missing '$keyName' value", List(DownField(key))))
-          value <- extractTypedFieldValue(keyJson, key)
-        } yield value
-
-        val listResults: Seq[DecodingEither[(MetadataKey, MetadataValue)]] = keyValuesObjects.map { json =>
-          (getMapField[MetadataKey]("k", json), getMapField[MetadataValue]("v", json)) match {
-            case (Right(keyField), Right(valueField)) => Right(keyField.asInstanceOf[MetadataKey] -> valueField)
-            case (Left(error), _) => Left(error)
-            case (_, Left(error)) => Left(error)
-          }
-        }
-
-        listMapErrorOrResult(listResults, () => {
-          val values: Map[MetadataKey, MetadataValue] = listResults.flatMap(_.toOption).toMap
-          MetadataValueMap(values)
-        })
+  /**
+   * Adds the decoded items to the builder, stopping at the first item failing to decode.
+   */
+  private def decodeAll[A, B, C](items: Iterator[A], builder: mutable.Builder[B, C])(
+    decode: A => DecodingEither[B]
+  ): DecodingEither[C] = {
+    var failure: Option[DecodingFailure] = None
+    while (failure.isEmpty && items.hasNext) {
+      decode(items.next()) match {
+        case Right(item) => builder += item
+        case Left(error) => failure = Some(error)
       }
+    }
+    failure.toLeft(builder.result())
+  }
 
-      /**
-       * If any of parsed values in list or map contains an error, it will return it
-       */
-      def listMapErrorOrResult[A, B](results: Seq[DecodingEither[A]], onRight: () => B): DecodingEither[B] =
-        results.find(_.isLeft) match {
-          case Some(Left(error)) => Left(error)
-          case _ => Right(onRight())
-        }
+  /**
+   * The type of a metadata value is the name of the first field of its object.
+   */
+  private def typedField(json: Json): Option[(String, Json)] =
+    json.asObject.flatMap(_.toIterable.headOption)
+
+  private def decodeLabel(key: String): DecodingEither[Long] =
+    key.toLongOption.toRight(DecodingFailure(s"Invalid label '$key'", List(DownField(key))))
+
+  /**
+   * @param label key of the metadata value holding this one, for errors
+   * @param path cursor history of the value, empty when it is an element of a list or map
+   */
+  private def decodeScalar(valueType: String, value: Json, label: String, path: List[CursorOp]): DecodingEither[MetadataValue] =
+    valueType match {
+      case ValueTypeString =>
+        value.asString
+          .map(MetadataValueStr)
+          .toRight(DecodingFailure("Not a String type", DownField(ValueTypeString) :: path))
+
+      case ValueTypeLong =>
+        Decoder.decodeLong
+          .decodeJson(value)
+          .map(MetadataValueLong)
+          .left.map(_ => DecodingFailure("Not a Long type", DownField(ValueTypeLong) :: path))
+
+      case ValueTypeBytes =>
+        value.asString
+          .map(bytes => MetadataValueByteString(ByteString(bytes)))
+          .toRight(DecodingFailure("Not a Bytes type", DownField(ValueTypeBytes) :: path))
+
+      case _ => Left(DecodingFailure(s"Invalid type '$valueType'", List(DownField(label))))
+    }
 
-      def extractValueForKeyInto(res: Decoder.Result[KeyVal], key: String): Decoder.Result[KeyVal] = {
-        res.flatMap((map: KeyVal) => {
-          val keyDownField: ACursor = c.downField(key)
-          keyDownField.keys.flatMap(_.headOption) match {
-            case Some(valueType) if valueType == ValueTypeString =>
-              extractStringField(keyDownField).map(extractedValue => map.+(key.toLong -> extractedValue))
+  private def decodeElement(json: Json, label: String): DecodingEither[MetadataValue] =
+    typedField(json) match {
+      case Some((valueType, value)) => decodeScalar(valueType, value, label, Nil)
+      case None => Left(DecodingFailure("Missing value under key", List(DownField(label))))
+    }
 
-            case Some(valueType) if valueType == ValueTypeLong =>
-              extractLongField(keyDownField).map(extractedValue => map.+(key.toLong -> extractedValue))
+  private def decodeList(value: Json, label: String): DecodingEither[MetadataValueArray] =
+    decodeAll(value.asArray.fold(Iterator.empty[Json])(_.iterator), List.newBuilder[MetadataValue])(
+      decodeElement(_, label)
+    ).map(MetadataValueArray)
 
-            case Some(valueType) if valueType == ValueTypeBytes =>
-              extractBytesField(keyDownField).map(extractedValue => map.+(key.toLong -> extractedValue))
+  private def decodeMap(value: Json, label: String): DecodingEither[MetadataValueMap] = {
+    def entryField(entry: Json, name: String): DecodingEither[MetadataValue] =
+      entry.asObject.flatMap(_(name)) match {
+        case Some(json) => decodeElement(json, label)
+        case None => Left(DecodingFailure(s"Missing '$name' value", List(DownField(label))))
+      }
 
-            case Some(valueType) if valueType == ValueTypeList =>
-              extractListField(keyDownField, key).map(valueArray => map.+(key.toLong -> valueArray))
+    decodeAll(value.asArray.fold(Iterator.empty[Json])(_.iterator), Map.newBuilder[MetadataKey, MetadataValue]) { entry =>
+      for {
+        key <- entryField(entry, "k")
+        value <- entryField(entry, "v")
+      } yield key.asInstanceOf[MetadataKey] -> value
+    }.map(MetadataValueMap)
+  }
 
-            case Some(valueType) if valueType == ValueTypeMap =>
-              extractMapField(keyDownField, key).map(valueMap => map.+(key.toLong -> valueMap))
+  private def decodeLabelValue(json: Json, label: String): DecodingEither[MetadataValue] =
+    typedField(json) match {
+      case Some((ValueTypeList, value)) => decodeList(value, label)
+      case Some((ValueTypeMap, value)) => decodeMap(value, label)
+      case Some((valueType, value)) => decodeScalar(valueType, value, label, List(DownField(label)))
+      case None => Left(DecodingFailure("Missing value under key", List(DownField(label))))
+    }
+}
 
-            case Some(valueType) => Left(DecodingFailure(s"Invalid type '$valueType'", List(DownField(key))))
+final case class TxMetadataOut(json: Json) {
+  import TxMetadataOut._
 
-            case None => Left(DecodingFailure("Missing value under key", List(DownField(key))))
-          }
-        })
+  /**
+   * Decodes every label in one pass over the metadata, failing on the first invalid value.
+   */
+  def toMetadataMap: Decoder.Result[Map[Long, MetadataValue]] =
+    json.asObject.fold[Decoder.Result[KeyVal]](Right(Map.empty)) { metadata =>
+      decodeAll(metadata.toIterable.iterator, Map.newBuilder[Long, MetadataValue]) {
+        case (key, value) =>
+          for {
+            label <- decodeLabel(key)
+            decoded <- decodeLabelValue(value, key)
+          } yield label -> decoded
       }
-
-      def emptyMapResult: Decoder.Result[KeyVal] = Right(Map[Long, MetadataValue]().empty)
-
-      def withKeys(keys: Iterable[String]): Decoder.Result[KeyVal] = keys.foldLeft(emptyMapResult)(extractValueForKeyInto)
-
-      c.keys.fold[Decoder.Result[KeyVal]](ifEmpty = emptyMapResult)(withKeys)
     }
 
-    json.as[Map[Long, MetadataValue]](decodeMap)
+  /**
+   * Decodes the value of a single label, the other labels are not read.
+   *
+   * @param label metadata label
+   * @return None when the metadata has no such label
+   */
+  def metadataValue(label: Long): Option[Decoder.Result[MetadataValue]] = {
+    val key = label.toString
+    json.asObject.flatMap(_(key)).map(decodeLabelValue(_, key))
   }
-}
 
+  /**
+   * @return labels of the metadata, in the order of the response
+   */
+  def labels: Decoder.Result[Seq[Long]] =
+    json.asObject.fold[Decoder.Result[Seq[Long]]](Right(Nil)) { metadata =>
+      decodeAll(metadata.keys.iterator, Vector.newBuilder[Long])(decodeLabel)
+    }
+}
@@ -0,0 +1,155 @@
+package iog.psg.bcc
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpMethods, HttpRequest }
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse, ErrorMessage }
+
+import scala.collection.mutable
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.util.control.NonFatal
+
+object WalletWorkQueues {
+
+  val WalletQueueFullCode = "WALLET QUEUE FULL"
+
+  /**
+   * @param maxQueuedPerWallet max number of writes of a wallet waiting for the one running,
+   *                           more fail with a [[WalletWorkQueues.WalletQueueFullCode]] error
+   * @param maxRunningWallets max number of wallets whose write runs at the same time, wallets waiting for a slot
+   *                          take turns
+   */
+  final case class Settings(maxQueuedPerWallet: Int = 64, maxRunningWallets: Int = 16) {
+    require(maxQueuedPerWallet >= 0, s"maxQueuedPerWallet must not be negative (not $maxQueuedPerWallet)")
+    require(maxRunningWallets > 0, s"maxRunningWallets must be positive (not $maxRunningWallets)")
+  }
+
+  def defaultSettings: Settings = Settings()
+
+  /**
+   * @param wallets wallets with a write running or waiting
+   * @param running writes running
+   * @param queued writes waiting
+   * @param maxQueueDepth writes waiting in the longest queue
+   * @param rejected writes refused because the queue of their wallet was full
+   */
+  final case class Stats(wallets: Int, running: Int, queued: Int, maxQueueDepth: Int, rejected: Long)
+
+  private val WalletWritePath = ".*/wallets/([^/]+)(/.*)?".r
+  private val ReadOnlyPostPath = ".*/wallets/[^/]+/payment-fees".r
+
+  /**
+   * Writes of one wallet, guarded by the [[WalletWorkQueues]].
+   */
+  private final class WalletQueue {
+    val waiting = mutable.Queue.empty[() => Future[Unit]]
+    var running = false
+  }
+}
+
+/**
+ * Runs the writes to a wallet - transactions, coin selections, migrations, delegations... any non GET request
+ * under `wallets/{walletId}` except fee estimation - one after the other, in submission order, so they do not
+ * select the same coins. Writes of different wallets run in parallel, up to `maxRunningWallets`, the waiting
+ * wallets taking turns. Reads are not queued.
+ *
+ * Use [[wrap]] to put the queues in front of an executor.
+ */
+class WalletWorkQueues(settings: WalletWorkQueues.Settings) {
+
+  import WalletWorkQueues._
+
+  // guarded by this
+  private val queues = mutable.HashMap.empty[String, WalletQueue]
+  // wallets with a write waiting and none running, in the order they take their turn
+  private val ready = mutable.Queue.empty[String]
+  private var running = 0
+  private var rejected = 0L
+
+  def stats: Stats = synchronized {
+    val depths = queues.values.map(_.waiting.size)
+    Stats(queues.size, running, depths.sum, if (depths.isEmpty) 0 else depths.max, rejected)
+  }
+
+  /**
+   * @param walletId wallet's id
+   * @return number of writes of the wallet waiting
+   */
+  def queueDepth(walletId: String): Int = synchronized(queues.get(walletId).fold(0)(_.waiting.size))
+
+  def wrap(underlying: ApiRequestExecutor): ApiRequestExecutor = new ApiRequestExecutor {
+    override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+      writtenWalletId(request.request) match {
+        case Some(walletId) => enqueue(walletId, underlying, request)
+        case None           => underlying.execute(request)
+      }
+  }
+
+  private def enqueue[T](walletId: String, underlying: ApiRequestExecutor, request: BccApiRequest[T])(implicit
+    ec: ExecutionContext,
+    as: ActorSystem
+  ): Future[BccApiResponse[T]] = {
+    val promise = Promise[BccApiResponse[T]]()
+    val write = () => {
+      val response =
+        try underlying.execute(request)
+        catch { case NonFatal(e) => Future.failed(e) }
+      promise.completeWith(response)
+      response.map(_ => ()).recover { case NonFatal(_) => () }
+    }
+
+    val accepted = synchronized {
+      val queue = queues.getOrElseUpdate(walletId, new WalletQueue)
+      if (queue.waiting.size >= settings.maxQueuedPerWallet && (queue.running || queue.waiting.nonEmpty)) {
+        rejected += 1
+        false
+      } else {
+        queue.waiting.enqueue(write)
+        if (!queue.running && queue.waiting.size == 1) ready.enqueue(walletId)
+        true
+      }
+    }
+
+    if (accepted) dispatch()
+    else promise.success(Left(ErrorMessage(s"Too many writes waiting for wallet $walletId", WalletQueueFullCode)))
+    promise.future
+  }
+
+  /**
+   * Starts the next write of the waiting wallets while slots are free.
+   */
+  private def dispatch()(implicit ec: ExecutionContext): Unit = {
+    val started = synchronized {
+      val writes = List.newBuilder[(String, () => Future[Unit])]
+      while (running < settings.maxRunningWallets && ready.nonEmpty) {
+        val walletId = ready.dequeue()
+        val queue = queues(walletId)
+        queue.running = true
+        running += 1
+        writes += walletId -> queue.waiting.dequeue()
+      }
+      writes.result()
+    }
+
+    started.foreach {
+      case (walletId, write) =>
+        write().onComplete { _ =>
+          synchronized {
+            running -= 1
+            val queue = queues(walletId)
+            queue.running = false
+            // back of the line, behind the wallets already waiting
+            if (queue.waiting.nonEmpty) ready.enqueue(walletId) else queues.remove(walletId)
+          }
+          dispatch()
+        }
+    }
+  }
+
+  private def writtenWalletId(request: HttpRequest): Option[String] =
+    if (request.method == HttpMethods.GET) None
+    else request.uri.path.toString() match {
+      case ReadOnlyPostPath()           => None
+      case WalletWritePath(walletId, _) => Some(walletId)
+      case _                            => None
+    }
+}
@@ -1,20 +1,25 @@
 package iog.psg.bcc.jpi
 
-import java.util.concurrent.CompletionStage
+import java.util.concurrent.{CompletionException, CompletionStage}
 
 import iog.psg.bcc.ApiRequestExecutor
 import iog.psg.bcc.jpi.{ApiRequestExecutor => JApiRequestExecutor}
+import akka.NotUsed
 import akka.actor.ActorSystem
+import akka.stream.scaladsl.{Sink, Source, StreamConverters}
 import iog.psg.bcc.BccApi.BccApiOps.BccApiRequestOps
-import iog.psg.bcc.BccApi.{BccApiResponse, ErrorMessage}
+import iog.psg.bcc.BccApi.{BccApiRequest, BccApiResponse, ErrorMessage}
 import iog.psg.bcc.BccApiCodec.{MetadataValue, MetadataValueStr}
+import org.reactivestreams.Publisher
 
 import scala.concurrent.{ExecutionContext, Future}
-import scala.jdk.CollectionConverters.MapHasAsScala
+import scala.jdk.CollectionConverters.{MapHasAsScala, SeqHasAsJava}
 import scala.jdk.javaapi.FutureConverters
+import scala.util.control.NonFatal
+import scala.util.{Failure, Success, Try}
 
 
-class BccApiException(message: String, code: String) extends Exception(s"Message: $message, Code: $code")
+class BccApiException(val message: String, val code: String) extends Exception(s"Message: $message, Code: $code")
 
 object HelpExecute {
 
@@ -36,9 +41,11 @@ object HelpExecute {
 
 }
 
-class HelpExecute(implicit ec: ExecutionContext, as: ActorSystem) extends JApiRequestExecutor {
+class HelpExecute(requestExecutor: ApiRequestExecutor)(implicit ec: ExecutionContext, as: ActorSystem) extends JApiRequestExecutor {
 
-  implicit val executor: ApiRequestExecutor = ApiRequestExecutor
+  def this()(implicit ec: ExecutionContext, as: ActorSystem) = this(ApiRequestExecutor)
+
+  implicit val executor: ApiRequestExecutor = requestExecutor
 
   @throws(classOf[BccApiException])
   private def unwrapResponse[T](resp: BccApiResponse[T]): T = resp match {
@@ -47,6 +54,28 @@ class HelpExecute(implicit ec: ExecutionContext, as: ActorSystem) extends JApiRe
       throw new BccApiException(message, code)
   }
 
+  /**
+   * Sends the requests of the bulk calls through [[execute]], so they use the same executor as the other calls,
+   * including the one of a subclass overriding `execute`. A [[BccApiException]] is turned back into the item's error.
+   */
+  val bulkExecutor: ApiRequestExecutor = new ApiRequestExecutor {
+    override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+      val response =
+        try FutureConverters.asScala(HelpExecute.this.execute(request))
+        catch { case NonFatal(e) => Future.failed(e) }
+      response.transform {
+        case Success(value) => Success(Right(value))
+        case Failure(e) => apiError(e).fold[Try[BccApiResponse[T]]](Failure(e))(error => Success(Left(error)))
+      }
+    }
+  }
+
+  private def apiError(e: Throwable): Option[ErrorMessage] = e match {
+    case e: BccApiException => Some(ErrorMessage(e.message, e.code))
+    case e: CompletionException if e.getCause != null => apiError(e.getCause)
+    case _ => None
+  }
+
   @throws(classOf[BccApiException])
   def execute[T](request: iog.psg.bcc.BccApi.BccApiRequest[T]): CompletionStage[T] = {
     FutureConverters.asJava(request.execute.map(unwrapResponse))
@@ -57,6 +86,40 @@ class HelpExecute(implicit ec: ExecutionContext, as: ActorSystem) extends JApiRe
     FutureConverters.asJava(request).thenCompose(request => this.execute(request))
   }
 
+  /**
+   * The request is only sent once the publisher's subscriber signals demand.
+   */
+  def executeStream[T](request: iog.psg.bcc.BccApi.BccApiRequest[Source[T, NotUsed]]): Publisher[T] =
+    Source
+      .lazyFutureSource(() => FutureConverters.asScala(this.execute(request)))
+      .runWith(Sink.asPublisher[T](fanout = false))
+
+  /**
+   * Nothing is sent before the publisher's subscriber signals demand.
+   */
+  def executeBulk[T](results: Source[iog.psg.bcc.BccApi.BulkResult[T], NotUsed]): Publisher[BulkResult[T]] =
+    Source
+      .lazySource(() => results)
+      .map(toJavaBulkResult[T])
+      .runWith(Sink.asPublisher[BulkResult[T]](fanout = false))
+
+  /**
+   * Elements are requested from the publisher as the returned stream is consumed, a failure is thrown by the
+   * stream's terminal operation. Closing the stream cancels the publisher.
+   */
+  def blockingStream[T](publisher: Publisher[T]): java.util.stream.Stream[T] =
+    Source.fromPublisher(publisher).runWith(StreamConverters.asJavaStream[T]())
+
+  def executeBulk[T](results: Future[Seq[iog.psg.bcc.BccApi.BulkResult[T]]]): CompletionStage[java.util.List[BulkResult[T]]] =
+    FutureConverters.asJava(results.map(_.map(toJavaBulkResult[T]).asJava))
+
+  private def toJavaBulkResult[T](result: iog.psg.bcc.BccApi.BulkResult[T]): BulkResult[T] = result match {
+    case iog.psg.bcc.BccApi.BulkResult(index, Right(value)) =>
+      BulkResult.success(index, value)
+    case iog.psg.bcc.BccApi.BulkResult(index, Left(ErrorMessage(message, code))) =>
+      BulkResult.failure[T](index, message, code)
+  }
+
   def toScalaImmutable[B](in: java.util.Map[java.lang.Long, String]): Map[java.lang.Long, String] =
     HelpExecute.toScalaImmutable(in)
 
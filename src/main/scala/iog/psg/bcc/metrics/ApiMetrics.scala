@@ -0,0 +1,52 @@
+package iog.psg.bcc.metrics
+
+import iog.psg.bcc.metrics.ApiMetrics.Phase.Phase
+
+object ApiMetrics {
+
+  /**
+   * Phases of a request: `connect` is the opening of a connection to a host (connections are shared by endpoints,
+   * so it is recorded against `CONNECT host:port`), `headers` runs until the response headers arrive and
+   * `decode` until the response entity is read and decoded.
+   */
+  object Phase extends Enumeration {
+    type Phase = Value
+    val connect = Value("connect")
+    val headers = Value("headers")
+    val decode = Value("decode")
+  }
+
+  /**
+   * Name of the endpoint connections to a host are recorded against.
+   */
+  def connectEndpoint(host: String, port: Int): String = s"CONNECT $host:$port"
+}
+
+/**
+ * Receives the measurements of instrumented executors. Use [[InMemoryApiMetrics]] or implement it to forward
+ * the measurements to another metrics library, every method may be called concurrently.
+ * Endpoints are named by method and path with ids replaced by `{id}`, e.g. `GET /v2/wallets/{id}`.
+ */
+trait ApiMetrics {
+
+  def recordLatency(endpoint: String, phase: Phase, nanos: Long): Unit
+
+  /**
+   * @param code the [[iog.psg.bcc.BccApi.ErrorMessage]] code, or the exception's class name when the request failed
+   */
+  def recordError(endpoint: String, code: String): Unit
+
+  def recordBytesReceived(endpoint: String, bytes: Long): Unit
+
+  /**
+   * @param delta 1 when a request is sent, -1 when it completes
+   */
+  def recordInFlight(endpoint: String, delta: Int): Unit
+}
+
+object NoOpApiMetrics extends ApiMetrics {
+  override def recordLatency(endpoint: String, phase: Phase, nanos: Long): Unit = ()
+  override def recordError(endpoint: String, code: String): Unit = ()
+  override def recordBytesReceived(endpoint: String, bytes: Long): Unit = ()
+  override def recordInFlight(endpoint: String, delta: Int): Unit = ()
+}
@@ -0,0 +1,76 @@
+package iog.psg.bcc.metrics
+
+import java.lang.management.ManagementFactory
+
+import javax.management._
+
+/**
+ * Exports an [[InMemoryApiMetrics]] as a read-only MBean with one attribute per measurement,
+ * e.g. `GET /v2/wallets/{id} headers p99 ms`, `GET /v2/wallets/{id} errors 404` or `GET /v2/wallets/{id} in flight`.
+ */
+object ApiMetricsJmx {
+
+  val DefaultObjectName = "iog.psg.bcc:type=ApiMetrics"
+
+  def register(metrics: InMemoryApiMetrics): ObjectName = register(metrics, DefaultObjectName)
+
+  def register(metrics: InMemoryApiMetrics, objectName: String): ObjectName = {
+    val name = new ObjectName(objectName)
+    ManagementFactory.getPlatformMBeanServer.registerMBean(new ApiMetricsMBean(metrics), name)
+    name
+  }
+
+  def unregister(name: ObjectName): Unit = ManagementFactory.getPlatformMBeanServer.unregisterMBean(name)
+
+  private def millis(nanos: Long): java.lang.Double = nanos / 1e6
+
+  private[metrics] def attributes(snapshot: InMemoryApiMetrics.Snapshot): Map[String, AnyRef] =
+    snapshot.endpoints.flatMap { case (endpoint, metrics) =>
+      val latencies = metrics.latencies.flatMap { case (phase, h) =>
+        Seq(
+          s"$endpoint $phase count"   -> java.lang.Long.valueOf(h.count),
+          s"$endpoint $phase mean ms" -> millis(h.meanNanos),
+          s"$endpoint $phase p50 ms"  -> millis(h.p50Nanos),
+          s"$endpoint $phase p95 ms"  -> millis(h.p95Nanos),
+          s"$endpoint $phase p99 ms"  -> millis(h.p99Nanos),
+          s"$endpoint $phase max ms"  -> millis(h.maxNanos)
+        )
+      }
+      val errors = metrics.errors.map { case (code, count) => s"$endpoint errors $code" -> java.lang.Long.valueOf(count) }
+
+      latencies ++ errors ++ Seq(
+        s"$endpoint in flight"      -> java.lang.Long.valueOf(metrics.inFlight),
+        s"$endpoint bytes received" -> java.lang.Long.valueOf(metrics.bytesReceived)
+      )
+    }
+
+  private class ApiMetricsMBean(metrics: InMemoryApiMetrics) extends DynamicMBean {
+
+    private def current: Map[String, AnyRef] = attributes(metrics.snapshot)
+
+    override def getAttribute(attribute: String): AnyRef =
+      current.getOrElse(attribute, throw new AttributeNotFoundException(attribute))
+
+    override def getAttributes(names: Array[String]): AttributeList = {
+      val values = current
+      val list = new AttributeList()
+      names.foreach(name => values.get(name).foreach(value => list.add(new Attribute(name, value))))
+      list
+    }
+
+    override def setAttribute(attribute: Attribute): Unit =
+      throw new AttributeNotFoundException(s"${attribute.getName} is read only")
+
+    override def setAttributes(attributes: AttributeList): AttributeList = new AttributeList()
+
+    override def invoke(actionName: String, params: Array[AnyRef], signature: Array[String]): AnyRef =
+      throw new ReflectionException(new NoSuchMethodException(actionName))
+
+    override def getMBeanInfo: MBeanInfo = {
+      val attributeInfos = current.toSeq.sortBy(_._1).map { case (name, value) =>
+        new MBeanAttributeInfo(name, value.getClass.getName, name, true, false, false)
+      }
+      new MBeanInfo(getClass.getName, "Bcc wallet api metrics", attributeInfos.toArray, null, null, null)
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package iog.psg.bcc.metrics
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.{ ClientTransport, Http }
+import akka.http.scaladsl.settings.ClientConnectionSettings
+import akka.stream.scaladsl.Flow
+import akka.util.ByteString
+import iog.psg.bcc.metrics.ApiMetrics.Phase
+
+import scala.concurrent.Future
+import scala.util.{ Failure, Success }
+
+/**
+ * Records how long connections opened by the underlying transport take to be established.
+ */
+private[bcc] class ConnectTimingTransport(underlying: ClientTransport, metrics: ApiMetrics) extends ClientTransport {
+
+  override def connectTo(host: String, port: Int, settings: ClientConnectionSettings)(implicit
+    system: ActorSystem
+  ): Flow[ByteString, ByteString, Future[Http.OutgoingConnection]] =
+    underlying.connectTo(host, port, settings).mapMaterializedValue { connection =>
+      val endpoint = ApiMetrics.connectEndpoint(host, port)
+      val start = System.nanoTime()
+      connection.onComplete {
+        case Success(_) => metrics.recordLatency(endpoint, Phase.connect, System.nanoTime() - start)
+        case Failure(e) => metrics.recordError(endpoint, e.getClass.getSimpleName)
+      }(system.dispatcher)
+      connection
+    }
+}
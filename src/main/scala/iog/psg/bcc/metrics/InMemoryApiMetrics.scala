@@ -0,0 +1,128 @@
+package iog.psg.bcc.metrics
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.{ AtomicLong, AtomicLongArray }
+
+import iog.psg.bcc.metrics.ApiMetrics.Phase
+import iog.psg.bcc.metrics.ApiMetrics.Phase.Phase
+
+import scala.jdk.CollectionConverters._
+
+object InMemoryApiMetrics {
+
+  /**
+   * Latency quantiles are the upper bound of their histogram bucket, buckets are at most 12.5% wide.
+   */
+  final case class HistogramSnapshot(count: Long, sumNanos: Long, maxNanos: Long, p50Nanos: Long, p95Nanos: Long, p99Nanos: Long) {
+    def meanNanos: Long = if (count == 0) 0 else sumNanos / count
+  }
+
+  final case class EndpointSnapshot(latencies: Map[Phase, HistogramSnapshot],
+                                    errors: Map[String, Long],
+                                    inFlight: Long,
+                                    bytesReceived: Long) {
+    def latency(phase: Phase): Option[HistogramSnapshot] = latencies.get(phase)
+  }
+
+  final case class Snapshot(endpoints: Map[String, EndpointSnapshot]) {
+    def endpointsAsJava: java.util.Map[String, EndpointSnapshot] = endpoints.asJava
+  }
+
+  // 8 buckets for values 0 to 7, then 8 buckets per power of two
+  private val SubBucketBits = 3
+  private val SubBuckets = 1 << SubBucketBits
+  private val BucketCount = (64 - SubBucketBits) * SubBuckets
+
+  private[metrics] def bucketIndex(nanos: Long): Int =
+    if (nanos < SubBuckets) math.max(nanos, 0L).toInt
+    else {
+      val msb = 63 - java.lang.Long.numberOfLeadingZeros(nanos)
+      (msb - SubBucketBits + 1) * SubBuckets + ((nanos >>> (msb - SubBucketBits)) & (SubBuckets - 1)).toInt
+    }
+
+  private[metrics] def bucketUpperBound(index: Int): Long =
+    if (index < SubBuckets) index
+    else {
+      val shift = index / SubBuckets - 1
+      val lower = (SubBuckets + index % SubBuckets).toLong << shift
+      lower + (1L << shift) - 1
+    }
+
+  private final class Histogram {
+    private val buckets = new AtomicLongArray(BucketCount)
+    private val count = new AtomicLong()
+    private val sum = new AtomicLong()
+    private val max = new AtomicLong()
+
+    def record(nanos: Long): Unit = {
+      buckets.incrementAndGet(bucketIndex(nanos))
+      count.incrementAndGet()
+      sum.addAndGet(nanos)
+      max.accumulateAndGet(nanos, (a, b) => math.max(a, b))
+    }
+
+    def snapshot: HistogramSnapshot = {
+      val counts = Array.tabulate(BucketCount)(buckets.get)
+      val total = counts.sum
+      val maxNanos = max.get()
+
+      def quantile(q: Double): Long = {
+        val rank = math.ceil(q * total).toLong
+        var seen = 0L
+        var i = 0
+        while (i < BucketCount && seen + counts(i) < rank) {
+          seen += counts(i)
+          i += 1
+        }
+        math.min(bucketUpperBound(math.min(i, BucketCount - 1)), maxNanos)
+      }
+
+      HistogramSnapshot(total, sum.get(), maxNanos, quantile(0.5), quantile(0.95), quantile(0.99))
+    }
+  }
+
+  private final class EndpointMetrics {
+    val latencies: Map[Phase, Histogram] = Phase.values.toSeq.map(_ -> new Histogram).toMap
+    val errors = new ConcurrentHashMap[String, AtomicLong]()
+    val inFlight = new AtomicLong()
+    val bytesReceived = new AtomicLong()
+
+    def snapshot: EndpointSnapshot =
+      EndpointSnapshot(
+        latencies.view.mapValues(_.snapshot).filter(_._2.count > 0).toMap,
+        errors.asScala.view.mapValues(_.get()).toMap,
+        inFlight.get(),
+        bytesReceived.get()
+      )
+  }
+}
+
+/**
+ * Keeps the measurements in memory: a latency histogram per endpoint and phase, error counts per endpoint and
+ * error code, in-flight requests and bytes received per endpoint. Read them with [[snapshot]] or export them
+ * with [[ApiMetricsJmx]].
+ */
+class InMemoryApiMetrics extends ApiMetrics {
+
+  import InMemoryApiMetrics._
+
+  private val endpoints = new ConcurrentHashMap[String, EndpointMetrics]()
+
+  private def endpoint(name: String): EndpointMetrics = endpoints.computeIfAbsent(name, _ => new EndpointMetrics)
+
+  override def recordLatency(endpoint: String, phase: Phase, nanos: Long): Unit =
+    this.endpoint(endpoint).latencies(phase).record(nanos)
+
+  override def recordError(endpoint: String, code: String): Unit =
+    this.endpoint(endpoint).errors.computeIfAbsent(code, _ => new AtomicLong()).incrementAndGet()
+
+  override def recordBytesReceived(endpoint: String, bytes: Long): Unit =
+    this.endpoint(endpoint).bytesReceived.addAndGet(bytes)
+
+  override def recordInFlight(endpoint: String, delta: Int): Unit =
+    this.endpoint(endpoint).inFlight.addAndGet(delta)
+
+  def snapshot: Snapshot = Snapshot(endpoints.asScala.view.mapValues(_.snapshot).toMap)
+
+  def clear(): Unit = endpoints.clear()
+}
@@ -0,0 +1,244 @@
+package iog.psg.bcc.store
+
+import java.nio.channels.FileChannel
+import java.nio.file.{ Files, Path, StandardOpenOption }
+import java.nio.{ ByteBuffer, MappedByteBuffer }
+import java.time.{ Instant, ZonedDateTime }
+import java.util.zip.CRC32
+
+import com.github.plokhotnyuk.jsoniter_scala.core._
+import com.github.plokhotnyuk.jsoniter_scala.macros.{ CodecMakerConfig, JsonCodecMaker }
+import iog.psg.bcc.BccApi.Order
+import iog.psg.bcc.BccApi.Order.Order
+import iog.psg.bcc.BccApiCodec.{ CreateTransactionResponse, TxState }
+import iog.psg.bcc.JsoniterCodecs.{ quantityUnitLongCodec, txMetadataOutCodec }
+
+import scala.collection.mutable
+import scala.jdk.StreamConverters._
+import scala.util.Using
+
+object TransactionLog {
+
+  private val SegmentSuffix = ".seg"
+  private val HeaderSize = 8
+
+  /**
+   * Empty collections are written so that every stored transaction decodes back to the same value.
+   */
+  private implicit val transactionCodec: JsonValueCodec[CreateTransactionResponse] =
+    JsonCodecMaker.make(CodecMakerConfig.withFieldNameMapper(JsonCodecMaker.enforce_snake_case).withTransientEmpty(false))
+
+  private implicit val instantOrdering: Ordering[Instant] = Ordering.fromLessThan(_ isBefore _)
+
+  private final case class Location(segment: Segment, offset: Int, length: Int)
+
+  private final case class Entry(time: Instant, location: Location)
+
+  /**
+   * Time the wallet orders the transaction by, when it entered the ledger or else when it was submitted.
+   */
+  private[store] def timeOf(transaction: CreateTransactionResponse): Instant =
+    transaction.insertedAt
+      .orElse(transaction.pendingSince)
+      .map(_.time.toInstant)
+      .getOrElse(Instant.EPOCH)
+
+  /**
+   * A file of records `[length: Int][crc32: Int][json]`, mapped in memory. The file is zero filled past the last
+   * record, so a zero length, or a record whose crc does not match after a crash, marks the end of the data.
+   */
+  private final class Segment(val path: Path, size: Int) {
+
+    private val channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+    private val buffer: MappedByteBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, math.max(size.toLong, channel.size()))
+
+    var end: Int = 0
+
+    def capacity: Int = buffer.capacity()
+
+    def remaining: Int = capacity - end
+
+    /**
+     * Reads the records from the start of the segment, stopping at the first missing or torn one.
+     */
+    def recover(): Seq[(Int, Array[Byte])] = {
+      val records = Vector.newBuilder[(Int, Array[Byte])]
+      var offset = 0
+      var valid = true
+      while (valid && offset + HeaderSize <= capacity) {
+        val length = buffer.getInt(offset)
+        if (length <= 0 || length > capacity - offset - HeaderSize) valid = false
+        else {
+          val bytes = new Array[Byte](length)
+          val record = buffer.duplicate()
+          record.position(offset + HeaderSize)
+          record.get(bytes)
+          if (crcOf(bytes) != buffer.getInt(offset + 4)) valid = false
+          else {
+            records += offset -> bytes
+            offset += HeaderSize + length
+          }
+        }
+      }
+      end = offset
+      records.result()
+    }
+
+    def append(bytes: Array[Byte]): Int = {
+      val offset = end
+      val record = buffer.duplicate()
+      record.position(offset + HeaderSize)
+      record.put(bytes)
+      buffer.putInt(offset + 4, crcOf(bytes))
+      // the length is written last, a record is only read back once it is complete
+      buffer.putInt(offset, bytes.length)
+      end = offset + HeaderSize + bytes.length
+      offset
+    }
+
+    def read(offset: Int, length: Int): ByteBuffer = {
+      val record = buffer.duplicate()
+      record.position(offset + HeaderSize).limit(offset + HeaderSize + length)
+      record
+    }
+
+    def force(): Unit = buffer.force()
+
+    def close(): Unit = channel.close()
+
+    private def crcOf(bytes: Array[Byte]): Int = {
+      val crc = new CRC32()
+      crc.update(bytes, 0, bytes.length)
+      crc.getValue.toInt
+    }
+  }
+
+  private def segmentName(index: Int): String = f"$index%08d$SegmentSuffix"
+}
+
+/**
+ * Append-only log of the transactions of one wallet, stored in memory-mapped segment files of a directory.
+ *
+ * A transaction appended again, e.g. once it left the pending state, supersedes the stored one, which stays in
+ * its segment. Ids and times are indexed in memory, rebuilt from the segments when the log is opened.
+ *
+ * @param directory directory of the wallet's segments, created when missing
+ * @param segmentSize size of a new segment file, a larger one is created for a transaction that does not fit
+ */
+final class TransactionLog private[store] (directory: Path, segmentSize: Int) extends AutoCloseable {
+
+  import TransactionLog._
+
+  require(segmentSize > HeaderSize, s"segmentSize must be greater than $HeaderSize (not $segmentSize)")
+
+  private val segments = mutable.ArrayBuffer.empty[Segment]
+  private val byId = mutable.HashMap.empty[String, Entry]
+  private val byTime = mutable.TreeMap.empty[(Instant, String), Location]
+  private val pendingIds = mutable.LinkedHashSet.empty[String]
+  private var latestInLedger: Option[ZonedDateTime] = None
+
+  open()
+
+  private def open(): Unit = {
+    Files.createDirectories(directory)
+    val paths = Using.resource(Files.list(directory)) {
+      _.toScala(Vector).filter(_.getFileName.toString.endsWith(SegmentSuffix)).sortBy(_.getFileName.toString)
+    }
+    paths.foreach { path =>
+      val segment = new Segment(path, segmentSize)
+      segments += segment
+      segment.recover().foreach {
+        case (offset, bytes) =>
+          index(readFromArray[CreateTransactionResponse](bytes), Location(segment, offset, bytes.length))
+      }
+    }
+  }
+
+  private def index(transaction: CreateTransactionResponse, location: Location): Unit = {
+    val time = timeOf(transaction)
+    byId.put(transaction.id, Entry(time, location)).foreach { replaced =>
+      byTime.remove(replaced.time -> transaction.id)
+    }
+    byTime.put(time -> transaction.id, location)
+
+    if (transaction.status == TxState.pending) pendingIds += transaction.id
+    else pendingIds -= transaction.id
+
+    if (transaction.status == TxState.inLedger) {
+      transaction.insertedAt.map(_.time).foreach { inserted =>
+        if (latestInLedger.forall(_.toInstant.isBefore(inserted.toInstant))) latestInLedger = Some(inserted)
+      }
+    }
+  }
+
+  private def read(location: Location): CreateTransactionResponse =
+    readFromByteBuffer[CreateTransactionResponse](location.segment.read(location.offset, location.length))
+
+  private def segmentFor(length: Int): Segment =
+    segments.lastOption.filter(_.remaining >= HeaderSize + length).getOrElse {
+      val segment = new Segment(directory.resolve(segmentName(segments.size)), math.max(segmentSize, HeaderSize + length))
+      segments += segment
+      segment
+    }
+
+  /**
+   * Appends the transactions which are not stored yet, or differ from the stored ones, and writes them to disk.
+   *
+   * @param transactions transactions of the wallet
+   * @return the transactions appended
+   */
+  def append(transactions: Seq[CreateTransactionResponse]): Seq[CreateTransactionResponse] = synchronized {
+    val changed = transactions.filterNot(transaction => byId.get(transaction.id).exists(entry => read(entry.location) == transaction))
+    val written = mutable.Set.empty[Segment]
+    changed.foreach { transaction =>
+      val bytes = writeToArray(transaction)
+      val segment = segmentFor(bytes.length)
+      index(transaction, Location(segment, segment.append(bytes), bytes.length))
+      written += segment
+    }
+    written.foreach(_.force())
+    changed
+  }
+
+  /**
+   * Latest time a stored transaction entered the ledger, transactions are only fetched from this time on.
+   */
+  def highWaterMark: Option[ZonedDateTime] = synchronized(latestInLedger)
+
+  /**
+   * @return ids of the stored transactions still pending, in the order they were stored
+   */
+  def pending: Seq[String] = synchronized(pendingIds.toSeq)
+
+  def size: Int = synchronized(byId.size)
+
+  /**
+   * @param id transaction id
+   * @return the last stored version of the transaction
+   */
+  def transaction(id: String): Option[CreateTransactionResponse] = synchronized(byId.get(id).map(entry => read(entry.location)))
+
+  /**
+   * Stored transactions within a time range, like `listTransactions` of [[iog.psg.bcc.BccApi]].
+   *
+   * @param start optional start time, inclusive
+   * @param end optional end time, inclusive
+   * @param order order of the transactions by their time
+   * @return transactions from the segments, nothing is requested from the wallet
+   */
+  def transactions(start: Option[ZonedDateTime] = None,
+                   end: Option[ZonedDateTime] = None,
+                   order: Order = Order.descendingOrder): Seq[CreateTransactionResponse] = synchronized {
+    val from = start.fold(byTime)(time => byTime.rangeFrom(time.toInstant -> ""))
+    val range = end.fold(from)(time => from.rangeUntil(time.toInstant.plusNanos(1) -> ""))
+    val locations = if (order == Order.ascendingOrder) range.values else range.values.toSeq.reverse
+    locations.map(read).toSeq
+  }
+
+  override def close(): Unit = synchronized {
+    segments.foreach(_.close())
+    segments.clear()
+  }
+
+  private[store] def segmentCount: Int = synchronized(segments.size)
+}
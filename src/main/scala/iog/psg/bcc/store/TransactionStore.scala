@@ -0,0 +1,109 @@
+package iog.psg.bcc.store
+
+import java.nio.file.Path
+
+import akka.actor.ActorSystem
+import iog.psg.bcc.BccApi.BccApiOps.BccApiRequestOps
+import iog.psg.bcc.BccApi.{ BccApiResponse, ErrorMessage, Order }
+import iog.psg.bcc.BccApiCodec.TxState
+import iog.psg.bcc.{ ApiRequestExecutor, BccApi }
+
+import scala.collection.concurrent.TrieMap
+import scala.concurrent.{ ExecutionContext, Future }
+
+object TransactionStore {
+
+  val DefaultSegmentSize: Int = 16 * 1024 * 1024
+
+  /**
+   * @param fetched transactions returned by `listTransactions` from the high-water mark on
+   * @param refreshed pending transactions fetched again by id
+   * @param appended transactions new or changed, appended to the log
+   * @param forgotten pending transactions the wallet no longer knows, stored as expired and no longer refreshed
+   * @param failed pending transactions whose refresh failed, with their error, refreshed again by the next sync
+   */
+  final case class SyncResult(fetched: Int,
+                              refreshed: Int,
+                              appended: Int,
+                              forgotten: Seq[String] = Nil,
+                              failed: Map[String, ErrorMessage] = Map.empty)
+
+  /**
+   * Error code of a transaction the wallet does not know, e.g. a pending transaction it forgot. Any other error,
+   * a bare 404 included, may come from a proxy in front of the wallet and is a failed refresh.
+   */
+  val TransactionNotFoundCode: String = "no_such_transaction"
+
+  private val WalletIdPattern = "[A-Za-z0-9_-]+".r
+}
+
+/**
+ * Local copy of the transactions of wallets, one [[TransactionLog]] per wallet id in a sub directory of `directory`.
+ * Once a wallet is synced its history is read from the log, only the transactions after the high-water mark
+ * and the pending ones are requested again. A pending transaction the wallet forgot is stored as expired.
+ *
+ * @param directory directory of the wallet logs, created when missing
+ * @param segmentSize size of the segment files of the logs
+ */
+class TransactionStore(directory: Path, segmentSize: Int = TransactionStore.DefaultSegmentSize) extends AutoCloseable {
+
+  import TransactionStore._
+
+  private val logs = TrieMap.empty[String, TransactionLog]
+
+  /**
+   * @param walletId wallet's id, used as the name of the log directory
+   * @return the log of the wallet, opened on first use
+   */
+  def wallet(walletId: String): TransactionLog = {
+    require(WalletIdPattern.matches(walletId), s"Invalid wallet id '$walletId'")
+    logs.getOrElse(walletId, logs.synchronized {
+      logs.getOrElseUpdate(walletId, new TransactionLog(directory.resolve(walletId), segmentSize))
+    })
+  }
+
+  /**
+   * Fetches the transactions of the wallet from its high-water mark on, the whole history on the first sync,
+   * then fetches again the transactions still pending, and appends the ones which changed.
+   *
+   * @param api api of the wallet backend
+   * @param walletId wallet's id
+   * @return the error of the listing, the errors of the pending transactions fetched again are reported in the
+   *         result
+   */
+  def sync(api: BccApi, walletId: String)(implicit
+    executor: ApiRequestExecutor,
+    ec: ExecutionContext,
+    as: ActorSystem
+  ): Future[BccApiResponse[SyncResult]] = {
+    val log = wallet(walletId)
+
+    api.listTransactions(walletId, start = log.highWaterMark, order = Order.ascendingOrder).execute.flatMap {
+      case Left(error) => Future.successful(Left(error))
+      case Right(fetched) =>
+        val appended = log.append(fetched).size
+        val fetchedIds = fetched.map(_.id).toSet
+        val pending = log.pending.filterNot(fetchedIds).toVector
+
+        api.getTransactions(walletId, pending).map { results =>
+          val responses = results.map(result => pending(result.index) -> result.response)
+          val refreshed = responses.collect { case (_, Right(transaction)) => transaction }
+          val forgotten = responses.collect {
+            case (id, Left(error)) if error.code == TransactionNotFoundCode => id
+          }
+          val failed = responses.collect {
+            case (id, Left(error)) if error.code != TransactionNotFoundCode => id -> error
+          }.toMap
+          // never entering the ledger, as far as the wallet knows
+          val expired = forgotten.flatMap(log.transaction).map(_.copy(status = TxState.expired))
+          val refreshAppended = log.append(refreshed ++ expired).size
+          Right(SyncResult(fetched.size, refreshed.size, appended + refreshAppended, forgotten, failed))
+        }
+    }
+  }
+
+  override def close(): Unit = logs.synchronized {
+    logs.values.foreach(_.close())
+    logs.clear()
+  }
+}
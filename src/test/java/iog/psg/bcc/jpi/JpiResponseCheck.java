@@ -113,7 +113,15 @@ public class JpiResponseCheck {
     }
 
     public static BccApi buildWithPredefinedApiExecutor(iog.psg.bcc.ApiRequestExecutor executor, ActorSystem as) {
-        BccApiBuilder builder = BccApiBuilder.create("http://fake:1234/").withApiExecutor(new ApiRequestExecutor() {
+        return builderWithPredefinedApiExecutor(executor, as).build();
+    }
+
+    public static BccApiSync buildSyncWithPredefinedApiExecutor(iog.psg.bcc.ApiRequestExecutor executor, ActorSystem as) {
+        return builderWithPredefinedApiExecutor(executor, as).buildSync();
+    }
+
+    private static BccApiBuilder builderWithPredefinedApiExecutor(iog.psg.bcc.ApiRequestExecutor executor, ActorSystem as) {
+        return BccApiBuilder.create("http://fake:1234/").withActorSystem(as).withApiExecutor(new ApiRequestExecutor() {
             @Override
             public <T> CompletionStage<T> execute(iog.psg.bcc.BccApi.BccApiRequest<T> request) throws BccApiException {
                 Future<Either<iog.psg.bcc.BccApi.ErrorMessage, T>> sResponse = executor.execute(request, as.dispatcher(), as);
@@ -121,8 +129,6 @@ public class JpiResponseCheck {
                 return jResponse;
             }
         });
-
-        return builder.build();
     }
 
     public static BccApi buildWithDummyApiExecutor() {
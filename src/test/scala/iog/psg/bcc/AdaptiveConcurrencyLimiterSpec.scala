@@ -0,0 +1,117 @@
+package iog.psg.bcc
+
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpRequest, HttpResponse, StatusCode, StatusCodes }
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse }
+import iog.psg.bcc.util.CustomPatienceConfiguration
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+
+class AdaptiveConcurrencyLimiterSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with CustomPatienceConfiguration {
+
+  private implicit val as: ActorSystem = ActorSystem("adaptive-concurrency-test-system")
+  private implicit val ec: ExecutionContext = as.dispatcher
+
+  private val baseUrl = "http://fake:1234/v2/"
+  private val request = BccApiRequest[Int](
+    HttpRequest(uri = s"${baseUrl}network/information"),
+    response => Future.successful(Right(response.status.intValue()))
+  )
+
+  // the backends sleep, apart from the dispatcher
+  private val backendThreads = ExecutionContext.fromExecutor(Executors.newCachedThreadPool())
+
+  /**
+   * Answers with `status` after `latencyMillis` of the requests in flight when it arrives.
+   */
+  private class Backend(latencyMillis: Int => Long, status: StatusCode = StatusCodes.OK) extends ApiRequestExecutor {
+    val inFlight = new AtomicInteger()
+
+    override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+      val latency = latencyMillis(inFlight.incrementAndGet())
+      Future {
+        Thread.sleep(latency)
+        inFlight.decrementAndGet()
+      }(backendThreads).flatMap(_ => request.mapper(HttpResponse(status)))
+    }
+  }
+
+  private def load(executor: ApiRequestExecutor, callers: Int, requestsPerCaller: Int): Seq[BccApiResponse[Int]] = {
+    def caller(left: Int): Future[List[BccApiResponse[Int]]] =
+      if (left == 0) Future.successful(Nil)
+      else executor.execute(request).flatMap(response => caller(left - 1).map(response :: _))
+
+    Future.sequence((1 to callers).map(_ => caller(requestsPerCaller))).futureValue.flatten
+  }
+
+  "AdaptiveConcurrencyLimiter" should "raise the limit while the latency stays low" in {
+    val limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.Settings(initialLimit = 4, maxLimit = 50))
+    val executor = limiter.wrap(new Backend(_ => 5))
+
+    load(executor, callers = 40, requestsPerCaller = 10).distinct shouldBe Seq(Right(200))
+
+    limiter.limit(baseUrl) should be > 4
+  }
+
+  it should "lower the limit as the latency grows with the requests in flight" in {
+    val limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.Settings(initialLimit = 20))
+    val backend = new Backend(inFlight => 2L * inFlight)
+    val executor = limiter.wrap(backend)
+
+    load(executor, callers = 40, requestsPerCaller = 10)
+
+    limiter.limit(baseUrl) should be < 20
+    limiter.stats(baseUrl).minRttMillis should be > 0.0
+  }
+
+  it should "lower the limit when the backend answers with a 5xx status" in {
+    val limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.Settings(initialLimit = 20))
+    val executor = limiter.wrap(new Backend(_ => 1, StatusCodes.ServiceUnavailable))
+
+    load(executor, callers = 1, requestsPerCaller = 10).distinct shouldBe Seq(Right(503))
+
+    limiter.limit(baseUrl) shouldBe 6
+  }
+
+  it should "queue the requests beyond the limit and refuse them once the queue is full" in {
+    val limiter = new AdaptiveConcurrencyLimiter(
+      AdaptiveConcurrencyLimiter.Settings(initialLimit = 1).withMaxQueued(1)
+    )
+    val released = Promise[Unit]()
+    val executor = limiter.wrap(new ApiRequestExecutor {
+      override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+        released.future.flatMap(_ => request.mapper(HttpResponse()))
+    })
+
+    val first = executor.execute(request)
+    val second = executor.execute(request)
+    executor.execute(request).futureValue.left.map(_.code) shouldBe Left(AdaptiveConcurrencyLimiter.ConcurrencyLimitedCode)
+    limiter.stats(baseUrl) shouldBe AdaptiveConcurrencyLimiter.Stats(limit = 1, inFlight = 1, queued = 1, minRttMillis = 0, rejected = 1)
+
+    released.success(())
+    first.futureValue shouldBe Right(200)
+    second.futureValue shouldBe Right(200)
+  }
+
+  it should "free the slot of a failed request" in {
+    val limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.Settings(initialLimit = 1))
+    val executor = limiter.wrap(new ApiRequestExecutor {
+      override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+        Future.failed(new RuntimeException("connection refused"))
+    })
+
+    executor.execute(request).failed.futureValue.getMessage shouldBe "connection refused"
+    executor.execute(request).failed.futureValue.getMessage shouldBe "connection refused"
+    limiter.stats(baseUrl).inFlight shouldBe 0
+  }
+}
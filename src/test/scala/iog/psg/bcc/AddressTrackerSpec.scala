@@ -0,0 +1,112 @@
+package iog.psg.bcc
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpRequest, HttpResponse }
+import iog.psg.bcc.BccApiCodec.ImplicitCodecs.createListAddrEntityEncoder
+import iog.psg.bcc.BccApiCodec.{ AddressFilter, WalletAddressId }
+import iog.psg.bcc.util.StubApiRequestExecutor.{ api, json, walletId, walletNotFound }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, StubApiRequestExecutor }
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.{ ExecutionContext, Future }
+
+class AddressTrackerSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with Eventually
+    with CustomPatienceConfiguration {
+
+  private implicit val as: ActorSystem = ActorSystem("address-tracker-test-system")
+  private implicit val ec: ExecutionContext = as.dispatcher
+
+  /**
+   * A wallet whose addresses are listed from `used` and `unused`, counting the listings by state filter.
+   */
+  private class AddressPool(@volatile var unused: Seq[String], @volatile var used: Seq[String] = Nil) extends StubApiRequestExecutor {
+    val fullListings = new AtomicInteger()
+    val unusedListings = new AtomicInteger()
+
+    override protected def respond(request: HttpRequest): Future[HttpResponse] = {
+      val listed = request.uri.query().get("state") match {
+        case Some("unused") =>
+          unusedListings.incrementAndGet()
+          unused.map(WalletAddressId(_, Some(AddressFilter.unUsed)))
+        case _ =>
+          fullListings.incrementAndGet()
+          used.map(WalletAddressId(_, Some(AddressFilter.used))) ++ unused.map(WalletAddressId(_, Some(AddressFilter.unUsed)))
+      }
+      Future.successful(json(listed))
+    }
+  }
+
+  private def addresses(prefix: String, count: Int) = (1 to count).map(i => s"$prefix$i")
+
+  "AddressTracker" should "list the pool once and hand out its unused addresses in order" in {
+    implicit val pool: AddressPool = new AddressPool(addresses("unused", 10), addresses("used", 3))
+    val tracker = new AddressTracker(api, AddressTracker.Settings(refillBelow = 0))
+
+    (1 to 3).map(_ => tracker.nextUnused(walletId).futureValue.map(_.id)) shouldBe addresses("unused", 3).map(Right(_))
+
+    pool.fullListings.get() shouldBe 1
+    pool.unusedListings.get() shouldBe 0
+    tracker.stats(walletId) shouldBe AddressTracker.Stats(unused = 7, handedOut = 3, used = 3)
+  }
+
+  it should "hand out an address to a single concurrent caller" in {
+    implicit val pool: AddressPool = new AddressPool(addresses("unused", 50))
+    val tracker = new AddressTracker(api, AddressTracker.Settings(refillBelow = 0))
+
+    val handedOut = Future.sequence((1 to 50).map(_ => Future(tracker.nextUnused(walletId)).flatten)).futureValue
+
+    handedOut.flatMap(_.toOption).map(_.id).toSet shouldBe addresses("unused", 50).toSet
+    tracker.nextUnused(walletId).futureValue.left.map(_.code) shouldBe Left(AddressTracker.NoUnusedAddressCode)
+  }
+
+  it should "list the unused addresses again in the background when few are left" in {
+    implicit val pool: AddressPool = new AddressPool(addresses("unused", 3))
+    val tracker = new AddressTracker(api, AddressTracker.Settings(refillBelow = 2))
+
+    tracker.nextUnused(walletId).futureValue.map(_.id) shouldBe Right("unused1")
+    pool.unused = addresses("unused", 3).drop(1) ++ addresses("new", 2)
+    tracker.nextUnused(walletId).futureValue.map(_.id) shouldBe Right("unused2")
+
+    eventually(pool.unusedListings.get() should be >= 1)
+    eventually(tracker.stats(walletId).unused shouldBe 3)
+    // unused1 is no longer listed as unused, it was paid to
+    tracker.stats(walletId) shouldBe AddressTracker.Stats(unused = 3, handedOut = 1, used = 1)
+  }
+
+  it should "give back released addresses" in {
+    implicit val pool: AddressPool = new AddressPool(addresses("unused", 2))
+    val tracker = new AddressTracker(api, AddressTracker.Settings(refillBelow = 0))
+
+    val first = tracker.nextUnused(walletId).futureValue.toOption.get
+    tracker.release(walletId, first.id)
+    tracker.release(walletId, "never-handed-out")
+
+    tracker.stats(walletId) shouldBe AddressTracker.Stats(unused = 2, handedOut = 0, used = 0)
+  }
+
+  it should "list the unused addresses again once all are handed out" in {
+    implicit val pool: AddressPool = new AddressPool(addresses("unused", 1))
+    val tracker = new AddressTracker(api, AddressTracker.Settings(refillBelow = 0))
+
+    tracker.nextUnused(walletId).futureValue.map(_.id) shouldBe Right("unused1")
+    pool.unused = addresses("new", 1)
+
+    tracker.nextUnused(walletId).futureValue.map(_.id) shouldBe Right("new1")
+    pool.unusedListings.get() shouldBe 1
+  }
+
+  it should "return the error of the wallet" in {
+    implicit val failing: ApiRequestExecutor = StubApiRequestExecutor.failing()
+    val tracker = new AddressTracker(api)
+
+    tracker.nextUnused(walletId).futureValue shouldBe Left(walletNotFound)
+  }
+}
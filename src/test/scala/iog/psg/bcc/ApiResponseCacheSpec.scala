@@ -0,0 +1,96 @@
+package iog.psg.bcc
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.actor.ActorSystem
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, DummyModel, InMemoryBccApi, ResourceFiles }
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{ ExecutionContext, Future }
+
+class ApiResponseCacheSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with InMemoryBccApi
+    with ResourceFiles
+    with DummyModel
+    with CustomPatienceConfiguration {
+
+  override implicit val as: ActorSystem = ActorSystem("api-response-cache-test-system")
+
+  private lazy val api = BccApi(baseUrl)
+
+  private class CountingExecutor extends ApiRequestExecutor {
+    val count = new AtomicInteger()
+
+    override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+      count.incrementAndGet()
+      inMemoryExecutor.execute(request)
+    }
+  }
+
+  "ApiResponseCache" should "answer repeated wallet reads from the cache" in {
+    val backend = new CountingExecutor
+    val cache = new ApiResponseCache(ApiResponseCache.defaultSettings)
+    val executor = cache.wrap(backend)
+
+    executor.execute(api.getWallet(wallet.id)).futureValue shouldBe Right(wallet)
+    executor.execute(api.getWallet(wallet.id)).futureValue shouldBe Right(wallet)
+
+    backend.count.get() shouldBe 1
+    cache.stats.hits shouldBe 1
+    cache.stats.misses shouldBe 1
+  }
+
+  it should "drop the wallet's entries when the wallet is written to" in {
+    val backend = new CountingExecutor
+    val executor = new ApiResponseCache(ApiResponseCache.defaultSettings).wrap(backend)
+
+    executor.execute(api.getWallet(wallet.id)).futureValue shouldBe Right(wallet)
+    executor.execute(api.updateName(wallet.id, "new name").futureValue).futureValue.map(_.name) shouldBe Right("new name")
+    executor.execute(api.getWallet(wallet.id)).futureValue shouldBe Right(wallet)
+
+    backend.count.get() shouldBe 3
+  }
+
+  it should "fetch an entry again once the ttl of its endpoint is over" in {
+    val backend = new CountingExecutor
+    val cache = new ApiResponseCache(ApiResponseCache.Settings(walletTtl = 100.millis, networkInfoTtl = 1.hour))
+    val executor = cache.wrap(backend)
+
+    executor.execute(api.getWallet(wallet.id)).futureValue shouldBe Right(wallet)
+    executor.execute(api.networkInfo).futureValue shouldBe Right(networkInfo)
+    Thread.sleep(200)
+    executor.execute(api.getWallet(wallet.id)).futureValue shouldBe Right(wallet)
+    executor.execute(api.networkInfo).futureValue shouldBe Right(networkInfo)
+
+    backend.count.get() shouldBe 3
+    cache.stats.hits shouldBe 1
+  }
+
+  it should "not cache error responses" in {
+    val backend = new CountingExecutor
+    val executor = new ApiResponseCache(ApiResponseCache.defaultSettings).wrap(backend)
+
+    executor.execute(api.getWallet("invalid_wallet_id")).futureValue.isLeft shouldBe true
+    executor.execute(api.getWallet("invalid_wallet_id")).futureValue.isLeft shouldBe true
+
+    backend.count.get() shouldBe 2
+  }
+
+  it should "evict the least recently used entry" in {
+    val cache = new ApiResponseCache(ApiResponseCache.Settings(maxEntries = 1))
+    val executor = cache.wrap(new CountingExecutor)
+
+    executor.execute(api.getWallet(wallet.id)).futureValue
+    executor.execute(api.networkInfo).futureValue
+
+    cache.stats.size shouldBe 1
+    cache.stats.evictions shouldBe 1
+  }
+}
@@ -2,16 +2,24 @@ package iog.psg.bcc
 
 import java.nio.file.Paths
 import java.time.ZonedDateTime
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
 
 import akka.actor.ActorSystem
 import akka.http.scaladsl.model.{ContentTypes, HttpEntity}
-import iog.psg.bcc.BccApi.ErrorMessage
+import akka.stream.scaladsl.Sink
+import iog.psg.bcc.BccApi.{BccApiRequest, BccApiResponse, BulkResult, ErrorMessage}
 import iog.psg.bcc.BccApiCodec.{AddressFilter, CreateTransactionResponse}
+import iog.psg.bcc.jpi.{BccApiImpl, HelpExecute, ListTransactionsParamBuilder}
 import iog.psg.bcc.util._
+import org.reactivestreams.{Subscriber, Subscription}
 import org.scalatest.concurrent.ScalaFutures
 import org.scalatest.flatspec.AnyFlatSpec
 import org.scalatest.matchers.should.Matchers
 
+import scala.concurrent.{ExecutionContext, Future}
+import scala.jdk.CollectionConverters._
+
 class BccApiSpec
     extends AnyFlatSpec
     with Matchers
@@ -39,6 +47,11 @@ class BccApiSpec
     api.getWallet("invalid_wallet_id").executeExpectingErrorOrFail() shouldBe walletNotFoundError
   }
 
+  it should "return wallets in bulk, in input order" in {
+    val results = api.getWallets(Seq("invalid_wallet_id", wallet.id), parallelism = 2)(inMemoryExecutor).futureValue
+    results shouldBe Seq(BulkResult(0, Left(walletNotFoundError)), BulkResult(1, Right(wallet)))
+  }
+
   "GET /network/information" should "return network information" in {
     api.networkInfo.executeOrFail() shouldBe networkInfo
   }
@@ -115,6 +128,46 @@ class BccApiSpec
     transactions.last.id shouldBe "0021cebd2a610cef5f8ce753618b3d06af5414776b79dd12dc4d842b1f900631"
   }
 
+  it should "stream wallet's transactions" in {
+    val transactions = api.listTransactionsStream(wallet.id).executeOrFail().runWith(Sink.seq).futureValue
+    transactions.map(_.id) shouldBe transactionsIdsDesc
+  }
+
+  it should "publish wallet's transactions to a java subscriber in order, as it requests them" in {
+    val sent = new AtomicInteger()
+    val executor = new ApiRequestExecutor {
+      override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+        sent.incrementAndGet()
+        inMemoryExecutor.execute(request)
+      }
+    }
+    val publisher = new BccApiImpl(api, new HelpExecute(executor))
+      .listTransactionsStream(ListTransactionsParamBuilder.create(wallet.id), 2)
+
+    val received = new ConcurrentLinkedQueue[String]()
+    val completed = new AtomicInteger()
+    @volatile var subscription: Subscription = null
+    sent.get() shouldBe 0
+
+    publisher.subscribe(new Subscriber[CreateTransactionResponse] {
+      override def onSubscribe(s: Subscription): Unit = subscription = s
+      override def onNext(transaction: CreateTransactionResponse): Unit = received.add(transaction.id)
+      override def onError(t: Throwable): Unit = fail(t)
+      override def onComplete(): Unit = completed.incrementAndGet()
+    })
+    eventually(subscription should not be null)
+    sent.get() shouldBe 0
+
+    subscription.request(1)
+    eventually(received.size shouldBe 1)
+    sent.get() shouldBe 1
+    received.size shouldBe 1
+
+    subscription.request(Long.MaxValue)
+    eventually(completed.get() shouldBe 1)
+    received.asScala.toSeq shouldBe transactionsIdsDesc
+  }
+
   it should "run request with proper params" in {
     val start = ZonedDateTime.parse("2000-01-01T00:00:00.000Z")
     val end = ZonedDateTime.parse("2001-01-01T00:00:00.000Z")
@@ -148,6 +201,16 @@ class BccApiSpec
     )
   }
 
+  it should "return transactions in bulk, in input order" in {
+    val results = api
+      .getTransactions(wallet.id, Seq(firstTransactionId, "not_existing_id"))(inMemoryExecutor)
+      .futureValue
+    results.map(_.response.map(_.id)) shouldBe Seq(
+      Right(firstTransactionId),
+      Left(ErrorMessage("Transaction not found", "404"))
+    )
+  }
+
   "POST /wallets/{walletId}/transactions" should "create transaction" in {
     api
       .createTransaction(
@@ -173,6 +236,20 @@ class BccApiSpec
       .executeExpectingErrorOrFail() shouldBe walletNotFoundError
   }
 
+  it should "create transactions in bulk" in {
+    val transactions = Seq(wallet.id, "invalid_wallet_id", wallet.id).map { walletId =>
+      BccApi.TransactionRequest(walletId, walletPassphrase, payments, Some(txMetadata), Some(withdrawal))
+    }
+
+    val results = api.createTransactions(transactions, parallelism = 2)(inMemoryExecutor).runWith(Sink.seq).futureValue
+
+    results.sortBy(_.index).map(r => r.response.map(_.id)) shouldBe Seq(
+      Right(firstTransactionId),
+      Left(walletNotFoundError),
+      Right(firstTransactionId)
+    )
+  }
+
   "DELETE /wallets/{walletId}/transactions" should "forget pending transaction" in {
     api.deleteTransaction(wallet.id, firstTransactionId).executeOrFail() shouldBe ()
   }
@@ -234,6 +311,11 @@ class BccApiSpec
     api.inspectAddress("invalid_address_id").executeExpectingErrorOrFail() shouldBe addressNotFoundError
   }
 
+  it should "inspect addresses in bulk, in input order" in {
+    val results = api.inspectAddresses(Seq(addressToInspect.id, "invalid_address_id"), parallelism = 1)(inMemoryExecutor)
+    results.futureValue.map(_.response) shouldBe Seq(Right(address), Left(addressNotFoundError))
+  }
+
   "GET /wallets/{walletId}/statistics/utxos" should "get UTxOs statistics" in {
     api.getUTxOsStatistics(wallet.id).executeOrFail() shouldBe uTxOStatistics
   }
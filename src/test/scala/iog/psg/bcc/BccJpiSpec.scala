@@ -1,17 +1,28 @@
 package iog.psg.bcc
 
-import java.time.ZonedDateTime
-import java.util.concurrent.CompletionStage
+import java.time.{ Duration, ZonedDateTime }
+import java.util.concurrent.atomic.{ AtomicBoolean, AtomicInteger }
+import java.util.concurrent.{ Callable, CompletionStage, ConcurrentLinkedQueue }
 
 import akka.actor.ActorSystem
-import iog.psg.bcc.BccApi.ErrorMessage
-import iog.psg.bcc.jpi.{ AddressFilter, JpiResponseCheck, ListTransactionsParamBuilder }
+import akka.http.scaladsl.model.{ ContentTypes, HttpEntity, HttpResponse }
+import akka.pattern.after
+import akka.stream.scaladsl.{ JavaFlowSupport, Sink, Source }
+import io.circe.parser.parse
+import io.circe.syntax.EncoderOps
+import iog.psg.bcc.BccApi.{ BccApiResponse, ErrorMessage }
+import iog.psg.bcc.BccApiCodec.ImplicitCodecs.encodeCreateTransactionResponse
+import iog.psg.bcc.jpi.{ AddressFilter, BccApiBuilder, BccApiException, ExecutorProfile, FlowPublishers, HelpExecute, JpiResponseCheck, ListTransactionsParamBuilder, TransactionHistoryFetcher, TransactionRequest, VirtualThreads }
 import iog.psg.bcc.util._
 import org.scalatest.concurrent.ScalaFutures
 import org.scalatest.flatspec.AnyFlatSpec
 import org.scalatest.matchers.should.Matchers
 
+import scala.collection.concurrent.TrieMap
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{ ExecutionContext, Future }
 import scala.jdk.CollectionConverters._
+import scala.jdk.javaapi.FutureConverters
 import scala.util.Try
 
 class BccJpiSpec
@@ -25,6 +36,7 @@ class BccJpiSpec
     with ResourceFiles {
 
   lazy val api = JpiResponseCheck.buildWithPredefinedApiExecutor(inMemoryExecutor, as)
+  lazy val syncApi = JpiResponseCheck.buildSyncWithPredefinedApiExecutor(inMemoryExecutor, as)
 
   private def tryGetErrorMessage[T](completionStage: CompletionStage[T]) =
     Try(completionStage.toCompletableFuture.get()).toEither.swap.getOrElse(fail("should fail")).getMessage
@@ -49,6 +61,34 @@ class BccJpiSpec
     tryGetErrorMessage(api.getWallet("invalid_wallet_id")) shouldBe walletNotFoundError
   }
 
+  it should "return wallets in bulk, in input order" in {
+    val results = api.getWallets(List(wallet.id, "invalid_wallet_id").asJava, 2).toCompletableFuture.get().asScala
+    results.map(_.getIndex) shouldBe Seq(0, 1)
+    results.head.getResult shouldBe wallet
+    results(1).getErrorCode shouldBe "404"
+  }
+
+  it should "read wallets, transactions and addresses in bulk through the api executor given to the builder" in {
+    val sent = new AtomicInteger()
+    val client = countingApi(sent)
+
+    val wallets = client.getWallets(List(wallet.id, "invalid_wallet_id").asJava, 2).toCompletableFuture.get().asScala
+    wallets.head.getResult shouldBe wallet
+    wallets(1).getErrorCode shouldBe "404"
+
+    val transactions =
+      client.getTransactions(wallet.id, List(firstTransactionId, "not_existing_id").asJava, 2).toCompletableFuture.get().asScala
+    transactions.head.getResult.id shouldBe firstTransactionId
+    transactions(1).getErrorMessage shouldBe "Transaction not found"
+
+    val addresses =
+      client.inspectAddresses(List(addressToInspect.id, "invalid_address_id").asJava, 2).toCompletableFuture.get().asScala
+    addresses.head.getResult shouldBe address
+    addresses(1).getErrorCode shouldBe "404"
+
+    sent.get() shouldBe 6
+  }
+
   "GET /network/information" should "return network information" in {
     api.networkInfo.toCompletableFuture.get() shouldBe networkInfo
   }
@@ -151,6 +191,32 @@ class BccJpiSpec
     transactions.map(_.id) shouldBe oldTransactionsIdsAsc
   }
 
+  it should "fetch time slices in order, without the duplicates found at slice edges" in {
+    val slicedApi = JpiResponseCheck.buildWithPredefinedApiExecutor(new SlicedHistoryExecutor, as)
+
+    val ascending = new TransactionHistoryFetcher(slicedApi, historyRange(iog.psg.bcc.jpi.Order.ASCENDING), Duration.ofDays(30), 4)
+    ascending.fetch().toCompletableFuture.get().asScala.map(_.id) shouldBe historyIds
+    ascending.getSliceCount shouldBe 13
+    ascending.getCompletedSliceCount shouldBe 13
+
+    val descending = new TransactionHistoryFetcher(slicedApi, historyRange(iog.psg.bcc.jpi.Order.DESCENDING), Duration.ofDays(30), 4)
+    descending.fetch().toCompletableFuture.get().asScala.map(_.id) shouldBe historyIds.reverse
+  }
+
+  it should "fail with a failing slice and only request the missing slices again" in {
+    val executor = new SlicedHistoryExecutor(failingSliceStart = Some(historyStart.plusDays(150)))
+    val slicedApi = JpiResponseCheck.buildWithPredefinedApiExecutor(executor, as)
+    val fetcher = new TransactionHistoryFetcher(slicedApi, historyRange(iog.psg.bcc.jpi.Order.ASCENDING), Duration.ofDays(30), 1)
+
+    tryGetErrorMessage(fetcher.fetch()) shouldBe "iog.psg.bcc.jpi.BccApiException: Message: Slice failed, Code: 500"
+    fetcher.getCompletedSliceCount shouldBe 5
+    executor.requested.get() shouldBe 6
+
+    fetcher.fetch().toCompletableFuture.get().asScala.map(_.id) shouldBe historyIds
+    fetcher.getCompletedSliceCount shouldBe 13
+    executor.requested.get() shouldBe 6 + 8
+  }
+
   "GET /wallets/{walletId}/transactions/{transactionId}" should "return transaction" in {
     api
       .getTransaction(wallet.id, firstTransactionId)
@@ -190,6 +256,88 @@ class BccJpiSpec
     ) shouldBe walletNotFoundError
   }
 
+  it should "create transactions in bulk" in {
+    val transactions = Seq(wallet.id, "invalid_wallet_id").map { walletId =>
+      new TransactionRequest(walletId, walletPassphrase, payments.payments.asJava, txMetadata, withdrawal)
+    }
+
+    val results = JavaFlowSupport.Source
+      .fromPublisher(FlowPublishers.toFlow(api.createTransactions(transactions.asJava, 2)))
+      .runWith(Sink.seq)
+      .futureValue
+      .sortBy(_.getIndex)
+
+    results.map(_.isSuccess) shouldBe Seq(true, false)
+    results.head.getResult.id shouldBe firstTransactionId
+    results(1).getErrorMessage shouldBe "Wallet not found"
+    results(1).getErrorCode shouldBe "404"
+  }
+
+  it should "create transactions in bulk through the api executor given to the builder" in {
+    val sent = new AtomicInteger()
+    val transactions = Seq(wallet.id, "invalid_wallet_id").map { walletId =>
+      new TransactionRequest(walletId, walletPassphrase, payments.payments.asJava, txMetadata, withdrawal)
+    }
+
+    val results = Source
+      .fromPublisher(countingApi(sent).createTransactions(transactions.asJava, 2))
+      .runWith(Sink.seq)
+      .futureValue
+      .sortBy(_.getIndex)
+
+    sent.get() shouldBe 2
+    results.head.getResult.id shouldBe firstTransactionId
+    results(1).getErrorCode shouldBe "404"
+  }
+
+  it should "create the transactions of a wallet in order, for at most parallelism wallets at a time" in {
+    val started = new ConcurrentLinkedQueue[(String, String)]()
+    val running = new AtomicInteger()
+    val maxRunning = new AtomicInteger()
+    val runningByWallet = TrieMap.empty[String, AtomicInteger]
+    val maxRunningByWallet = new AtomicInteger()
+
+    val client = BccApiBuilder
+      .create(baseUrl)
+      .withActorSystem(as)
+      .withApiExecutor(new jpi.ApiRequestExecutor {
+        override def execute[T](request: BccApi.BccApiRequest[T]): CompletionStage[T] = {
+          val walletId = request.request.uri.path.toString().split('/').dropRight(1).last
+          val body = parse(request.request.entity.asInstanceOf[HttpEntity.Strict].data.utf8String).toOption.get
+          started.add(walletId -> body.hcursor.get[String]("passphrase").toOption.get)
+
+          val walletRunning = runningByWallet.getOrElseUpdate(walletId, new AtomicInteger())
+          maxRunning.accumulateAndGet(running.incrementAndGet(), (a, b) => math.max(a, b))
+          maxRunningByWallet.accumulateAndGet(walletRunning.incrementAndGet(), (a, b) => math.max(a, b))
+
+          val response = after(20.millis, as.scheduler) {
+            walletRunning.decrementAndGet()
+            running.decrementAndGet()
+            Future.successful(jsonFileCreatedTransactionResponse.asInstanceOf[T])
+          }
+          FutureConverters.asJava(response)
+        }
+      })
+      .build()
+
+    val walletIds = Seq("wallet1", "wallet2", "wallet3")
+    val transactions = for {
+      tx <- 0 to 2
+      walletId <- walletIds
+    } yield new TransactionRequest(walletId, s"$walletId-$tx", payments.payments.asJava)
+
+    val results = Source.fromPublisher(client.createTransactions(transactions.asJava, 2)).runWith(Sink.seq).futureValue
+
+    results.map(_.getIndex).sorted shouldBe transactions.indices
+    results.forall(_.isSuccess) shouldBe true
+    walletIds.foreach { walletId =>
+      started.asScala.toSeq.filter(_._1 == walletId).map(_._2) shouldBe (0 to 2).map(tx => s"$walletId-$tx")
+    }
+    maxRunningByWallet.get() shouldBe 1
+    maxRunning.get() shouldBe 2
+    client.close()
+  }
+
   "DELETE /wallets/{walletId}/transactions" should "forget pending transaction" in {
     api.deleteTransaction(wallet.id, firstTransactionId).toCompletableFuture.get() shouldBe null
   }
@@ -360,6 +508,143 @@ class BccJpiSpec
     api.postMaintenanceAction().toCompletableFuture.get() shouldBe null
   }
 
+  "BccApiSync" should "return the response of a blocking call" in {
+    syncApi.getWallet(wallet.id) shouldBe wallet
+    syncApi.listWallets().asScala shouldBe Seq(wallet)
+  }
+
+  it should "throw the api error of a blocking call" in {
+    val error = intercept[BccApiException](syncApi.getWallet("invalid_wallet_id"))
+    error.getMessage shouldBe "Message: Wallet not found, Code: 404"
+  }
+
+  it should "stream transactions as they are consumed" in {
+    val stream = syncApi.listTransactionsStream(ListTransactionsParamBuilder.create(wallet.id))
+    try stream.iterator().asScala.map(_.id).toSeq shouldBe transactionsIdsDesc
+    finally stream.close()
+  }
+
+  it should "serve blocking calls run by the task executor" in {
+    val executor = VirtualThreads.newTaskExecutor(4)
+    try {
+      val calls = (1 to 20).map { _ =>
+        executor.submit(new Callable[BccApiCodec.Wallet] {
+          override def call(): BccApiCodec.Wallet = syncApi.getWallet(wallet.id)
+        })
+      }
+      calls.map(_.get()) shouldBe Seq.fill(20)(wallet)
+    } finally executor.shutdown()
+  }
+
+  it should "serve blocking calls run by the platform threads used before JDK 21" in {
+    val executor = VirtualThreads.newPlatformExecutor(2)
+    try {
+      val calls = (1 to 10).map { _ =>
+        executor.submit(new Callable[(String, BccApiCodec.Wallet, Seq[String])] {
+          override def call(): (String, BccApiCodec.Wallet, Seq[String]) = {
+            val stream = syncApi.listTransactionsStream(ListTransactionsParamBuilder.create(wallet.id))
+            val ids = try stream.iterator().asScala.map(_.id).toSeq finally stream.close()
+            (Thread.currentThread().getName, syncApi.getWallet(wallet.id), ids)
+          }
+        })
+      }
+      calls.map(_.get()).foreach { case (thread, calledWallet, ids) =>
+        thread should startWith("bcc-sync-")
+        calledWallet shouldBe wallet
+        ids shouldBe transactionsIdsDesc
+      }
+    } finally executor.shutdown()
+  }
+
+  "A closed BccApi" should "refuse new calls and leave the given actor system running" in {
+    val closedApi = JpiResponseCheck.buildWithPredefinedApiExecutor(inMemoryExecutor, as)
+    closedApi.getWallet(wallet.id).toCompletableFuture.get() shouldBe wallet
+
+    closedApi.close()
+
+    tryGetErrorMessage(closedApi.getWallet(wallet.id)) shouldBe
+      "iog.psg.bcc.jpi.BccApiException: Message: The client is closed, Code: CLIENT CLOSED"
+    as.whenTerminated.isCompleted shouldBe false
+  }
+
+  it should "be closed by each executor profile" in {
+    ExecutorProfile.values().foreach { profile =>
+      val client = BccApiBuilder
+        .create(baseUrl)
+        .withActorSystem(as)
+        .withApiExecutor(inMemoryExecutor)
+        .withExecutorProfile(profile, 2)
+        .withShutdownTimeout(Duration.ofSeconds(5))
+        .buildSync()
+
+      try client.getWallet(wallet.id) shouldBe wallet
+      finally client.close()
+
+      intercept[BccApiException](client.getWallet(wallet.id)).getMessage shouldBe
+        "Message: The client is closed, Code: CLIENT CLOSED"
+    }
+  }
+
+  /**
+   * Client sending its requests through a jpi executor counting them.
+   */
+  private def countingApi(sent: AtomicInteger): jpi.BccApi =
+    BccApiBuilder
+      .create(baseUrl)
+      .withActorSystem(as)
+      .withApiExecutor(new jpi.ApiRequestExecutor {
+        override def execute[T](request: BccApi.BccApiRequest[T]): CompletionStage[T] = {
+          sent.incrementAndGet()
+          FutureConverters.asJava(HelpExecute.unwrap(inMemoryExecutor.execute(request)))
+        }
+      })
+      .build()
+
+  private val historyStart = ZonedDateTime.parse("2000-01-01T00:00:00.000Z")
+
+  // every 10 days, the slices of 30 days end on a transaction
+  private val history = (0 to 360 by 10).map { day =>
+    jsonFileCreatedTransactionResponse.copy(
+      id = f"$day%03d",
+      insertedAt = jsonFileCreatedTransactionResponse.insertedAt.map(_.copy(time = historyStart.plusDays(day)))
+    )
+  }
+
+  private val historyIds = history.map(_.id)
+
+  private def historyRange(order: iog.psg.bcc.jpi.Order) =
+    ListTransactionsParamBuilder
+      .create(wallet.id)
+      .withStartTime(historyStart)
+      .withEndTime(historyStart.plusYears(1))
+      .withOrder(order)
+
+  /**
+   * Lists the transactions inserted between the start and the end of the request, both included.
+   */
+  private final class SlicedHistoryExecutor(failingSliceStart: Option[ZonedDateTime] = None) extends ApiRequestExecutor {
+    val requested = new AtomicInteger()
+    private val failed = new AtomicBoolean()
+
+    override def execute[T](request: BccApi.BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+      requested.incrementAndGet()
+      val query = request.request.uri.query().toMap
+      val start = ZonedDateTime.parse(query("start")).toInstant
+      val end = ZonedDateTime.parse(query("end")).toInstant
+
+      if (failingSliceStart.exists(_.toInstant == start) && failed.compareAndSet(false, true))
+        Future.successful(Left(ErrorMessage("Slice failed", "500")))
+      else {
+        val inSlice = history.filter(_.insertedAt.exists { inserted =>
+          val time = inserted.time.toInstant
+          !time.isBefore(start) && !time.isAfter(end)
+        })
+        val ordered = if (query("order") == BccApi.Order.descendingOrder.toString) inSlice.reverse else inSlice
+        request.mapper(HttpResponse(entity = HttpEntity(ContentTypes.`application/json`, ordered.asJson.noSpaces)))
+      }
+    }
+  }
+
   override implicit val as: ActorSystem = ActorSystem("bcc-api-jpi-test-system")
 
   private def getCurrentSpecAS: ActorSystem = as
@@ -0,0 +1,155 @@
+package iog.psg.bcc
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpMethods, HttpRequest, HttpResponse, StatusCode, StatusCodes }
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse }
+import iog.psg.bcc.CircuitBreakingApiRequestExecutor.State
+import iog.psg.bcc.util.CustomPatienceConfiguration
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+
+class CircuitBreakingApiRequestExecutorSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with Eventually
+    with CustomPatienceConfiguration {
+
+  private implicit val as: ActorSystem = ActorSystem("circuit-breaking-test-system")
+  private implicit val ec: ExecutionContext = as.dispatcher
+
+  private def request(path: String, method: akka.http.scaladsl.model.HttpMethod = HttpMethods.GET) = BccApiRequest[Int](
+    HttpRequest(method = method, uri = s"http://fake:1234/v2/$path"),
+    response => Future.successful(Right(response.status.intValue()))
+  )
+
+  private val read = request("wallets/2512a00e9653fe49a44a5886202e24d77eeb998f")
+  private val write = request("wallets/2512a00e9653fe49a44a5886202e24d77eeb998f/transactions", HttpMethods.POST)
+  private val networkInfo = request("network/information")
+
+  private val settings = CircuitBreakingApiRequestExecutor.Settings(windowSize = 10, minimumCalls = 5, openDuration = 200.millis)
+
+  /**
+   * Answers with `status`, counting the calls that got through.
+   */
+  private class Backend(@volatile var status: StatusCode = StatusCodes.OK) extends ApiRequestExecutor {
+    val calls = new AtomicInteger()
+
+    override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+      calls.incrementAndGet()
+      request.mapper(HttpResponse(status))
+    }
+  }
+
+  private def circuit(executor: CircuitBreakingApiRequestExecutor, endpointClass: String) =
+    executor.stats(s"http://fake:1234 $endpointClass")
+
+  "CircuitBreakingApiRequestExecutor" should "open the circuit once too many calls fail and fail fast" in {
+    val backend = new Backend(StatusCodes.ServiceUnavailable)
+    val executor = new CircuitBreakingApiRequestExecutor(backend, settings)
+
+    (1 to 5).foreach(_ => executor.execute(read).futureValue shouldBe Right(503))
+    executor.execute(read).futureValue.left.map(_.code) shouldBe Left(CircuitBreakingApiRequestExecutor.CircuitOpenCode)
+
+    backend.calls.get() shouldBe 5
+    circuit(executor, "read").state shouldBe State.open
+    circuit(executor, "read").rejected shouldBe 1
+  }
+
+  it should "keep the circuits of each endpoint class apart" in {
+    val backend = new Backend(StatusCodes.ServiceUnavailable)
+    val executor = new CircuitBreakingApiRequestExecutor(backend, settings)
+
+    (1 to 5).foreach(_ => executor.execute(read).futureValue)
+    backend.status = StatusCodes.OK
+
+    executor.execute(networkInfo).futureValue shouldBe Right(200)
+    executor.execute(write).futureValue shouldBe Right(200)
+  }
+
+  it should "close the circuit once the probe calls succeed" in {
+    val backend = new Backend(StatusCodes.ServiceUnavailable)
+    val executor = new CircuitBreakingApiRequestExecutor(backend, settings)
+
+    (1 to 5).foreach(_ => executor.execute(read).futureValue)
+    backend.status = StatusCodes.OK
+
+    eventually(executor.execute(read).futureValue shouldBe Right(200))
+    circuit(executor, "read").state shouldBe State.halfOpen
+    (1 to 2).foreach(_ => executor.execute(read).futureValue shouldBe Right(200))
+    circuit(executor, "read").state shouldBe State.closed
+  }
+
+  it should "open the circuit again when a probe call fails" in {
+    val backend = new Backend(StatusCodes.ServiceUnavailable)
+    val executor = new CircuitBreakingApiRequestExecutor(backend, settings)
+
+    (1 to 5).foreach(_ => executor.execute(read).futureValue)
+    eventually(executor.execute(read).futureValue shouldBe Right(503))
+
+    circuit(executor, "read").state shouldBe State.open
+  }
+
+  it should "open the circuit once too many calls are slow" in {
+    val slowSettings = settings.copy(slowCallDuration = 50.millis, slowCallRateThreshold = 0.5)
+    val executor = new CircuitBreakingApiRequestExecutor(new ApiRequestExecutor {
+      override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+        akka.pattern.after(100.millis)(request.mapper(HttpResponse()))
+    }, slowSettings)
+
+    (1 to 5).foreach(_ => executor.execute(read).futureValue shouldBe Right(200))
+
+    circuit(executor, "read").state shouldBe State.open
+    circuit(executor, "read").calls shouldBe 0
+  }
+
+  it should "open the circuit once too many calls fail with an exception" in {
+    val executor = new CircuitBreakingApiRequestExecutor(new ApiRequestExecutor {
+      override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+        Future.failed(new RuntimeException("connection refused"))
+    }, settings)
+
+    (1 to 5).foreach(_ => executor.execute(write).failed.futureValue.getMessage shouldBe "connection refused")
+    executor.execute(write).futureValue.left.map(_.code) shouldBe Left(CircuitBreakingApiRequestExecutor.CircuitOpenCode)
+  }
+
+  it should "shed the reads while too many calls are in flight" in {
+    val released = Promise[Unit]()
+    val executor = new CircuitBreakingApiRequestExecutor(new ApiRequestExecutor {
+      override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+        released.future.flatMap(_ => request.mapper(HttpResponse()))
+    }, settings.withLoadShedding(2))
+
+    val inFlight = Seq(executor.execute(read), executor.execute(read))
+
+    executor.execute(read).futureValue.left.map(_.code) shouldBe Left(CircuitBreakingApiRequestExecutor.LoadShedCode)
+    val networkRead = executor.execute(networkInfo)
+    circuit(executor, "read").shed shouldBe 1
+
+    released.success(())
+    (inFlight :+ networkRead).foreach(_.futureValue shouldBe Right(200))
+  }
+
+  it should "shed the reads while too many calls of any endpoint class are in flight to the backend" in {
+    val released = Promise[Unit]()
+    val executor = new CircuitBreakingApiRequestExecutor(new ApiRequestExecutor {
+      override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+        released.future.flatMap(_ => request.mapper(HttpResponse()))
+    }, settings.withLoadShedding(2))
+
+    val inFlight = Seq(executor.execute(write), executor.execute(networkInfo))
+
+    executor.execute(read).futureValue.left.map(_.code) shouldBe Left(CircuitBreakingApiRequestExecutor.LoadShedCode)
+    circuit(executor, "read").shed shouldBe 1
+
+    released.success(())
+    inFlight.foreach(_.futureValue shouldBe Right(200))
+    executor.execute(read).futureValue shouldBe Right(200)
+  }
+}
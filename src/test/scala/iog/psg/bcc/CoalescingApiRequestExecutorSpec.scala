@@ -0,0 +1,86 @@
+package iog.psg.bcc
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.actor.ActorSystem
+import akka.stream.scaladsl.Sink
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, DummyModel, InMemoryBccApi, ResourceFiles }
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+
+class CoalescingApiRequestExecutorSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with InMemoryBccApi
+    with ResourceFiles
+    with DummyModel
+    with CustomPatienceConfiguration {
+
+  override implicit val as: ActorSystem = ActorSystem("coalescing-executor-test-system")
+
+  private lazy val api = BccApi(baseUrl)
+
+  private class GatedExecutor extends ApiRequestExecutor {
+    val gate = Promise[Unit]()
+    val count = new AtomicInteger()
+
+    override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+      count.incrementAndGet()
+      gate.future.flatMap(_ => inMemoryExecutor.execute(request))
+    }
+  }
+
+  "CoalescingApiRequestExecutor" should "send concurrent identical reads once" in {
+    val backend = new GatedExecutor
+    val executor = new CoalescingApiRequestExecutor(backend)
+
+    val responses = (1 to 5).map(_ => executor.execute(api.getWallet(wallet.id)))
+    backend.gate.success(())
+
+    responses.map(_.futureValue) shouldBe Seq.fill(5)(Right(wallet))
+    backend.count.get() shouldBe 1
+    executor.collapsedCount shouldBe 4
+  }
+
+  it should "send reads again once the shared request completed" in {
+    val backend = new GatedExecutor
+    val executor = new CoalescingApiRequestExecutor(backend)
+    backend.gate.success(())
+
+    executor.execute(api.networkInfo).futureValue shouldBe Right(networkInfo)
+    executor.execute(api.networkInfo).futureValue shouldBe Right(networkInfo)
+
+    backend.count.get() shouldBe 2
+    executor.collapsedCount shouldBe 0
+  }
+
+  it should "not coalesce writes" in {
+    val backend = new GatedExecutor
+    val executor = new CoalescingApiRequestExecutor(backend)
+
+    val responses = (1 to 2).map(_ => executor.execute(api.updateName(wallet.id, "new name").futureValue))
+    backend.gate.success(())
+
+    responses.map(_.futureValue.map(_.name)) shouldBe Seq.fill(2)(Right("new name"))
+    backend.count.get() shouldBe 2
+  }
+
+  it should "not coalesce the lists of transactions, which may be streamed" in {
+    val backend = new GatedExecutor
+    val executor = new CoalescingApiRequestExecutor(backend)
+
+    val listed = (1 to 2).map(_ => executor.execute(api.listTransactions(wallet.id)))
+    val streamed = executor.execute(api.listTransactionsStream(wallet.id))
+    backend.gate.success(())
+
+    listed.map(_.futureValue.map(_.map(_.id))) shouldBe Seq.fill(2)(Right(transactionsIdsDesc))
+    streamed.futureValue.toOption.get.runWith(Sink.seq).futureValue.map(_.id) shouldBe transactionsIdsDesc
+    backend.count.get() shouldBe 3
+    executor.collapsedCount shouldBe 0
+  }
+}
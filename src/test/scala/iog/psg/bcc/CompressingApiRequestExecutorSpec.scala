@@ -0,0 +1,75 @@
+package iog.psg.bcc
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.coding.{ Coders, Encoder }
+import akka.http.scaladsl.model.headers.{ `Accept-Encoding`, HttpEncodingRange, HttpEncodings }
+import akka.http.scaladsl.model.{ ContentTypes, HttpEntity, HttpRequest, HttpResponse, StatusCodes }
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, ResourceFiles }
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.{ ExecutionContext, Future }
+
+class CompressingApiRequestExecutorSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with ResourceFiles
+    with CustomPatienceConfiguration {
+
+  private implicit val as: ActorSystem = ActorSystem("compressing-executor-test-system")
+  private implicit val ec: ExecutionContext = as.dispatcher
+
+  private val api = BccApi("http://fake:1234/")
+
+  /**
+   * Answers with the json file, encoded by the encoder, and keeps the last request it received.
+   */
+  private class EncodingExecutor(file: String, encoder: Option[Encoder]) extends ApiRequestExecutor {
+    @volatile var lastRequest: Option[HttpRequest] = None
+
+    override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+      lastRequest = Some(request.request)
+      val response = HttpResponse(StatusCodes.OK, entity = HttpEntity(ContentTypes.`application/json`, getJsonFromFile(file)))
+      request.mapper(encoder.fold(response)(_.encodeMessage(response)))
+    }
+  }
+
+  "CompressingApiRequestExecutor" should "decode gzip compressed transaction lists" in {
+    val backend = new EncodingExecutor("transactions.json", Some(Coders.Gzip))
+    val executor = new CompressingApiRequestExecutor(backend)
+
+    executor.execute(api.listTransactions("wallet_id")).futureValue shouldBe Right(jsonFileCreatedTransactionsResponse)
+    backend.lastRequest.flatMap(_.header[`Accept-Encoding`]).map(_.encodings) shouldBe
+      Some(Seq(HttpEncodingRange(HttpEncodings.gzip), HttpEncodingRange(HttpEncodings.deflate)))
+  }
+
+  it should "decode deflate compressed stake pools" in {
+    val backend = new EncodingExecutor("stake_pools.json", Some(Coders.Deflate))
+    val executor = new CompressingApiRequestExecutor(backend)
+
+    executor.execute(api.listStakePools(1000)).futureValue shouldBe Right(jsonFileStakePoolsResponse)
+  }
+
+  it should "pass on uncompressed responses" in {
+    val backend = new EncodingExecutor("transactions.json", None)
+    val executor = new CompressingApiRequestExecutor(backend)
+
+    executor.execute(api.listTransactions("wallet_id")).futureValue shouldBe Right(jsonFileCreatedTransactionsResponse)
+  }
+
+  it should "ask only for the given encodings" in {
+    val backend = new EncodingExecutor("transactions.json", Some(Coders.Gzip))
+    val executor = new CompressingApiRequestExecutor(backend, Seq(HttpEncodings.gzip))
+
+    executor.execute(api.listTransactions("wallet_id")).futureValue shouldBe Right(jsonFileCreatedTransactionsResponse)
+    backend.lastRequest.flatMap(_.header[`Accept-Encoding`]).map(_.encodings) shouldBe
+      Some(Seq(HttpEncodingRange(HttpEncodings.gzip)))
+  }
+
+  it should "reject encodings it cannot decode" in {
+    an[IllegalArgumentException] shouldBe thrownBy new CompressingApiRequestExecutor(ApiRequestExecutor, Seq(HttpEncodings.compress))
+  }
+}
@@ -0,0 +1,75 @@
+package iog.psg.bcc
+
+import akka.Done
+import akka.actor.ActorSystem
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse, ErrorMessage }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, DummyModel, InMemoryBccApi, ResourceFiles }
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+
+class DrainingApiRequestExecutorSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with InMemoryBccApi
+    with ResourceFiles
+    with DummyModel
+    with CustomPatienceConfiguration {
+
+  override implicit val as: ActorSystem = ActorSystem("draining-executor-test-system")
+
+  private lazy val api = BccApi(baseUrl)
+
+  private class GatedExecutor extends ApiRequestExecutor {
+    val gate = Promise[Unit]()
+
+    override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+      gate.future.flatMap(_ => inMemoryExecutor.execute(request))
+  }
+
+  "DrainingApiRequestExecutor" should "answer the requests in flight after close" in {
+    val backend = new GatedExecutor
+    val executor = new DrainingApiRequestExecutor(backend)
+
+    val inFlight = executor.execute(api.getWallet(wallet.id))
+    executor.inFlightCount shouldBe 1
+
+    val drained = executor.close()
+    drained.isCompleted shouldBe false
+
+    backend.gate.success(())
+
+    inFlight.futureValue shouldBe Right(wallet)
+    drained.futureValue shouldBe Done
+    executor.inFlightCount shouldBe 0
+  }
+
+  it should "refuse the requests sent after close" in {
+    val backend = new GatedExecutor
+    val executor = new DrainingApiRequestExecutor(backend)
+    backend.gate.success(())
+
+    executor.close().futureValue shouldBe Done
+
+    executor.isClosed shouldBe true
+    executor.execute(api.networkInfo).futureValue shouldBe Left(
+      ErrorMessage("The client is closed", DrainingApiRequestExecutor.ClosedCode)
+    )
+    executor.tryAcquire() shouldBe false
+    executor.inFlightCount shouldBe 0
+  }
+
+  it should "release a request whose executor throws" in {
+    val failing = new ApiRequestExecutor {
+      override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+        throw new IllegalStateException("not sent")
+    }
+    val executor = new DrainingApiRequestExecutor(failing)
+
+    executor.execute(api.networkInfo).failed.futureValue shouldBe an[IllegalStateException]
+    executor.close().futureValue shouldBe Done
+  }
+}
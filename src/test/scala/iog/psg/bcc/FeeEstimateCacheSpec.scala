@@ -0,0 +1,145 @@
+package iog.psg.bcc
+
+import java.util.concurrent.atomic.{ AtomicInteger, AtomicLong }
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpRequest, HttpResponse }
+import iog.psg.bcc.BccApi.{ BccApiResponse, ErrorMessage }
+import iog.psg.bcc.BccApiCodec.ImplicitCodecs.encodeCreateTransactionResponse
+import iog.psg.bcc.BccApiCodec.{ EstimateFeeResponse, MetadataValueStr, Payment, Payments, QuantityUnit, TxMetadataMapIn, UTxOStatistics, Units }
+import iog.psg.bcc.util.StubApiRequestExecutor.{ api, json, walletId }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, ResourceFiles, StubApiRequestExecutor }
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+
+class FeeEstimateCacheSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with Eventually
+    with ResourceFiles
+    with CustomPatienceConfiguration {
+
+  private implicit val as: ActorSystem = ActorSystem("fee-estimate-cache-test-system")
+  private implicit val ec: ExecutionContext = as.dispatcher
+
+  private def payments(amounts: Long*): Payments =
+    Payments(amounts.map(amount => Payment("addr1", QuantityUnit(amount, Units.entropic))))
+
+  /**
+   * A wallet estimating a fee of `fee`, counting the estimates, optionally held until `release` completes.
+   */
+  private class Wallet extends StubApiRequestExecutor {
+    val fee = new AtomicLong(100)
+    val estimates = new AtomicInteger()
+    @volatile var utxoTotal = 1000L
+    @volatile var release: Future[Unit] = Future.unit
+
+    override protected def respond(request: HttpRequest): Future[HttpResponse] = {
+      val path = request.uri.path.toString()
+      if (path.endsWith("payment-fees") || path.endsWith("delegation-fees")) {
+        estimates.incrementAndGet()
+        val estimated = fee.get()
+        release.map(_ => json(EstimateFeeResponse(QuantityUnit(estimated, Units.entropic), QuantityUnit(estimated + 10, Units.entropic))))
+      } else if (path.endsWith("statistics/utxos"))
+        Future.successful(json(UTxOStatistics(QuantityUnit(utxoTotal, Units.entropic), "log10", Map.empty)))
+      else Future.successful(json(jsonFileCreatedTransactionsResponse.head))
+    }
+  }
+
+  private def minFee(response: BccApiResponse[EstimateFeeResponse]) = response.map(_.estimatedMin.quantity)
+
+  "FeeEstimateCache" should "answer payments of the same shape from the cache" in {
+    implicit val wallet: Wallet = new Wallet
+    val cache = new FeeEstimateCache(api)
+
+    minFee(cache.estimateFee(walletId, payments(1000000)).futureValue) shouldBe Right(100)
+    wallet.fee.set(200)
+    minFee(cache.estimateFee(walletId, payments(1000001)).futureValue) shouldBe Right(100)
+    minFee(cache.estimateFee(walletId, payments(1000000, 1)).futureValue) shouldBe Right(200)
+    minFee(cache.estimateFee(walletId, payments(4000000)).futureValue) shouldBe Right(200)
+
+    wallet.estimates.get() shouldBe 3
+    cache.stats shouldBe FeeEstimateCache.Stats(hits = 1, misses = 3, refreshes = 0, invalidations = 0, size = 3)
+  }
+
+  it should "tell the metadata sizes apart" in {
+    implicit val wallet: Wallet = new Wallet
+    val cache = new FeeEstimateCache(api)
+    val small = Some(TxMetadataMapIn(Map(1L -> MetadataValueStr("a"))))
+    val large = Some(TxMetadataMapIn(Map(1L -> MetadataValueStr("a" * 500))))
+
+    cache.estimateFee(walletId, payments(1000), metadata = small).futureValue
+    cache.estimateFee(walletId, payments(1000), metadata = small).futureValue
+    cache.estimateFee(walletId, payments(1000), metadata = large).futureValue
+
+    wallet.estimates.get() shouldBe 2
+  }
+
+  it should "estimate a shape once for concurrent calls" in {
+    implicit val wallet: Wallet = new Wallet
+    val released = Promise[Unit]()
+    wallet.release = released.future
+    val cache = new FeeEstimateCache(api)
+
+    val estimates = (1 to 10).map(_ => cache.estimateFee(walletId, payments(1000)))
+    released.success(())
+
+    Future.sequence(estimates).futureValue.map(minFee).distinct shouldBe Seq(Right(100))
+    wallet.estimates.get() shouldBe 1
+  }
+
+  it should "return the estimate and refresh it in the background before it expires" in {
+    implicit val wallet: Wallet = new Wallet
+    val cache = new FeeEstimateCache(api, FeeEstimateCache.Settings(ttl = 5.seconds, refreshAhead = 4900.millis))
+
+    cache.estimateFee(walletId, payments(1000)).futureValue
+    wallet.fee.set(200)
+    Thread.sleep(200)
+
+    minFee(cache.estimateFee(walletId, payments(1000)).futureValue) shouldBe Right(100)
+    eventually(minFee(cache.estimateFee(walletId, payments(1000)).futureValue) shouldBe Right(200))
+    cache.stats.refreshes should be >= 1L
+  }
+
+  it should "drop the estimates of a wallet after a transaction" in {
+    implicit val wallet: Wallet = new Wallet
+    val cache = new FeeEstimateCache(api)
+
+    cache.estimateFee(walletId, payments(1000)).futureValue
+    cache.estimateFeeStakePool(walletId).futureValue
+    cache.estimateFee("other-wallet", payments(1000)).futureValue
+
+    cache.createTransaction(walletId, "passphrase", payments(1000)).futureValue.isRight shouldBe true
+    cache.stats.size shouldBe 1
+
+    cache.estimateFeeStakePool(walletId).futureValue
+    wallet.estimates.get() shouldBe 4
+  }
+
+  it should "drop the estimates of a wallet when its UTxO statistics change" in {
+    implicit val wallet: Wallet = new Wallet
+    val cache = new FeeEstimateCache(api)
+
+    cache.getUTxOsStatistics(walletId).futureValue
+    cache.estimateFee(walletId, payments(1000)).futureValue
+    cache.getUTxOsStatistics(walletId).futureValue
+    cache.stats.size shouldBe 1
+
+    wallet.utxoTotal = 2000
+    cache.getUTxOsStatistics(walletId).futureValue
+    cache.stats.size shouldBe 0
+  }
+
+  it should "not keep errors" in {
+    implicit val failing: ApiRequestExecutor = StubApiRequestExecutor.failing(ErrorMessage("Not enough money", "403"))
+    val cache = new FeeEstimateCache(api)
+
+    cache.estimateFee(walletId, payments(1000)).futureValue shouldBe Left(ErrorMessage("Not enough money", "403"))
+    cache.stats.size shouldBe 0
+  }
+}
@@ -0,0 +1,71 @@
+package iog.psg.bcc
+
+import java.lang.management.ManagementFactory
+
+import akka.actor.ActorSystem
+import iog.psg.bcc.metrics.ApiMetrics.Phase
+import iog.psg.bcc.metrics.{ ApiMetricsJmx, InMemoryApiMetrics }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, DummyModel, InMemoryBccApi, ResourceFiles }
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+class MetricsApiRequestExecutorSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with InMemoryBccApi
+    with ResourceFiles
+    with DummyModel
+    with CustomPatienceConfiguration {
+
+  override implicit val as: ActorSystem = ActorSystem("metrics-executor-test-system")
+
+  private lazy val api = BccApi(baseUrl)
+
+  private val getWalletEndpoint = "GET /wallets/{id}"
+
+  "MetricsApiRequestExecutor" should "record latencies, bytes and errors per endpoint" in {
+    val metrics = new InMemoryApiMetrics
+    val executor = new MetricsApiRequestExecutor(inMemoryExecutor, metrics)
+
+    executor.execute(api.getWallet(wallet.id)).futureValue shouldBe Right(wallet)
+    executor.execute(api.getWallet("invalid_wallet_id")).futureValue.isLeft shouldBe true
+    executor.execute(api.networkInfo).futureValue shouldBe Right(networkInfo)
+
+    val snapshot = metrics.snapshot
+    snapshot.endpoints.keySet shouldBe Set(getWalletEndpoint, "GET /network/information")
+
+    val walletMetrics = snapshot.endpoints(getWalletEndpoint)
+    walletMetrics.latency(Phase.headers).map(_.count) shouldBe Some(2)
+    walletMetrics.latency(Phase.decode).map(_.count) shouldBe Some(2)
+    walletMetrics.latency(Phase.connect) shouldBe None
+    walletMetrics.errors shouldBe Map("404" -> 1)
+    walletMetrics.inFlight shouldBe 0
+    walletMetrics.bytesReceived should be > 0L
+  }
+
+  it should "export the metrics over JMX" in {
+    val metrics = new InMemoryApiMetrics
+    val executor = new MetricsApiRequestExecutor(inMemoryExecutor, metrics)
+    executor.execute(api.getWallet("invalid_wallet_id")).futureValue.isLeft shouldBe true
+
+    val name = ApiMetricsJmx.register(metrics, "iog.psg.bcc:type=ApiMetrics,name=MetricsApiRequestExecutorSpec")
+    try {
+      val server = ManagementFactory.getPlatformMBeanServer
+      server.getAttribute(name, s"$getWalletEndpoint errors 404") shouldBe 1L
+      server.getAttribute(name, s"$getWalletEndpoint headers count") shouldBe 1L
+    } finally ApiMetricsJmx.unregister(name)
+  }
+
+  "InMemoryApiMetrics" should "report quantiles within a bucket of the recorded latencies" in {
+    val metrics = new InMemoryApiMetrics
+    (1 to 1000).foreach(i => metrics.recordLatency("GET /test", Phase.headers, i * 1000L))
+
+    val histogram = metrics.snapshot.endpoints("GET /test").latency(Phase.headers).get
+    histogram.count shouldBe 1000
+    histogram.maxNanos shouldBe 1000000L
+    histogram.p50Nanos.toDouble shouldBe 500000.0 +- 500000 * 0.125
+    histogram.p99Nanos.toDouble shouldBe 990000.0 +- 990000 * 0.125
+  }
+}
@@ -0,0 +1,144 @@
+package iog.psg.bcc
+
+import java.util.concurrent.atomic.{ AtomicInteger, AtomicLong }
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpRequest, HttpResponse }
+import akka.stream.scaladsl.{ Sink, Source }
+import iog.psg.bcc.BccApi.ErrorMessage
+import iog.psg.bcc.BccApiCodec.NetworkInfo
+import iog.psg.bcc.util.StubApiRequestExecutor.{ api, error, json }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, ResourceFiles, StubApiRequestExecutor }
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{ ExecutionContext, Future }
+
+class NetworkTipPollerSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with Eventually
+    with ResourceFiles
+    with CustomPatienceConfiguration {
+
+  private implicit val as: ActorSystem = ActorSystem("network-tip-poller-test-system")
+  private implicit val ec: ExecutionContext = as.dispatcher
+
+  private val settings = NetworkTipPoller.Settings(interval = 20.millis)
+
+  /**
+   * A node at slot `slot`, moving to the next slot on every read while `advancing`, counting the network
+   * information requests.
+   */
+  private class Node extends StubApiRequestExecutor {
+    val slot = new AtomicLong(1)
+    val reads = new AtomicInteger()
+    @volatile var failing = false
+    @volatile var advancing = false
+
+    override protected def respond(request: HttpRequest): Future[HttpResponse] = {
+      reads.incrementAndGet()
+      val response =
+        if (failing) error(ErrorMessage("Node not responding", "503"))
+        else {
+          val info = decodeJsonFile[NetworkInfo]("netinfo.json")
+          val slotNumber = if (advancing) slot.incrementAndGet() else slot.get()
+          json(info.copy(nodeTip = info.nodeTip.copy(slotNumber = slotNumber)))
+        }
+      Future.successful(response)
+    }
+  }
+
+  "NetworkTipPoller" should "keep the latest status" in {
+    implicit val node: Node = new Node
+    val poller = new NetworkTipPoller(api, settings)
+
+    eventually(poller.latest.map(_.nodeTip.slotNumber) shouldBe Some(1))
+    node.slot.set(2)
+    eventually(poller.getLatest.get.nodeTip.slotNumber shouldBe 2)
+    poller.close()
+  }
+
+  it should "publish only the statuses that changed" in {
+    implicit val node: Node = new Node
+    val poller = new NetworkTipPoller(api, settings)
+    eventually(poller.latest should not be empty)
+
+    val slots = poller.statuses.map(_.nodeTip.slotNumber).take(3).runWith(Sink.seq)
+    eventually(node.reads.get() should be >= 5)
+    node.slot.set(2)
+    eventually(poller.latest.map(_.nodeTip.slotNumber) shouldBe Some(2))
+    node.slot.set(3)
+
+    slots.futureValue shouldBe Seq(1, 2, 3)
+    poller.close()
+  }
+
+  it should "start with the status current when the statuses are run, not when they were built" in {
+    implicit val node: Node = new Node
+    node.failing = true
+    val poller = new NetworkTipPoller(api, settings)
+    val statuses = poller.statuses
+
+    node.failing = false
+    eventually(poller.latest should not be empty)
+
+    statuses.runWith(Sink.head).futureValue.nodeTip.slotNumber shouldBe 1
+    poller.close()
+  }
+
+  it should "read the network information once per interval for all its subscribers" in {
+    implicit val node: Node = new Node
+    val poller = new NetworkTipPoller(api, NetworkTipPoller.Settings(interval = 200.millis))
+
+    val subscribers = (1 to 10).map(_ => poller.statuses.take(1).runWith(Sink.head))
+    subscribers.foreach(_.futureValue.nodeTip.slotNumber shouldBe 1)
+    val publisher = Source.fromPublisher(poller.publisher).runWith(Sink.head)
+    publisher.futureValue.nodeTip.slotNumber shouldBe 1
+
+    node.reads.get() should be <= 3
+    poller.close()
+  }
+
+  it should "not hold back a subscriber behind one that stalled" in {
+    implicit val node: Node = new Node
+    val poller = new NetworkTipPoller(api, NetworkTipPoller.Settings(interval = 1.millis, bufferSize = 4))
+    eventually(poller.latest should not be empty)
+
+    // never subscribed to, so never requests a status
+    val stalled = poller.publisher
+    val slots = poller.statuses.map(_.nodeTip.slotNumber).take(60).runWith(Sink.seq)
+    node.advancing = true
+
+    val received = slots.futureValue
+    received.size shouldBe 60
+    received shouldBe received.sorted
+    poller.close()
+  }
+
+  it should "keep the last status while the reads fail" in {
+    implicit val node: Node = new Node
+    val poller = new NetworkTipPoller(api, settings)
+    eventually(poller.latest should not be empty)
+
+    node.failing = true
+    val reads = node.reads.get()
+    eventually(node.reads.get() should be > reads + 2)
+    poller.latest.map(_.nodeTip.slotNumber) shouldBe Some(1)
+    poller.close()
+  }
+
+  it should "complete the subscribers' streams when closed" in {
+    implicit val node: Node = new Node
+    val poller = new NetworkTipPoller(api, settings)
+
+    eventually(poller.latest should not be empty)
+    val statuses = poller.statuses.runWith(Sink.seq)
+    poller.close()
+
+    statuses.futureValue.map(_.nodeTip.slotNumber) shouldBe Seq(1)
+  }
+}
@@ -0,0 +1,161 @@
+package iog.psg.bcc
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpEntity, HttpRequest, HttpResponse }
+import io.circe.parser.parse
+import iog.psg.bcc.BccApi.ErrorMessage
+import iog.psg.bcc.BccApiCodec.ImplicitCodecs.encodeCreateTransactionResponse
+import iog.psg.bcc.BccApiCodec.{ Payment, QuantityUnit, Units }
+import iog.psg.bcc.util.StubApiRequestExecutor.{ api, error, json, walletId }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, ResourceFiles, StubApiRequestExecutor }
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.jdk.CollectionConverters.CollectionHasAsScala
+
+class PaymentAggregatorSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with Eventually
+    with ResourceFiles
+    with CustomPatienceConfiguration {
+
+  private implicit val as: ActorSystem = ActorSystem("payment-aggregator-test-system")
+  private implicit val ec: ExecutionContext = as.dispatcher
+
+  private def payment(address: String) = Payment(address, QuantityUnit(1000000, Units.entropic))
+
+  /**
+   * A wallet keeping the addresses paid by each transaction, rejecting transactions paying to `rejected`.
+   */
+  private class Wallet(rejected: String = "rejected") extends StubApiRequestExecutor {
+    val sent = new ConcurrentLinkedQueue[Seq[String]]()
+
+    override protected def respond(request: HttpRequest): Future[HttpResponse] = {
+      val body = parse(request.entity.asInstanceOf[HttpEntity.Strict].data.utf8String).toOption.get
+      val addresses = body.hcursor.downField("payments").values.get.flatMap(_.hcursor.get[String]("address").toOption).toSeq
+      sent.add(addresses)
+      val response =
+        if (addresses.contains(rejected)) error(ErrorMessage("Output below the minimum UTxO value", "utxo_too_small"))
+        else json(jsonFileCreatedTransactionsResponse.head.copy(id = addresses.mkString("+")))
+      Future.successful(response)
+    }
+
+    def transactions: Seq[Seq[String]] = sent.asScala.toSeq
+  }
+
+  "PaymentAggregator" should "send the payments of a window in one transaction" in {
+    implicit val wallet: Wallet = new Wallet
+    val aggregator = new PaymentAggregator(api, PaymentAggregator.Settings(window = 200.millis))
+
+    val submitted = (1 to 5).map(i => aggregator.submit(walletId, "passphrase", payment(s"addr$i")))
+    val ids = Future.sequence(submitted).futureValue.map(_.map(_.id))
+
+    ids.distinct shouldBe Seq(Right("addr1+addr2+addr3+addr4+addr5"))
+    wallet.transactions shouldBe Seq((1 to 5).map(i => s"addr$i"))
+    aggregator.stats shouldBe PaymentAggregator.Stats(submitted = 5, transactions = 1, splits = 0)
+  }
+
+  it should "send a transaction once the count limit is reached" in {
+    implicit val wallet: Wallet = new Wallet
+    val aggregator = new PaymentAggregator(api, PaymentAggregator.Settings(maxPayments = 2, window = 1.hour))
+
+    val submitted = (1 to 4).map(i => aggregator.submit(walletId, "passphrase", payment(s"addr$i")))
+
+    Future.sequence(submitted).futureValue.map(_.map(_.id)) shouldBe
+      Seq("addr1+addr2", "addr1+addr2", "addr3+addr4", "addr3+addr4").map(Right(_))
+  }
+
+  it should "send a transaction once the size limit is reached" in {
+    implicit val wallet: Wallet = new Wallet
+    val address = "a" * 100
+    val aggregator = new PaymentAggregator(api, PaymentAggregator.Settings(maxOutputBytes = 300, window = 1.hour))
+
+    val submitted = (1 to 3).map(_ => aggregator.submit(walletId, "passphrase", payment(address)))
+
+    Future.sequence(submitted).futureValue.forall(_.isRight) shouldBe true
+    wallet.transactions.map(_.size) shouldBe Seq(3)
+  }
+
+  it should "split a rejected batch until the other payments get through" in {
+    implicit val wallet: Wallet = new Wallet
+    val aggregator = new PaymentAggregator(api, PaymentAggregator.Settings(maxPayments = 4, window = 1.hour))
+
+    val submitted = Seq("addr1", "addr2", "rejected", "addr4").map(address => aggregator.submit(walletId, "passphrase", payment(address)))
+    val results = Future.sequence(submitted).futureValue
+
+    results.map(_.map(_.id)) shouldBe Seq(
+      Right("addr1+addr2"),
+      Right("addr1+addr2"),
+      Left(ErrorMessage("Output below the minimum UTxO value", "utxo_too_small")),
+      Right("addr4")
+    )
+    aggregator.stats.splits shouldBe 2
+  }
+
+  it should "return the errors a smaller batch would get too to all the payments of the batch" in {
+    Seq(
+      ErrorMessage("The given encryption passphrase doesn't match", "wrong_encryption_passphrase"),
+      StubApiRequestExecutor.walletNotFound,
+      ErrorMessage("Service unavailable", "503")
+    ).foreach { error =>
+      implicit val failing: StubApiRequestExecutor = StubApiRequestExecutor.failing(error)
+      val aggregator = new PaymentAggregator(api, PaymentAggregator.Settings(maxPayments = 4, window = 1.hour))
+
+      val submitted = (1 to 4).map(i => aggregator.submit(walletId, "passphrase", payment(s"addr$i")))
+
+      Future.sequence(submitted).futureValue shouldBe Seq.fill(4)(Left(error))
+      failing.requests.size shouldBe 1
+      aggregator.stats.splits shouldBe 0
+    }
+  }
+
+  it should "keep the batches of each wallet and passphrase apart" in {
+    implicit val wallet: Wallet = new Wallet
+    val aggregator = new PaymentAggregator(api, PaymentAggregator.Settings(window = 1.hour))
+
+    val submitted = Seq(
+      aggregator.submit(walletId, "passphrase", payment("addr1")),
+      aggregator.submit("other-wallet", "passphrase", payment("addr2")),
+      aggregator.submit(walletId, "other-passphrase", payment("addr3"))
+    )
+    aggregator.flush()
+
+    Future.sequence(submitted).futureValue.map(_.map(_.id)) shouldBe Seq("addr1", "addr2", "addr3").map(Right(_))
+  }
+
+  it should "remove the batches once their payments are sent" in {
+    implicit val wallet: Wallet = new Wallet
+    val aggregator = new PaymentAggregator(api, PaymentAggregator.Settings(window = 1.hour))
+
+    val first = (1 to 3).map(i => aggregator.submit(s"wallet$i", "passphrase", payment(s"addr$i")))
+    aggregator.batchCount shouldBe 3
+    aggregator.flush()
+    Future.sequence(first).futureValue.map(_.map(_.id)) shouldBe Seq("addr1", "addr2", "addr3").map(Right(_))
+    eventually(aggregator.batchCount shouldBe 0)
+
+    val second = aggregator.submit("wallet1", "passphrase", payment("addr4"))
+    aggregator.batchCount shouldBe 1
+    aggregator.flush()
+    second.futureValue.map(_.id) shouldBe Right("addr4")
+    eventually(aggregator.batchCount shouldBe 0)
+  }
+
+  it should "send the queued payments when closed and refuse new ones" in {
+    implicit val wallet: Wallet = new Wallet
+    val aggregator = new PaymentAggregator(api, PaymentAggregator.Settings(window = 1.hour))
+
+    val queued = aggregator.submit(walletId, "passphrase", payment("addr1"))
+    aggregator.close()
+
+    queued.futureValue.map(_.id) shouldBe Right("addr1")
+    aggregator.submit(walletId, "passphrase", payment("addr2")).futureValue.left.map(_.code) shouldBe
+      Left(PaymentAggregator.AggregatorClosedCode)
+  }
+}
@@ -0,0 +1,114 @@
+package iog.psg.bcc
+
+import java.util.concurrent.atomic.{ AtomicBoolean, AtomicInteger }
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpResponse, StatusCodes }
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, DummyModel, InMemoryBccApi, ResourceFiles }
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{ ExecutionContext, Future }
+
+class RetryingApiRequestExecutorSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with InMemoryBccApi
+    with ResourceFiles
+    with DummyModel
+    with CustomPatienceConfiguration {
+
+  override implicit val as: ActorSystem = ActorSystem("retrying-executor-test-system")
+
+  private lazy val api = BccApi(baseUrl)
+
+  private val fastSettings = RetryingApiRequestExecutor.Settings(minBackoff = 1.milli, maxBackoff = 5.millis)
+
+  private class FlakyExecutor(failures: Int) extends ApiRequestExecutor {
+    val count = new AtomicInteger()
+    val stallNext = new AtomicBoolean()
+
+    override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] =
+      if (count.incrementAndGet() <= failures) request.mapper(HttpResponse(StatusCodes.ServiceUnavailable))
+      else if (stallNext.getAndSet(false)) Future.never
+      else inMemoryExecutor.execute(request)
+  }
+
+  "RetryingApiRequestExecutor" should "retry reads answered with a retryable status" in {
+    val backend = new FlakyExecutor(failures = 2)
+    val executor = new RetryingApiRequestExecutor(backend, fastSettings)
+
+    executor.execute(api.getWallet(wallet.id)).futureValue shouldBe Right(wallet)
+    backend.count.get() shouldBe 3
+    executor.stats.retries shouldBe 2
+  }
+
+  it should "give up after max retries" in {
+    val backend = new FlakyExecutor(failures = 10)
+    val executor = new RetryingApiRequestExecutor(backend, fastSettings)
+
+    executor.execute(api.getWallet(wallet.id)).futureValue.isLeft shouldBe true
+    backend.count.get() shouldBe 3
+  }
+
+  it should "not retry writes" in {
+    val backend = new FlakyExecutor(failures = 1)
+    val executor = new RetryingApiRequestExecutor(backend, fastSettings)
+
+    executor.execute(api.updateName(wallet.id, "new name").futureValue).futureValue.isLeft shouldBe true
+    backend.count.get() shouldBe 1
+  }
+
+  it should "pass the lists of transactions through, so they can be streamed" in {
+    val backend = new FlakyExecutor(failures = 1)
+    val executor = new RetryingApiRequestExecutor(backend, fastSettings)
+
+    executor.execute(api.listTransactionsStream(wallet.id)).futureValue
+    executor.execute(api.listTransactions(wallet.id)).futureValue.map(_.map(_.id)) shouldBe Right(transactionsIdsDesc)
+
+    backend.count.get() shouldBe 2
+    executor.stats.retries shouldBe 0
+  }
+
+  it should "keep the jittered backoff within max backoff" in {
+    val executor = new RetryingApiRequestExecutor(
+      new FlakyExecutor(failures = 0),
+      RetryingApiRequestExecutor.Settings(minBackoff = 100.millis, maxBackoff = 1.second, randomFactor = 0.5)
+    )
+
+    (1 to 100).foreach { _ =>
+      executor.backoff(0) should (be >= 100.millis and be <= 150.millis)
+      executor.backoff(10) shouldBe 1.second
+    }
+  }
+
+  it should "stop retrying once the retry budget is spent" in {
+    val backend = new FlakyExecutor(failures = 10)
+    val executor = new RetryingApiRequestExecutor(backend, fastSettings.copy(budgetRatio = 0, maxBudget = 1))
+
+    executor.execute(api.getWallet(wallet.id)).futureValue.isLeft shouldBe true
+    executor.execute(api.getWallet(wallet.id)).futureValue.isLeft shouldBe true
+
+    backend.count.get() shouldBe 3
+    executor.stats.retries shouldBe 1
+    executor.stats.budgetRejections shouldBe 2
+  }
+
+  it should "hedge a request stalled past the usual latency of its endpoint" in {
+    val backend = new FlakyExecutor(failures = 0)
+    val executor = new RetryingApiRequestExecutor(backend, fastSettings.copy(minHedgeSamples = 5).withHedging(0.95))
+
+    (1 to 5).foreach(_ => executor.execute(api.getWallet(wallet.id)).futureValue shouldBe Right(wallet))
+    executor.stats.hedges shouldBe 0
+
+    backend.stallNext.set(true)
+    executor.execute(api.getWallet(wallet.id)).futureValue shouldBe Right(wallet)
+
+    executor.stats.hedges shouldBe 1
+    executor.stats.hedgeWins shouldBe 1
+  }
+}
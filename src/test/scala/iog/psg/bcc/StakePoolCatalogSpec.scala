@@ -0,0 +1,160 @@
+package iog.psg.bcc
+
+import java.time.{ ZoneOffset, ZonedDateTime }
+import java.util.concurrent.atomic.AtomicInteger
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpRequest, HttpResponse }
+import iog.psg.bcc.BccApi.ErrorMessage
+import iog.psg.bcc.BccApiCodec.ImplicitCodecs.encodeStakePool
+import iog.psg.bcc.BccApiCodec.{ NetworkInfo, NextEpoch, QuantityUnit, StakePool, Units }
+import iog.psg.bcc.util.StubApiRequestExecutor.{ api, json }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, ResourceFiles, StubApiRequestExecutor }
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{ ExecutionContext, Future }
+
+class StakePoolCatalogSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with Eventually
+    with ResourceFiles
+    with CustomPatienceConfiguration {
+
+  private implicit val as: ActorSystem = ActorSystem("stake-pool-catalog-test-system")
+  private implicit val ec: ExecutionContext = as.dispatcher
+
+  private def pool(id: String, rewards: Long, saturation: Double, retirementEpoch: Option[Long] = None): StakePool = {
+    val template = jsonFileStakePoolsResponse.head
+    template.copy(
+      id = id,
+      metrics = template.metrics.copy(nonMyopicMemberRewards = QuantityUnit(rewards, Units.entropic), saturation = saturation),
+      retirement = retirementEpoch.map(NextEpoch(ZonedDateTime.parse("2030-01-01T00:00:00Z"), _))
+    )
+  }
+
+  private val pools = Seq(
+    pool("pool-a", rewards = 100, saturation = 0.5),
+    pool("pool-b", rewards = 400, saturation = 1.2),
+    pool("pool-c", rewards = 300, saturation = 0.9),
+    pool("pool-d", rewards = 200, saturation = 0.3, retirementEpoch = Some(20)),
+    pool("pool-e", rewards = 250, saturation = 0.7)
+  )
+
+  /**
+   * Lists the pools, and a network information whose next epoch starts at `nextEpochStart`.
+   */
+  private class PoolsExecutor(nextEpochStart: ZonedDateTime = ZonedDateTime.now(ZoneOffset.UTC).plusDays(1)) extends StubApiRequestExecutor {
+    val listings = new AtomicInteger()
+
+    override protected def respond(request: HttpRequest): Future[HttpResponse] = {
+      val response =
+        if (request.uri.path.toString().endsWith("stake-pools")) {
+          listings.incrementAndGet()
+          json(pools)
+        } else {
+          val info = decodeJsonFile[NetworkInfo]("netinfo.json")
+          json(info.copy(nextEpoch = Some(NextEpoch(nextEpochStart, 15))))
+        }
+      Future.successful(response)
+    }
+  }
+
+  "StakePoolCatalog" should "rank the pools by reward without another listing" in {
+    implicit val executor: PoolsExecutor = new PoolsExecutor
+    val catalog = new StakePoolCatalog(api)
+
+    val snapshot = catalog.snapshot(1000).futureValue.toOption.get
+    catalog.snapshot(1000).futureValue.toOption.get shouldBe theSameInstanceAs(snapshot)
+
+    snapshot.topIdsByReward(3) shouldBe Seq("pool-b", "pool-c", "pool-e")
+    snapshot.topIdsByReward(3, maxSaturation = 1.0) shouldBe Seq("pool-c", "pool-e", "pool-a")
+    snapshot.countBySaturation(0.8) shouldBe 3
+    executor.listings.get() shouldBe 1
+  }
+
+  it should "fill the indexes of the top pools" in {
+    implicit val executor: PoolsExecutor = new PoolsExecutor
+    val snapshot = new StakePoolCatalog(api).snapshot(1000).futureValue.toOption.get
+
+    val top = new Array[Int](10)
+    val written = snapshot.topByReward(maxSaturation = 1.0, includeRetiring = true, top)
+
+    written shouldBe 4
+    top.take(written).map(snapshot.id).toSeq shouldBe Seq("pool-c", "pool-e", "pool-d", "pool-a")
+    snapshot.retirementEpoch(top(2)) shouldBe 20
+  }
+
+  it should "look up pools by id" in {
+    implicit val executor: PoolsExecutor = new PoolsExecutor
+    val snapshot = new StakePoolCatalog(api).snapshot(1000).futureValue.toOption.get
+
+    val index = snapshot.indexOf("pool-c")
+    snapshot.id(index) shouldBe "pool-c"
+    snapshot.nonMyopicMemberRewards(index) shouldBe 300
+    snapshot.saturation(index) shouldBe 0.9
+    snapshot.ticker(index) shouldBe jsonFileStakePoolsResponse.head.metadata.get.ticker
+    snapshot.cost(index) shouldBe jsonFileStakePoolsResponse.head.cost.quantity
+    snapshot.indexOf("unknown") shouldBe -1
+  }
+
+  it should "list the pools again once the next epoch starts" in {
+    implicit val executor: PoolsExecutor = new PoolsExecutor(ZonedDateTime.now(ZoneOffset.UTC).plusNanos(300.millis.toNanos))
+    val catalog = new StakePoolCatalog(api, StakePoolCatalog.Settings(ttl = 1.hour))
+
+    val first = catalog.snapshot(1000).futureValue.toOption.get
+    first.expiresAtMillis should be < first.listedAtMillis + 1.hour.toMillis
+
+    eventually {
+      catalog.snapshot(1000).futureValue.toOption.get should not be theSameInstanceAs(first)
+    }
+    executor.listings.get() should be >= 2
+  }
+
+  it should "list the pools again after the ttl" in {
+    implicit val executor: PoolsExecutor = new PoolsExecutor
+    val catalog = new StakePoolCatalog(api, StakePoolCatalog.Settings(ttl = 100.millis, refreshOnEpoch = false))
+
+    val first = catalog.snapshot(1000).futureValue.toOption.get
+    eventually {
+      catalog.snapshot(1000).futureValue.toOption.get should not be theSameInstanceAs(first)
+    }
+  }
+
+  it should "keep one snapshot per bucket of stake amounts" in {
+    implicit val executor: PoolsExecutor = new PoolsExecutor
+    val catalog = new StakePoolCatalog(api)
+
+    val first = catalog.snapshot(1000).futureValue.toOption.get
+    first.stake shouldBe 940
+    catalog.snapshot(960).futureValue.toOption.get shouldBe theSameInstanceAs(first)
+    catalog.snapshot(2000).futureValue.map(_.stake) shouldBe Right(1879)
+    executor.listings.get() shouldBe 2
+  }
+
+  it should "list the pools for the amount asked with one bucket per amount" in {
+    implicit val executor: PoolsExecutor = new PoolsExecutor
+    val catalog = new StakePoolCatalog(api, StakePoolCatalog.Settings(bucketsPerDoubling = 1 << 20))
+
+    catalog.snapshot(1000).futureValue.map(_.stake) shouldBe Right(1000)
+    catalog.snapshot(1001).futureValue.map(_.stake) shouldBe Right(1001)
+  }
+
+  it should "refuse a negative number of top pools" in {
+    implicit val executor: PoolsExecutor = new PoolsExecutor
+    val snapshot = new StakePoolCatalog(api).snapshot(1000).futureValue.toOption.get
+
+    an[IllegalArgumentException] should be thrownBy snapshot.topIdsByReward(-1)
+    snapshot.topIdsByReward(0) shouldBe empty
+  }
+
+  it should "return the error of the first listing" in {
+    implicit val failing: ApiRequestExecutor = StubApiRequestExecutor.failing(ErrorMessage("Invalid stake parameter", "400"))
+
+    new StakePoolCatalog(api).snapshot(-1).futureValue shouldBe Left(ErrorMessage("Invalid stake parameter", "400"))
+  }
+}
@@ -0,0 +1,249 @@
+package iog.psg.bcc
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.{ Files, Path, StandardOpenOption }
+import java.time.ZonedDateTime
+import java.util.Comparator
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpRequest, HttpResponse }
+import iog.psg.bcc.BccApi.{ ErrorMessage, Order }
+import iog.psg.bcc.BccApiCodec.ImplicitCodecs.encodeCreateTransactionResponse
+import iog.psg.bcc.BccApiCodec.{ CreateTransactionResponse, TxState }
+import iog.psg.bcc.store.TransactionStore
+import iog.psg.bcc.store.TransactionStore.SyncResult
+import iog.psg.bcc.util.StubApiRequestExecutor.{ api, json, response, walletId, walletNotFound }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, ResourceFiles, StubApiRequestExecutor }
+import org.scalatest.BeforeAndAfterAll
+import org.scalatest.concurrent.ScalaFutures
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.jdk.StreamConverters._
+
+class TransactionStoreSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with ResourceFiles
+    with BeforeAndAfterAll
+    with CustomPatienceConfiguration {
+
+  private implicit val as: ActorSystem = ActorSystem("transaction-store-test-system")
+  private implicit val ec: ExecutionContext = as.dispatcher
+
+  private val directories = Seq.newBuilder[Path]
+
+  private def newDirectory(): Path = {
+    val directory = Files.createTempDirectory("transaction-store")
+    directories += directory
+    directory
+  }
+
+  override def afterAll(): Unit = {
+    directories.result().foreach { directory =>
+      Files.walk(directory).toScala(Seq).sorted(Ordering.comparatorToOrdering(Comparator.reverseOrder[Path]())).foreach(Files.delete)
+    }
+    as.terminate()
+    super.afterAll()
+  }
+
+  private def inLedger(transaction: CreateTransactionResponse, time: String): CreateTransactionResponse = {
+    val block = transaction.insertedAt.orElse(transaction.pendingSince).get.copy(time = ZonedDateTime.parse(time))
+    transaction.copy(insertedAt = Some(block), pendingSince = None, status = TxState.inLedger)
+  }
+
+  private def pending(transaction: CreateTransactionResponse, time: String): CreateTransactionResponse = {
+    val block = transaction.pendingSince.get.copy(time = ZonedDateTime.parse(time))
+    transaction.copy(insertedAt = None, pendingSince = Some(block), status = TxState.pending)
+  }
+
+  private lazy val Seq(first, second, third) = jsonFileCreatedTransactionsResponse
+  private lazy val oldest = inLedger(first, "2000-01-02T03:04:05Z")
+  private lazy val latest = inLedger(second, "2020-01-02T03:04:05Z")
+  private lazy val waiting = pending(third, "2020-02-02T03:04:05Z")
+  private lazy val stale = pending(third, "2019-06-01T00:00:00Z")
+
+  /**
+   * Answers `listTransactions` with the transactions after the `start` parameter, and `getTransaction` by id.
+   */
+  private class WalletExecutor(@volatile var transactions: Seq[CreateTransactionResponse]) extends StubApiRequestExecutor {
+    @volatile var errors: Map[String, ErrorMessage] = Map.empty
+
+    override protected def respond(request: HttpRequest): Future[HttpResponse] = {
+      val path = request.uri.path.toString()
+      val answer =
+        if (path.endsWith("/transactions")) {
+          val start = request.uri.query().get("start").map(ZonedDateTime.parse(_).toInstant)
+          json(transactions.filter(tx => start.forall(from => !timeOf(tx).isBefore(from))).sortBy(timeOf))
+        } else {
+          val id = path.split('/').last
+          response(errors.get(id).map(Left(_)).getOrElse(transactions.find(_.id == id).toRight(ErrorMessage("Transaction not found", TransactionStore.TransactionNotFoundCode))))
+        }
+      Future.successful(answer)
+    }
+  }
+
+  private def timeOf(transaction: CreateTransactionResponse) =
+    transaction.insertedAt.orElse(transaction.pendingSince).get.time.toInstant
+
+  "TransactionLog" should "answer id and time range lookups" in {
+    val log = new TransactionStore(newDirectory()).wallet(walletId)
+
+    log.append(Seq(latest, oldest, waiting)) shouldBe Seq(latest, oldest, waiting)
+
+    log.size shouldBe 3
+    log.transaction(oldest.id) shouldBe Some(oldest)
+    log.transaction("unknown") shouldBe None
+    log.transactions() shouldBe Seq(waiting, latest, oldest)
+    log.transactions(order = Order.ascendingOrder) shouldBe Seq(oldest, latest, waiting)
+    log.transactions(
+      start = Some(ZonedDateTime.parse("2010-01-01T00:00:00Z")),
+      end = Some(ZonedDateTime.parse("2020-01-02T03:04:05Z"))
+    ) shouldBe Seq(latest)
+    log.highWaterMark.map(_.toInstant) shouldBe Some(timeOf(latest))
+    log.pending shouldBe Seq(waiting.id)
+  }
+
+  it should "only append new or changed transactions" in {
+    val log = new TransactionStore(newDirectory()).wallet(walletId)
+    log.append(Seq(oldest, waiting))
+
+    val confirmed = inLedger(waiting, "2020-03-01T00:00:00Z")
+    log.append(Seq(oldest, confirmed)) shouldBe Seq(confirmed)
+
+    log.size shouldBe 2
+    log.transaction(waiting.id) shouldBe Some(confirmed)
+    log.pending shouldBe empty
+    log.transactions() shouldBe Seq(confirmed, oldest)
+    log.highWaterMark.map(_.toInstant) shouldBe Some(timeOf(confirmed))
+  }
+
+  it should "recover the transactions from its segments" in {
+    val directory = newDirectory()
+    val store = new TransactionStore(directory, segmentSize = 4096)
+    store.wallet(walletId).append(Seq(oldest, latest, waiting))
+    store.wallet(walletId).append(Seq(inLedger(waiting, "2020-03-01T00:00:00Z")))
+    store.close()
+
+    val reopened = new TransactionStore(directory, segmentSize = 4096).wallet(walletId)
+
+    reopened.segmentCount should be > 1
+    reopened.transactions(order = Order.ascendingOrder) shouldBe Seq(oldest, latest, inLedger(waiting, "2020-03-01T00:00:00Z"))
+    reopened.pending shouldBe empty
+  }
+
+  it should "ignore a record torn by a crash" in {
+    val directory = newDirectory()
+    val store = new TransactionStore(directory)
+    store.wallet(walletId).append(Seq(oldest))
+    store.close()
+
+    // a length and a crc written after the last record, without the json they announce
+    val segment = directory.resolve(walletId).resolve("00000000.seg")
+    val channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.READ)
+    try {
+      val length = ByteBuffer.allocate(4)
+      channel.read(length, 0)
+      length.flip()
+      val torn = ByteBuffer.allocate(8).putInt(100).putInt(42)
+      torn.flip()
+      channel.write(torn, 8L + length.getInt())
+    } finally channel.close()
+
+    val reopened = new TransactionStore(directory).wallet(walletId)
+    reopened.transactions() shouldBe Seq(oldest)
+    reopened.append(Seq(latest)) shouldBe Seq(latest)
+    reopened.transactions() shouldBe Seq(latest, oldest)
+  }
+
+  it should "reject a wallet id which is not a directory name" in {
+    an[IllegalArgumentException] shouldBe thrownBy new TransactionStore(newDirectory()).wallet("../wallet")
+  }
+
+  "TransactionStore" should "fetch the whole history on the first sync" in {
+    implicit val executor: WalletExecutor = new WalletExecutor(Seq(oldest, latest, waiting))
+    val store = new TransactionStore(newDirectory())
+
+    store.sync(api, walletId).futureValue shouldBe Right(SyncResult(fetched = 3, refreshed = 0, appended = 3))
+
+    executor.requests.head.uri.query().get("start") shouldBe None
+    store.wallet(walletId).transactions() shouldBe Seq(waiting, latest, oldest)
+  }
+
+  it should "fetch from the high-water mark on and refresh the pending transactions" in {
+    implicit val executor: WalletExecutor = new WalletExecutor(Seq(oldest, stale, latest))
+    val store = new TransactionStore(newDirectory())
+    store.sync(api, walletId).futureValue
+
+    // the pending transaction entered the ledger before the high-water mark, it is not listed from it on
+    val confirmed = inLedger(stale, "2019-12-01T00:00:00Z")
+    val newest = inLedger(first.copy(id = "5423856bc9"), "2020-06-01T00:00:00Z")
+    executor.transactions = Seq(oldest, confirmed, latest, newest)
+    val firstSync = executor.requests.size
+
+    store.sync(api, walletId).futureValue shouldBe Right(SyncResult(fetched = 2, refreshed = 1, appended = 2))
+
+    val requests = executor.requests.drop(firstSync)
+    requests.head.uri.query().get("start").map(ZonedDateTime.parse(_).toInstant) shouldBe Some(timeOf(latest))
+    requests.last.uri.path.toString() should endWith(s"/transactions/${stale.id}")
+    store.wallet(walletId).transactions() shouldBe Seq(newest, latest, confirmed, oldest)
+    store.wallet(walletId).highWaterMark.map(_.toInstant) shouldBe Some(timeOf(newest))
+  }
+
+  it should "store a pending transaction the wallet forgot as expired and stop refreshing it" in {
+    implicit val executor: WalletExecutor = new WalletExecutor(Seq(oldest, latest, waiting))
+    val store = new TransactionStore(newDirectory())
+    store.sync(api, walletId).futureValue
+
+    executor.transactions = Seq(oldest, latest)
+
+    store.sync(api, walletId).futureValue shouldBe
+      Right(SyncResult(fetched = 1, refreshed = 0, appended = 1, forgotten = Seq(waiting.id)))
+    store.wallet(walletId).pending shouldBe empty
+    store.wallet(walletId).transaction(waiting.id).map(_.status) shouldBe Some(TxState.expired)
+
+    val secondSync = executor.requests.size
+    store.sync(api, walletId).futureValue shouldBe Right(SyncResult(fetched = 1, refreshed = 0, appended = 0))
+    executor.requests.drop(secondSync).map(_.uri.path.toString()).filter(_.endsWith(waiting.id)) shouldBe empty
+  }
+
+  it should "report a pending transaction whose refresh failed and refresh it again" in {
+    implicit val executor: WalletExecutor = new WalletExecutor(Seq(oldest, stale, latest))
+    val store = new TransactionStore(newDirectory())
+    store.sync(api, walletId).futureValue
+
+    val unavailable = ErrorMessage("Service unavailable", "503")
+    executor.errors = Map(stale.id -> unavailable)
+    store.sync(api, walletId).futureValue shouldBe
+      Right(SyncResult(fetched = 1, refreshed = 0, appended = 0, failed = Map(stale.id -> unavailable)))
+    store.wallet(walletId).pending shouldBe Seq(stale.id)
+
+    val confirmed = inLedger(stale, "2019-12-01T00:00:00Z")
+    executor.errors = Map.empty
+    executor.transactions = Seq(oldest, confirmed, latest)
+    store.sync(api, walletId).futureValue shouldBe Right(SyncResult(fetched = 1, refreshed = 1, appended = 1))
+    store.wallet(walletId).pending shouldBe empty
+  }
+
+  it should "keep refreshing a pending transaction answered by a bare 404" in {
+    implicit val executor: WalletExecutor = new WalletExecutor(Seq(oldest, stale, latest))
+    val store = new TransactionStore(newDirectory())
+    store.sync(api, walletId).futureValue
+
+    val notFound = ErrorMessage("Not found", "404")
+    executor.errors = Map(stale.id -> notFound)
+    store.sync(api, walletId).futureValue shouldBe
+      Right(SyncResult(fetched = 1, refreshed = 0, appended = 0, failed = Map(stale.id -> notFound)))
+    store.wallet(walletId).pending shouldBe Seq(stale.id)
+    store.wallet(walletId).transaction(stale.id).map(_.status) should not be Some(TxState.expired)
+  }
+
+  it should "return the error of the wallet" in {
+    implicit val executor: ApiRequestExecutor = StubApiRequestExecutor.failing()
+
+    new TransactionStore(newDirectory()).sync(api, walletId).futureValue shouldBe Left(walletNotFound)
+  }
+}
@@ -0,0 +1,159 @@
+package iog.psg.bcc
+
+import java.util.concurrent.atomic.{ AtomicInteger, AtomicLong }
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpRequest, HttpResponse }
+import akka.stream.scaladsl.Sink
+import iog.psg.bcc.BccApi.ErrorMessage
+import iog.psg.bcc.BccApiCodec.ImplicitCodecs.encodeCreateTransactionResponse
+import iog.psg.bcc.BccApiCodec.{ CreateTransactionResponse, NetworkInfo, QuantityUnit, TxState, Units }
+import iog.psg.bcc.BccApiCodec.TxState.TxState
+import iog.psg.bcc.util.StubApiRequestExecutor.{ api, json, response, walletId }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, ResourceFiles, StubApiRequestExecutor }
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.collection.concurrent.TrieMap
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{ ExecutionContext, Future }
+
+class TransactionWatcherSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with Eventually
+    with ResourceFiles
+    with CustomPatienceConfiguration {
+
+  private implicit val as: ActorSystem = ActorSystem("transaction-watcher-test-system")
+  private implicit val ec: ExecutionContext = as.dispatcher
+
+  private val settings = TransactionWatcher.Settings(tipPollInterval = 20.millis)
+
+  /**
+   * A node whose tip moves on every network information request, and a wallet returning the transactions
+   * of `transactions`, counting the fetches by id.
+   */
+  private class Node extends StubApiRequestExecutor {
+    val slot = new AtomicLong()
+    val transactions = TrieMap.empty[String, CreateTransactionResponse]
+    val fetches = TrieMap.empty[String, AtomicInteger]
+
+    def set(id: String, status: TxState, depth: Long = 0): Unit =
+      transactions.put(id, jsonFileCreatedTransactionsResponse.head.copy(
+        id = id,
+        status = status,
+        depth = Some(QuantityUnit(depth, Units.block))
+      ))
+
+    override protected def respond(request: HttpRequest): Future[HttpResponse] = {
+      val path = request.uri.path.toString()
+      val answer =
+        if (path.endsWith("network/information")) {
+          val info = decodeJsonFile[NetworkInfo]("netinfo.json")
+          json(info.copy(nodeTip = info.nodeTip.copy(slotNumber = slot.incrementAndGet())))
+        } else {
+          val id = path.split('/').last
+          fetches.getOrElseUpdate(id, new AtomicInteger()).incrementAndGet()
+          response(transactions.get(id).toRight(ErrorMessage(s"Transaction $id not found", "404")))
+        }
+      Future.successful(answer)
+    }
+  }
+
+  "TransactionWatcher" should "complete a watch once the transaction is in the ledger" in {
+    implicit val node: Node = new Node
+    node.set("tx1", TxState.pending)
+    val watcher = new TransactionWatcher(api, settings)
+
+    val watched = watcher.watch(walletId, "tx1")
+    eventually(node.fetches("tx1").get() should be >= 1)
+    watched.isCompleted shouldBe false
+
+    node.set("tx1", TxState.inLedger)
+    watched.futureValue.map(_.status) shouldBe Right(TxState.inLedger)
+    eventually(watcher.size shouldBe 0)
+    watcher.close()
+  }
+
+  it should "wait for the requested depth" in {
+    implicit val node: Node = new Node
+    node.set("tx1", TxState.inLedger, depth = 1)
+    val watcher = new TransactionWatcher(api, settings)
+
+    val inLedger = watcher.watch(walletId, "tx1")
+    val confirmed = watcher.watch(walletId, "tx1", confirmations = 3)
+
+    inLedger.futureValue.map(_.depth.map(_.quantity)) shouldBe Right(Some(1))
+    confirmed.isCompleted shouldBe false
+
+    node.set("tx1", TxState.inLedger, depth = 3)
+    confirmed.futureValue.map(_.depth.map(_.quantity)) shouldBe Right(Some(3))
+    watcher.close()
+  }
+
+  it should "complete a watch of an expired transaction" in {
+    implicit val node: Node = new Node
+    node.set("tx1", TxState.expired)
+    val watcher = new TransactionWatcher(api, settings)
+
+    watcher.watch(walletId, "tx1", confirmations = 10).futureValue.map(_.status) shouldBe Right(TxState.expired)
+    watcher.close()
+  }
+
+  it should "return the error of the wallet" in {
+    implicit val node: Node = new Node
+    val watcher = new TransactionWatcher(api, settings)
+
+    watcher.watch(walletId, "unknown").futureValue shouldBe Left(ErrorMessage("Transaction unknown not found", "404"))
+    watcher.size shouldBe 0
+    watcher.close()
+  }
+
+  it should "fetch a transaction once per tip for all its watches" in {
+    implicit val node: Node = new Node
+    node.set("tx1", TxState.pending)
+    val watcher = new TransactionWatcher(api, settings)
+
+    val watches = (1 to 20).map(_ => watcher.watch(walletId, "tx1"))
+    watcher.size shouldBe 1
+    eventually(node.fetches("tx1").get() should be >= 2)
+    node.fetches("tx1").get().toLong should be <= node.slot.get()
+
+    node.set("tx1", TxState.inLedger)
+    Future.sequence(watches).futureValue.flatMap(_.toOption).size shouldBe 20
+    watcher.close()
+  }
+
+  it should "publish the status changes" in {
+    implicit val node: Node = new Node
+    node.set("tx1", TxState.pending)
+    val watcher = new TransactionWatcher(api, settings)
+
+    val events = watcher.events.take(2).runWith(Sink.seq)
+    val watched = watcher.watch(walletId, "tx1")
+    eventually(node.fetches("tx1").get() should be >= 1)
+    node.set("tx1", TxState.inLedger)
+    watched.futureValue
+
+    events.futureValue.map(event => event.previousStatus -> event.transaction.status) shouldBe Seq(
+      None -> TxState.pending,
+      Some(TxState.pending) -> TxState.inLedger
+    )
+    watcher.close()
+  }
+
+  it should "complete the pending watches when closed" in {
+    implicit val node: Node = new Node
+    node.set("tx1", TxState.pending)
+    val watcher = new TransactionWatcher(api, settings)
+
+    val watched = watcher.watch(walletId, "tx1")
+    watcher.close()
+
+    watched.futureValue.left.map(_.code) shouldBe Left(TransactionWatcher.WatcherStoppedCode)
+    watcher.watch(walletId, "tx2").futureValue.left.map(_.code) shouldBe Left(TransactionWatcher.WatcherStoppedCode)
+  }
+}
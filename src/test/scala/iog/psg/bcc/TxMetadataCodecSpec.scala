@@ -163,6 +163,28 @@ class TxMetadataCodecSpec extends AnyFlatSpec with Matchers with DummyModel {
     error.getMessage() shouldBe "Not a Bytes type: DownField(bytes),DownField(0)"
   }
 
+  it should "fail on a label that is not a number" in {
+    val jsonWithInvalidLabel = parser.parse("""{"zero":{"string":"bcc"}}""").getOrElse(fail("Invalid json structure"))
+    val tvMeta = TxMetadataOut(jsonWithInvalidLabel)
+
+    val error = tvMeta.toMetadataMap.swap.getOrElse(fail("Should fail"))
+    error.getMessage() shouldBe "Invalid label 'zero': DownField(zero)"
+  }
+
+  "txMetadataOut metadataValue" should "decode a single label" in {
+    txMetadataOut.metadataValue(1) shouldBe Some(Right(MetadataValueLong(14)))
+    txMetadataOut.metadataValue(3).map(_.isRight) shouldBe Some(true)
+    txMetadataOut.metadataValue(42) shouldBe None
+  }
+
+  it should "not decode the other labels" in {
+    val jsonWithInvalidLabel = parser.parse("""{"0":{"superdouble":"bcc"},"1":{"int":14}}""").getOrElse(fail("Invalid json structure"))
+    val tvMeta = TxMetadataOut(jsonWithInvalidLabel)
+
+    tvMeta.metadataValue(1) shouldBe Some(Right(MetadataValueLong(14)))
+    tvMeta.labels shouldBe Right(Seq(0L, 1L))
+  }
+
   "Raw Good TxMetadata" should "be parsed properly" in {
     val asString = txMetadataOut.json.noSpaces
     val Right(rawTxMetaJsonIn) = JsonMetadata.parse(asString)
@@ -0,0 +1,148 @@
+package iog.psg.bcc
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ HttpEntity, HttpRequest, HttpResponse }
+import io.circe.parser.parse
+import iog.psg.bcc.BccApi.BccApiResponse
+import iog.psg.bcc.BccApiCodec.ImplicitCodecs.encodeWallet
+import iog.psg.bcc.BccApiCodec.{ EstimateFeeResponse, Payment, Payments, QuantityUnit, Units, Wallet }
+import iog.psg.bcc.util.StubApiRequestExecutor.{ api, json }
+import iog.psg.bcc.util.{ CustomPatienceConfiguration, ResourceFiles, StubApiRequestExecutor }
+import org.scalatest.concurrent.{ Eventually, ScalaFutures }
+import org.scalatest.flatspec.AnyFlatSpec
+import org.scalatest.matchers.should.Matchers
+
+import scala.collection.concurrent.TrieMap
+import scala.concurrent.{ ExecutionContext, Future, Promise }
+import scala.jdk.CollectionConverters.CollectionHasAsScala
+
+class WalletWorkQueuesSpec
+    extends AnyFlatSpec
+    with Matchers
+    with ScalaFutures
+    with Eventually
+    with ResourceFiles
+    with CustomPatienceConfiguration {
+
+  private implicit val as: ActorSystem = ActorSystem("wallet-work-queues-test-system")
+  private implicit val ec: ExecutionContext = as.dispatcher
+
+  /**
+   * Keeps each request running until it is released, by the wallet name it sets, then answers with the wallet
+   * renamed, or with a fee estimate.
+   */
+  private class HeldExecutor extends StubApiRequestExecutor {
+    val started = new ConcurrentLinkedQueue[String]()
+    private val held = TrieMap.empty[String, Promise[Unit]]
+
+    private def hold(name: String): Promise[Unit] = held.getOrElseUpdate(name, Promise[Unit]())
+
+    def release(name: String): Unit = hold(name).trySuccess(())
+
+    def running: Seq[String] = started.asScala.toSeq
+
+    override protected def respond(request: HttpRequest): Future[HttpResponse] = {
+      val name = request.entity match {
+        case entity: HttpEntity.Strict if entity.data.nonEmpty =>
+          parse(entity.data.utf8String).toOption.flatMap(_.hcursor.get[String]("name").toOption)
+            .getOrElse(request.uri.path.toString())
+        case _ => request.uri.path.toString()
+      }
+      started.add(name)
+      hold(name).future.map { _ =>
+        if (request.uri.path.toString().endsWith("payment-fees"))
+          json(EstimateFeeResponse(QuantityUnit(100L, Units.entropic), QuantityUnit(110L, Units.entropic)))
+        else json(jsonFileWallet.copy(name = name))
+      }
+    }
+  }
+
+  private def rename(executor: ApiRequestExecutor, walletId: String, name: String): Future[BccApiResponse[Wallet]] =
+    api.updateName(walletId, name).flatMap(executor.execute(_))
+
+  "WalletWorkQueues" should "run the writes of a wallet one after the other" in {
+    val backend = new HeldExecutor
+    val queues = new WalletWorkQueues(WalletWorkQueues.defaultSettings)
+    val executor = queues.wrap(backend)
+
+    val first = rename(executor, "wallet1", "a")
+    eventually(backend.running shouldBe Seq("a"))
+    val second = rename(executor, "wallet1", "b")
+    eventually(queues.queueDepth("wallet1") shouldBe 1)
+    val third = rename(executor, "wallet1", "c")
+    eventually(queues.queueDepth("wallet1") shouldBe 2)
+
+    backend.running shouldBe Seq("a")
+    backend.release("b")
+    backend.release("c")
+    backend.release("a")
+
+    Seq(first, second, third).map(_.futureValue.map(_.name)) shouldBe Seq(Right("a"), Right("b"), Right("c"))
+    backend.running shouldBe Seq("a", "b", "c")
+    eventually(queues.stats shouldBe WalletWorkQueues.Stats(wallets = 0, running = 0, queued = 0, maxQueueDepth = 0, rejected = 0))
+  }
+
+  it should "run the writes of different wallets in parallel and leave the reads alone" in {
+    val backend = new HeldExecutor
+    val queues = new WalletWorkQueues(WalletWorkQueues.defaultSettings)
+    val executor = queues.wrap(backend)
+
+    rename(executor, "wallet1", "a")
+    eventually(backend.running shouldBe Seq("a"))
+    rename(executor, "wallet2", "b")
+    rename(executor, "wallet1", "c")
+    executor.execute(api.getWallet("wallet1"))
+    val fee = api
+      .estimateFee("wallet1", Payments(Seq(Payment("addr1", QuantityUnit(1, Units.entropic)))), None)
+      .flatMap(executor.execute(_))
+
+    eventually(backend.running.toSet shouldBe Set("a", "b", "/wallets/wallet1", "/wallets/wallet1/payment-fees"))
+    queues.stats shouldBe WalletWorkQueues.Stats(wallets = 2, running = 2, queued = 1, maxQueueDepth = 1, rejected = 0)
+
+    backend.release("/wallets/wallet1/payment-fees")
+    fee.futureValue.isRight shouldBe true
+  }
+
+  it should "let waiting wallets take turns when the running slots are taken" in {
+    val backend = new HeldExecutor
+    val queues = new WalletWorkQueues(WalletWorkQueues.Settings(maxRunningWallets = 1))
+    val executor = queues.wrap(backend)
+
+    rename(executor, "wallet1", "a1")
+    eventually(backend.running shouldBe Seq("a1"))
+    rename(executor, "wallet1", "a2")
+    eventually(queues.queueDepth("wallet1") shouldBe 1)
+    rename(executor, "wallet2", "b1")
+    eventually(queues.queueDepth("wallet2") shouldBe 1)
+
+    Seq("a1", "b1", "a2").foreach(backend.release)
+    eventually(backend.running shouldBe Seq("a1", "b1", "a2"))
+  }
+
+  it should "refuse writes once the queue of the wallet is full" in {
+    val backend = new HeldExecutor
+    val queues = new WalletWorkQueues(WalletWorkQueues.Settings(maxQueuedPerWallet = 1))
+    val executor = queues.wrap(backend)
+
+    rename(executor, "wallet1", "a")
+    rename(executor, "wallet1", "b")
+    eventually(queues.queueDepth("wallet1") shouldBe 1)
+
+    rename(executor, "wallet1", "c").futureValue.left.map(_.code) shouldBe Left(WalletWorkQueues.WalletQueueFullCode)
+    queues.stats.rejected shouldBe 1
+  }
+
+  it should "start the next write of a wallet after a failed one" in {
+    val queues = new WalletWorkQueues(WalletWorkQueues.defaultSettings)
+    val failing = queues.wrap(new StubApiRequestExecutor {
+      override protected def respond(request: HttpRequest): Future[HttpResponse] =
+        Future.failed(new RuntimeException("connection reset"))
+    })
+
+    rename(failing, "wallet1", "a").failed.futureValue.getMessage shouldBe "connection reset"
+    rename(failing, "wallet1", "b").failed.futureValue.getMessage shouldBe "connection reset"
+    eventually(queues.stats.wallets shouldBe 0)
+  }
+}
@@ -0,0 +1,78 @@
+package iog.psg.bcc.util
+
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ ContentTypes, HttpEntity, HttpRequest, HttpResponse, StatusCode, StatusCodes }
+import io.circe.Encoder
+import io.circe.generic.auto._
+import io.circe.syntax._
+import iog.psg.bcc.BccApi.{ BccApiRequest, BccApiResponse, ErrorMessage }
+import iog.psg.bcc.{ ApiRequestExecutor, BccApi }
+
+import scala.concurrent.{ ExecutionContext, Future }
+import scala.jdk.CollectionConverters._
+
+/**
+ * Stands in for the wallet backend of the clients built on [[BccApi]]: requests are answered by [[respond]] with
+ * json responses, decoded by the mapper of each request like the responses of the wallet. The requests received
+ * are kept.
+ */
+abstract class StubApiRequestExecutor extends ApiRequestExecutor {
+
+  private val received = new ConcurrentLinkedQueue[HttpRequest]()
+
+  /**
+   * @return the response of the request, see [[StubApiRequestExecutor.json]] and [[StubApiRequestExecutor.error]]
+   */
+  protected def respond(request: HttpRequest): Future[HttpResponse]
+
+  def requests: Seq[HttpRequest] = received.asScala.toSeq
+
+  override def execute[T](request: BccApiRequest[T])(implicit ec: ExecutionContext, as: ActorSystem): Future[BccApiResponse[T]] = {
+    received.add(request.request)
+    respond(request.request).flatMap(request.mapper)
+  }
+}
+
+object StubApiRequestExecutor {
+
+  val baseUrl = "http://fake:1234/"
+  val walletId = "2512a00e9653fe49a44a5886202e24d77eeb998f"
+  val walletNotFound: ErrorMessage = ErrorMessage("Wallet not found", "404")
+
+  /**
+   * @return api whose requests are only sent to the executors given
+   */
+  def api(implicit ec: ExecutionContext, as: ActorSystem): BccApi = BccApi(baseUrl)
+
+  /**
+   * @return response whose entity is the value encoded as json
+   */
+  def json[A](value: A, status: StatusCode = StatusCodes.OK)(implicit enc: Encoder[A]): HttpResponse =
+    HttpResponse(status = status, entity = HttpEntity(ContentTypes.`application/json`, value.asJson.noSpaces))
+
+  /**
+   * @return response of the error, with the status of its code when it is one
+   */
+  def error(error: ErrorMessage): HttpResponse = {
+    val status = error.code.toIntOption.map(StatusCode.int2StatusCode).getOrElse(StatusCodes.BadRequest)
+    json(error, status)
+  }
+
+  /**
+   * @return response of the value, or of the error
+   */
+  def response[A](response: BccApiResponse[A])(implicit enc: Encoder[A]): HttpResponse =
+    response.fold(error, json(_))
+
+  def apply(response: HttpRequest => HttpResponse): StubApiRequestExecutor = new StubApiRequestExecutor {
+    override protected def respond(request: HttpRequest): Future[HttpResponse] =
+      Future.successful(response(request))
+  }
+
+  /**
+   * @return executor answering every request with the error
+   */
+  def failing(error: ErrorMessage = walletNotFound): StubApiRequestExecutor = apply(_ => StubApiRequestExecutor.error(error))
+}
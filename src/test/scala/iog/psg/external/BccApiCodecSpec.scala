@@ -1,15 +1,21 @@
 package iog.psg.external
 
 import akka.actor.ActorSystem
+import akka.http.scaladsl.model.{ ContentTypes, HttpEntity, HttpResponse, StatusCodes }
 import io.circe.jawn.decode
 import io.circe.syntax._
+import iog.psg.bcc.BccApi.{ BccApiResponse, ErrorMessage }
 import iog.psg.bcc.BccApiCodec.ImplicitCodecs._
 import iog.psg.bcc.BccApiCodec._
+import iog.psg.bcc.CodecBackend
 import iog.psg.bcc.util.{ CustomPatienceConfiguration, DummyModel, ResourceFiles }
 import org.scalatest.concurrent.ScalaFutures
 import org.scalatest.flatspec.AnyFlatSpec
 import org.scalatest.matchers.should.Matchers
 
+import scala.concurrent.duration.{ DurationInt, FiniteDuration }
+import scala.concurrent.{ ExecutionContext, Future }
+
 /**
  * NB It's import that this class is in a package that is 'external' to the
  * bcc package in order to test that these encoders and decoders are
@@ -25,6 +31,29 @@ class BccApiCodecSpec
     with CustomPatienceConfiguration {
 
   implicit val as: ActorSystem = ActorSystem("bcc-api-test-system")
+  private implicit val ec: ExecutionContext = as.dispatcher
+  private implicit val timeout: FiniteDuration = 10.seconds
+
+  private def jsonResponse(json: String) =
+    HttpResponse(StatusCodes.OK, entity = HttpEntity(ContentTypes.`application/json`, json))
+
+  private def decodeWithBoth[T](json: String)(
+    decode: CodecBackend => HttpResponse => Future[BccApiResponse[T]]
+  ): BccApiResponse[T] = {
+    val byCirce = decode(CodecBackend.Circe)(jsonResponse(json)).futureValue
+    val byJsoniter = decode(CodecBackend.Jsoniter)(jsonResponse(json)).futureValue
+
+    byJsoniter shouldBe byCirce
+    byCirce
+  }
+
+  private def decodeFileWithBoth[T](file: String)(
+    decode: CodecBackend => HttpResponse => Future[BccApiResponse[T]]
+  ): BccApiResponse[T] = {
+    val decoded = decodeWithBoth(getJsonFromFile(file))(decode)
+    decoded.isRight shouldBe true
+    decoded
+  }
 
   "Encode class with Nones" should "drop nulls in Delegation" in {
     val delAct = DelegationActive(status = DelegationStatus.delegating, target = None)
@@ -121,5 +150,68 @@ class BccApiCodecSpec
     decodedTX.id shouldBe "6931f472901635ddb594b19b983403f9fd5e3fbbfc45a9c61d01c0abf335c425"
   }
 
+  "Both codec backends" should "decode network responses identically" in {
+    decodeFileWithBoth("netinfo.json")(implicit backend => _.toNetworkInfoResponse)
+    decodeFileWithBoth("netclock.json")(implicit backend => _.toNetworkClockResponse)
+    decodeFileWithBoth("netclockforced.json")(implicit backend => _.toNetworkClockResponse)
+    decodeFileWithBoth("netparams.json")(implicit backend => _.toNetworkParametersResponse)
+  }
+
+  they should "decode wallet and address responses identically" in {
+    decodeFileWithBoth("wallet.json")(implicit backend => _.toWallet)
+    decodeFileWithBoth("wallets.json")(implicit backend => _.toWallets)
+    decodeFileWithBoth("addresses.json")(implicit backend => _.toWalletAddressIds)
+    decodeFileWithBoth("used_addresses.json")(implicit backend => _.toWalletAddressIds)
+    decodeFileWithBoth("unused_addresses.json")(implicit backend => _.toWalletAddressIds)
+    decodeFileWithBoth("address_inspect.json")(implicit backend => _.toWalletAddress)
+    decodeFileWithBoth("utxos.json")(implicit backend => _.toUTxOStatisticsResponse)
+  }
+
+  they should "decode transaction responses identically" in {
+    decodeFileWithBoth("transaction.json")(implicit backend => _.toCreateTransactionResponse)
+    decodeFileWithBoth("transactions.json")(implicit backend => _.toCreateTransactionsResponse)
+    decodeFileWithBoth("estimate_fees.json")(implicit backend => _.toEstimateFeeResponse)
+    decodeFileWithBoth("coin_selections_random.json")(implicit backend => _.toFundPaymentsResponse)
+    decodeFileWithBoth("proxy_trans_resp.json")(implicit backend => _.toPostExternalTransactionResponse)
+  }
+
+  they should "decode migration and stake pool responses identically" in {
+    decodeFileWithBoth("migration.json")(implicit backend => _.toSubmitMigrationResponse)
+    decodeFileWithBoth("migrations.json")(implicit backend => _.toSubmitMigrationsResponse)
+    decodeFileWithBoth("migration_costs.json")(implicit backend => _.toMigrationCostResponse)
+    decodeFileWithBoth("stake_pools.json")(implicit backend => _.toStakePoolsResponse)
+    decodeFileWithBoth("stake_pools_maintenance_actions.json")(implicit backend => _.toStakePoolMaintenanceActionsStatusResponse)
+  }
 
+  they should "keep the transaction metadata" in {
+    val transactions = decodeFileWithBoth("transactions.json")(implicit backend => _.toCreateTransactionsResponse)
+
+    transactions.toOption.get.flatMap(_.metadata) shouldBe jsonFileCreatedTransactionsResponse.flatMap(_.metadata)
+  }
+
+  they should "decode an error message" in {
+    val error = """{"message":"wallet not found","code":"no_such_wallet"}"""
+
+    decodeWithBoth(error)(implicit backend => _.toWallet) shouldBe Left(ErrorMessage("wallet not found", "no_such_wallet"))
+  }
+
+  they should "report an unparseable element of a transaction list" in {
+    val invalid = """[{"id":"1234"}]"""
+
+    Seq[CodecBackend](CodecBackend.Circe, CodecBackend.Jsoniter).foreach { implicit backend =>
+      jsonResponse(invalid).toCreateTransactionsResponse.futureValue.left.map(_.code) shouldBe Left("UNPARSEABLE RESULT")
+    }
+  }
+
+  they should "fail on a response that is neither the expected type nor an error message" in {
+    val invalid = """{"id":"1234"}"""
+
+    Seq[CodecBackend](CodecBackend.Circe, CodecBackend.Jsoniter).foreach { implicit backend =>
+      jsonResponse(invalid).toWallet.failed.futureValue shouldBe an[Exception]
+    }
+  }
+
+  "The default codec backend" should "be circe" in {
+    implicitly[CodecBackend] shouldBe CodecBackend.Circe
+  }
 }